@@ -0,0 +1,205 @@
+/*****************************************************************************
+ * Copyright (c) 2026 Intel Corporation
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Intel - initial API and implementation
+ *******************************************************************************/
+package org.yocto.bc.bitbake;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * An immutable, compact snapshot of a bitbake environment.
+ *
+ * Keys and values are kept in open-addressed arrays, keys are interned and
+ * values are shared: a value equal to the one of the base configuration
+ * reuses the base instance, other values go through a process-wide weak
+ * pool, so the many recipe environments mostly reference the same strings.
+ * Being immutable, a snapshot can be read without any locking.
+ */
+public final class BBEnvironment extends AbstractMap<String, Object> {
+	private static final BBEnvironment EMPTY = new BBEnvironment(new String[1], new Object[1], 0);
+	private static final Map<String, WeakReference<String>> valuePool = new WeakHashMap<String, WeakReference<String>>();
+
+	private final String[] keys;
+	private final Object[] values;
+	private final int size;
+	private Set<Map.Entry<String, Object>> entrySet;
+
+	private BBEnvironment(String[] keys, Object[] values, int size) {
+		this.keys = keys;
+		this.values = values;
+		this.size = size;
+	}
+
+	public static BBEnvironment empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Create a snapshot of an environment.
+	 *
+	 * @param env the parsed environment
+	 * @param base the base configuration the values are shared with, may be null
+	 * @return an immutable copy of env
+	 */
+	public static BBEnvironment create(Map<String, Object> env, BBEnvironment base) {
+		if (env instanceof BBEnvironment && base == null) {
+			return (BBEnvironment) env;
+		}
+		int size = env.size();
+		if (size == 0) {
+			return EMPTY;
+		}
+
+		int capacity = Integer.highestOneBit(size * 2 - 1) << 1;
+		String[] keys = new String[capacity];
+		Object[] values = new Object[capacity];
+		int mask = capacity - 1;
+		int count = 0;
+
+		for (Iterator<Map.Entry<String, Object>> i = env.entrySet().iterator(); i.hasNext();) {
+			Map.Entry<String, Object> e = i.next();
+			String key = e.getKey().intern();
+			Object value = e.getValue();
+			Object shared = (base != null) ? base.get(key) : null;
+			if (shared != null && shared.equals(value)) {
+				value = shared;
+			} else if (value instanceof String) {
+				value = share((String) value);
+			}
+
+			int slot = hash(key) & mask;
+			while (keys[slot] != null && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			if (keys[slot] == null) {
+				count++;
+			}
+			keys[slot] = key;
+			values[slot] = value;
+		}
+
+		return new BBEnvironment(keys, values, count);
+	}
+
+	private static String share(String value) {
+		synchronized (valuePool) {
+			WeakReference<String> ref = valuePool.get(value);
+			String shared = (ref != null) ? ref.get() : null;
+			if (shared == null) {
+				valuePool.put(value, new WeakReference<String>(value));
+				shared = value;
+			}
+			return shared;
+		}
+	}
+
+	private static int hash(Object key) {
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	private int indexOf(Object key) {
+		if (key == null || size == 0) {
+			return -1;
+		}
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		String k;
+		while ((k = keys[slot]) != null) {
+			if (k == key || k.equals(key)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	@Override
+	public Object get(Object key) {
+		int slot = indexOf(key);
+		return (slot < 0) ? null : values[slot];
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return a rough estimate in bytes of the memory retained by this
+	 * snapshot, counting shared values as if they were owned.
+	 */
+	public long estimateSize() {
+		long bytes = 16 + 2 * (16 + 4L * keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null && values[i] instanceof String) {
+				bytes += 40 + 2L * ((String) values[i]).length();
+			}
+		}
+		return bytes;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new AbstractSet<Map.Entry<String, Object>>() {
+				@Override
+				public Iterator<Map.Entry<String, Object>> iterator() {
+					return new EntryIterator();
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+			};
+		}
+		return entrySet;
+	}
+
+	private class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+		private int next = advance(0);
+
+		private int advance(int from) {
+			while (from < keys.length && keys[from] == null) {
+				from++;
+			}
+			return from;
+		}
+
+		public boolean hasNext() {
+			return next < keys.length;
+		}
+
+		public Map.Entry<String, Object> next() {
+			if (next >= keys.length) {
+				throw new NoSuchElementException();
+			}
+			Map.Entry<String, Object> e = new AbstractMap.SimpleImmutableEntry<String, Object>(keys[next], values[next]);
+			next = advance(next + 1);
+			return e;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException("BB configuration is read-only.");
+		}
+	}
+}
@@ -0,0 +1,329 @@
+/*****************************************************************************
+ * Copyright (c) 2026 Intel Corporation
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Intel - initial API and implementation
+ *******************************************************************************/
+package org.yocto.bc.bitbake;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent on-disk cache of parsed <code>bitbake -e</code> environments.
+ *
+ * An entry is keyed by the project root and the parsing command, and carries
+ * the modification time and size of every file the environment depends on
+ * (BBINCLUDED plus the recipe itself). An entry is only returned when none of
+ * those files changed since it was stored.
+ *
+ * Entries not used for {@link #MAX_AGE} are dropped at startup, such as the
+ * ones of recipes that were renamed or upgraded, and the least recently used
+ * entries are dropped whenever the entries take more than the maximum size.
+ */
+public class BBEnvironmentCache {
+	private static final int MAGIC = 0x42424543; // "BBEC"
+	private static final int VERSION = 1;
+	private static final String SUFFIX = ".env";
+	/**
+	 * Time in milliseconds after which an unused entry is dropped.
+	 */
+	public static final long MAX_AGE = 30L * 24 * 60 * 60 * 1000;
+
+	private final File cacheDir;
+	private final long maxSize;
+	private final AtomicLong size = new AtomicLong();
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	/**
+	 * @param cacheDir
+	 * @param maxSize maximum size in bytes of the entries
+	 */
+	public BBEnvironmentCache(File cacheDir, long maxSize) {
+		this.cacheDir = cacheDir;
+		this.maxSize = maxSize;
+		long oldest = System.currentTimeMillis() - MAX_AGE;
+		File[] entries = listEntries();
+		for (int i = 0; i < entries.length; i++) {
+			if (entries[i].lastModified() < oldest) {
+				entries[i].delete();
+			} else {
+				size.addAndGet(entries[i].length());
+			}
+		}
+		prune();
+	}
+
+	/**
+	 * Load a cached environment.
+	 *
+	 * @param projectRoot
+	 * @param parsingCmd
+	 * @param depends collection receiving the cached dependencies on a hit
+	 * @return the environment, or null if there is no valid entry
+	 */
+	public Map<String, Object> load(String projectRoot, String parsingCmd, Collection<String> depends) {
+		File entry = getEntryFile(projectRoot, parsingCmd);
+		if (entry == null || !entry.isFile()) {
+			misses.incrementAndGet();
+			return null;
+		}
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry), 64 * 1024));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION
+					|| !getKey(projectRoot, parsingCmd).equals(readString(in))) {
+				misses.incrementAndGet();
+				return null;
+			}
+
+			int count = in.readInt();
+			String[] paths = new String[count];
+			for (int i = 0; i < count; i++) {
+				paths[i] = readString(in);
+				long mtime = in.readLong();
+				long size = in.readLong();
+				File f = new File(paths[i]);
+				if (f.lastModified() != mtime || f.length() != size) {
+					misses.incrementAndGet();
+					return null;
+				}
+			}
+
+			count = in.readInt();
+			Map<String, Object> env = new Hashtable<String, Object>(count * 2);
+			for (int i = 0; i < count; i++) {
+				String key = readString(in);
+				env.put(key, readString(in));
+			}
+
+			for (int i = 0; i < paths.length; i++) {
+				depends.add(paths[i]);
+			}
+			// the modification time of an entry is the time it was last used
+			entry.setLastModified(System.currentTimeMillis());
+			hits.incrementAndGet();
+			return env;
+		} catch (IOException e) {
+			e.printStackTrace();
+			entry.delete();
+			misses.incrementAndGet();
+			return null;
+		} finally {
+			close(in);
+		}
+	}
+
+	/**
+	 * Store a parsed environment together with the fingerprint of its dependencies.
+	 *
+	 * @param projectRoot
+	 * @param parsingCmd
+	 * @param env
+	 * @param depends
+	 */
+	public void store(String projectRoot, String parsingCmd, Map<String, Object> env, Collection<String> depends) {
+		File entry = getEntryFile(projectRoot, parsingCmd);
+		if (entry == null || (!cacheDir.isDirectory() && !cacheDir.mkdirs())) {
+			return;
+		}
+
+		File tmp = new File(cacheDir, entry.getName() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, getKey(projectRoot, parsingCmd));
+
+			out.writeInt(depends.size());
+			for (Iterator<String> i = depends.iterator(); i.hasNext();) {
+				File f = new File(i.next());
+				writeString(out, f.getPath());
+				out.writeLong(f.lastModified());
+				out.writeLong(f.length());
+			}
+
+			int count = 0;
+			for (Iterator<Object> i = env.values().iterator(); i.hasNext();) {
+				if (i.next() instanceof String) {
+					count++;
+				}
+			}
+			out.writeInt(count);
+			for (Iterator<Map.Entry<String, Object>> i = env.entrySet().iterator(); i.hasNext();) {
+				Map.Entry<String, Object> e = i.next();
+				if (e.getValue() instanceof String) {
+					writeString(out, e.getKey());
+					writeString(out, (String) e.getValue());
+				}
+			}
+			out.close();
+			out = null;
+
+			long added = tmp.length() - entry.length();
+			if (!tmp.renameTo(entry)) {
+				entry.delete();
+				if (!tmp.renameTo(entry)) {
+					tmp.delete();
+					return;
+				}
+			}
+			if (size.addAndGet(added) > maxSize) {
+				prune();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			tmp.delete();
+		} finally {
+			close(out);
+		}
+	}
+
+	/**
+	 * Drop the cached environment for the given project root and command.
+	 */
+	public void invalidate(String projectRoot, String parsingCmd) {
+		File entry = getEntryFile(projectRoot, parsingCmd);
+		if (entry != null) {
+			long length = entry.length();
+			if (entry.delete()) {
+				size.addAndGet(-length);
+			}
+		}
+	}
+
+	/**
+	 * Drop every cached environment.
+	 */
+	public void clear() {
+		File[] entries = listEntries();
+		for (int i = 0; i < entries.length; i++) {
+			long length = entries[i].length();
+			if (entries[i].delete()) {
+				size.addAndGet(-length);
+			}
+		}
+	}
+
+	/**
+	 * Drop the least recently used entries until the entries fit in the
+	 * maximum size.
+	 */
+	private synchronized void prune() {
+		if (size.get() <= maxSize) {
+			return;
+		}
+		File[] entries = listEntries();
+		final long[] used = new long[entries.length];
+		Integer[] order = new Integer[entries.length];
+		long total = 0;
+		for (int i = 0; i < entries.length; i++) {
+			used[i] = entries[i].lastModified();
+			order[i] = Integer.valueOf(i);
+			total += entries[i].length();
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Long.compare(used[a.intValue()], used[b.intValue()]);
+			}
+		});
+		for (int i = 0; i < order.length && total > maxSize; i++) {
+			File entry = entries[order[i].intValue()];
+			long length = entry.length();
+			if (entry.delete()) {
+				total -= length;
+			}
+		}
+		size.set(total);
+	}
+
+	private File[] listEntries() {
+		File[] entries = cacheDir.listFiles();
+		if (entries == null) {
+			return new File[0];
+		}
+		int count = 0;
+		for (int i = 0; i < entries.length; i++) {
+			if (entries[i].getName().endsWith(SUFFIX)) {
+				entries[count++] = entries[i];
+			}
+		}
+		return Arrays.copyOf(entries, count);
+	}
+
+	public int getHitCount() {
+		return hits.get();
+	}
+
+	public int getMissCount() {
+		return misses.get();
+	}
+
+	private String getKey(String projectRoot, String parsingCmd) {
+		return projectRoot + '\n' + parsingCmd;
+	}
+
+	private File getEntryFile(String projectRoot, String parsingCmd) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			byte[] digest = md.digest(getKey(projectRoot, parsingCmd).getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder(digest.length * 2 + SUFFIX.length());
+			for (int i = 0; i < digest.length; i++) {
+				sb.append(Character.forDigit((digest[i] >> 4) & 0xf, 16));
+				sb.append(Character.forDigit(digest[i] & 0xf, 16));
+			}
+			sb.append(SUFFIX);
+			return new File(cacheDir, sb.toString());
+		} catch (NoSuchAlgorithmException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] b = new byte[in.readInt()];
+		in.readFully(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	private static void close(Closeable c) {
+		if (c != null) {
+			try {
+				c.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+}
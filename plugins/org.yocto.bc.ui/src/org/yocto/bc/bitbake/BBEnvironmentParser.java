@@ -0,0 +1,254 @@
+/*****************************************************************************
+ * Copyright (c) 2026 Intel Corporation
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Intel - initial API and implementation
+ *******************************************************************************/
+package org.yocto.bc.bitbake;
+
+import java.util.ArrayDeque;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Single-pass parser for <code>bitbake -e</code> output.
+ *
+ * Lines are fed one at a time as they are read from the shell, so the full
+ * output never has to be held in memory. Function bodies are skipped and
+ * variable assignments are split without regular expressions.
+ */
+public class BBEnvironmentParser implements ICommandResponseHandler {
+	private static final String EXPORT = "export ";
+	private static final int TAIL_LINES = 200;
+
+	private final Map<String, Object> env;
+	private final ArrayDeque<String> tail = new ArrayDeque<String>(TAIL_LINES);
+	private StringBuilder continuation = null;
+	private int blockDepth = 0;
+
+	public BBEnvironmentParser() {
+		this(new Hashtable<String, Object>());
+	}
+
+	public BBEnvironmentParser(Map<String, Object> env) {
+		this.env = env;
+	}
+
+	/**
+	 * @return the variables parsed so far.
+	 */
+	public Map<String, Object> getEnvironment() {
+		return env;
+	}
+
+	/**
+	 * @return the last lines received, used to report parsing errors.
+	 */
+	public String getTail() {
+		StringBuilder sb = new StringBuilder();
+		for (Iterator<String> i = tail.iterator(); i.hasNext();) {
+			sb.append(i.next());
+			sb.append(ShellSession.LT);
+		}
+		return sb.toString();
+	}
+
+	public void response(String line, boolean isError) {
+		if (tail.size() == TAIL_LINES) {
+			tail.removeFirst();
+		}
+		tail.addLast(line);
+
+		if (!isError) {
+			parseLine(line);
+		}
+	}
+
+	/**
+	 * Feed one line of output to the parser.
+	 *
+	 * @param line
+	 */
+	public void parseLine(String line) {
+		int start = 0;
+		int end = line.length();
+		while (start < end && line.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && line.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		if (start == end || line.charAt(0) == '#') {
+			// weed out the blank and comment lines
+			return;
+		}
+
+		// Look for block starts and ends, and ignore all code within blocks.
+		int open = 0;
+		int close = 0;
+		for (int i = start; i < end; i++) {
+			char c = line.charAt(i);
+			if (c == '{') {
+				open++;
+			} else if (c == '}') {
+				close++;
+			}
+		}
+		if (open > close) {
+			blockDepth++;
+		} else if (close > open && blockDepth > 0) {
+			blockDepth--;
+		}
+		if (blockDepth > 0) {
+			return;
+		}
+
+		if (line.charAt(end - 1) == '\\') {
+			if (continuation == null) {
+				continuation = new StringBuilder();
+			}
+			continuation.append(line, start, end - 1);
+			// Only parse the line when we have the complete contents.
+			return;
+		}
+
+		if (continuation != null) {
+			continuation.append(line, start, end);
+			line = continuation.toString();
+			continuation = null;
+			start = 0;
+			end = line.length();
+		}
+
+		parseAssignment(line, start, end);
+	}
+
+	private void parseAssignment(String line, int start, int end) {
+		int eq = line.indexOf('=', start);
+		if (eq < 0 || eq >= end) {
+			// statements, flags and unknown lines are ignored for now
+			return;
+		}
+
+		int keyEnd = eq;
+		int valueStart = eq + 1;
+		char op = '=';
+		if (keyEnd > start) {
+			char c = line.charAt(keyEnd - 1);
+			if (c == '?' || c == '+' || c == ':' || c == '.') {
+				op = c;
+				keyEnd--;
+				while (keyEnd > start && line.charAt(keyEnd - 1) == '?') {
+					keyEnd--;
+				}
+			} else if (valueStart < end && (line.charAt(valueStart) == '+' || line.charAt(valueStart) == '.')) {
+				// prepend operators: =+ and =.
+				op = '-';
+				valueStart++;
+			}
+		}
+
+		String key = trimKey(line, start, keyEnd);
+		if (key.length() == 0) {
+			return;
+		}
+		String value = removeQuotes(line, valueStart, end);
+
+		switch (op) {
+		case '?':
+			if (!env.containsKey(key)) {
+				env.put(key, value);
+			}
+			break;
+		case '+':
+		case '.':
+			Object existing = env.get(key);
+			env.put(key, existing == null ? value : existing + value);
+			break;
+		case '-':
+			existing = env.get(key);
+			env.put(key, existing == null ? value : value + existing);
+			break;
+		case ':':
+			env.put(key, substitute(value, env));
+			break;
+		default:
+			env.put(key, value);
+			break;
+		}
+	}
+
+	private static String trimKey(String line, int start, int end) {
+		while (end > start && line.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		if (line.startsWith(EXPORT, start)) {
+			start += EXPORT.length();
+			while (start < end && line.charAt(start) <= ' ') {
+				start++;
+			}
+		}
+		return line.substring(start, end);
+	}
+
+	private static String removeQuotes(String line, int start, int end) {
+		while (start < end && line.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && line.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		if (start < end && line.charAt(start) == '"') {
+			start++;
+		}
+		if (end > start && line.charAt(end - 1) == '"') {
+			end--;
+		}
+		return line.substring(start, end);
+	}
+
+	/**
+	 * Return a string with variable substitutions in place.
+	 *
+	 * @param expression
+	 * @param env
+	 * @return Input string with any substitutions from the environment.
+	 */
+	public static String substitute(String expression, Map<String, Object> env) {
+		int i = expression.indexOf("${");
+		if (i < 0) {
+			return expression;
+		}
+
+		StringBuilder sb = new StringBuilder(expression.length());
+		int last = 0;
+		while (i > -1) {
+			int i2 = expression.indexOf('}', i);
+			if (i2 < 0) {
+				break;
+			}
+			String varName = expression.substring(i + 2, i2);
+			Object value = env.get(varName);
+			if (value == null) {
+				value = System.getProperty(varName);
+			}
+			if (value == null && varName.toUpperCase().equals("HOME")) {
+				value = System.getProperty("user.home");
+			}
+			if (value != null) {
+				sb.append(expression, last, i);
+				sb.append(value);
+				last = i2 + 1;
+			}
+			i = expression.indexOf("${", i2);
+		}
+		sb.append(expression, last, expression.length());
+
+		return sb.toString();
+	}
+}
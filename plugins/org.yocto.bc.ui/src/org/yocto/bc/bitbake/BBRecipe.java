@@ -20,27 +20,53 @@ import java.io.IOException;
 public class BBRecipe extends BBSession {
 	private final BBSession session;
 	private final String filePath;
+	private volatile boolean batchFailed = false;
 
 	public BBRecipe(BBSession session, String filePath) throws IOException {
-		super(session.shell, session.pinfo.getRootPath());
+		super(session.out, session.pinfo.getRootPath());
 		this.session = session;
 		this.filePath = filePath;
 		this.parsingCmd = "DISABLE_SANITY_CHECKS=1 bitbake -e -b " + filePath;
+		this.envCache = session.getEnvironmentCache();
+		this.shellPool = session.getShellPool();
 	}
 	
 	@Override
 	public void initialize() throws Exception {
-		if (this.size() == 0) {
+		if (getEnvironment().size() == 0) {
 			//System.out.println("Failed to parse " + filePath);
 			//throw new IOException("Failed to parse " + filePath);
 		}
 	}
 
+	@Override
+	protected boolean isDependency(String path) {
+		// the recipe, its includes and appends as well as the base configuration
+		return true;
+	}
+
 	protected String getDefaultDepends() {
 		return this.filePath;
 	}
 
+	@Override
+	protected BBEnvironment getBaseEnvironment() {
+		return session.properties;
+	}
+
 	public BBSession getSession() {
 		return session;
 	}
+
+	/**
+	 * @return true if extracting the environment with other recipes failed,
+	 * so that it is only extracted on its own.
+	 */
+	public boolean isBatchFailed() {
+		return batchFailed;
+	}
+
+	public void setBatchFailed() {
+		batchFailed = true;
+	}
 }
@@ -0,0 +1,129 @@
+/*****************************************************************************
+ * Copyright (c) 2026 Intel Corporation
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Intel - initial API and implementation
+ *******************************************************************************/
+package org.yocto.bc.bitbake;
+
+import java.util.Collection;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Extracts the environments of many recipes with a single bitbake process.
+ *
+ * The base configuration is parsed once through tinfoil, then every recipe
+ * is parsed against it, with its bbappends as <code>bitbake -e -b</code>
+ * does, and its environment emitted in the same format as
+ * <code>bitbake -e</code>, between begin and end marker lines. The output is
+ * split per recipe and fed to a {@link BBEnvironmentParser} while streaming.
+ */
+class BBRecipeBatch implements ICommandResponseHandler {
+	private static final String BEGIN = "#BBBATCH-BEGIN ";
+	private static final String END = "#BBBATCH-END ";
+	private static final String ERROR = "#BBBATCH-ERROR ";
+	private static final String LOG = "#BBBATCH-LOG ";
+	private static final String EOF = "BBBATCH_EOF";
+
+	// the log of tinfoil goes to the standard output too, marked, as nothing
+	// reads the error output while the script runs. The bbappends are
+	// collected as bitbake -b does; if that fails every recipe fails, rather
+	// than being parsed without its appends
+	private static final String SCRIPT =
+		"import os, shutil, sys\n" +
+		"sys.path.insert(0, os.path.join(os.path.dirname(shutil.which('bitbake')), '..', 'lib'))\n" +
+		"import bb.data, bb.tinfoil\n" +
+		"class Log:\n" +
+		"    def write(self, s):\n" +
+		"        for line in s.splitlines():\n" +
+		"            sys.stdout.write('" + LOG + "' + line + '\\n')\n" +
+		"    def flush(self):\n" +
+		"        sys.stdout.flush()\n" +
+		"    def isatty(self):\n" +
+		"        return False\n" +
+		"with bb.tinfoil.Tinfoil(output=Log()) as tinfoil:\n" +
+		"    tinfoil.prepare(config_only=True)\n" +
+		"    appends_error = None\n" +
+		"    try:\n" +
+		"        if len(sys.argv) > 1:\n" +
+		"            tinfoil.run_command('matchFile', sys.argv[1])\n" +
+		"    except Exception as e:\n" +
+		"        appends_error = 'cannot collect the bbappends: ' + str(e).replace('\\n', ' ')\n" +
+		"    for fn in sys.argv[1:]:\n" +
+		"        print('" + BEGIN + "' + fn)\n" +
+		"        try:\n" +
+		"            if appends_error:\n" +
+		"                raise Exception(appends_error)\n" +
+		"            bb.data.emit_env(sys.stdout, tinfoil.parse_recipe_file(fn), True)\n" +
+		"        except Exception as e:\n" +
+		"            print('" + ERROR + "' + fn + ' ' + str(e).replace('\\n', ' '))\n" +
+		"        print('" + END + "' + fn)\n" +
+		"        sys.stdout.flush()\n";
+
+	private final Map<String, Map<String, Object>> environments = new Hashtable<String, Map<String, Object>>();
+	private final BBEnvironmentParser errors = new BBEnvironmentParser();
+	private BBEnvironmentParser current = null;
+	private String currentPath = null;
+	private boolean currentFailed = false;
+
+	/**
+	 * @param recipePaths
+	 * @return the shell command extracting the environments of all the recipes.
+	 */
+	static String getCommand(Collection<String> recipePaths) {
+		StringBuilder sb = new StringBuilder("DISABLE_SANITY_CHECKS=1 python3 - 2>&1");
+		for (Iterator<String> i = recipePaths.iterator(); i.hasNext();) {
+			sb.append(" '");
+			sb.append(i.next().replace("'", "'\\''"));
+			sb.append('\'');
+		}
+		sb.append(" <<'").append(EOF).append("'\n");
+		sb.append(SCRIPT);
+		sb.append(EOF);
+		return sb.toString();
+	}
+
+	/**
+	 * @return the parsed environments keyed by recipe path. Recipes that
+	 * failed to parse are not included.
+	 */
+	Map<String, Map<String, Object>> getEnvironments() {
+		return environments;
+	}
+
+	/**
+	 * @return the last lines received outside of any recipe section.
+	 */
+	String getTail() {
+		return errors.getTail();
+	}
+
+	public void response(String line, boolean isError) {
+		if (!isError && line.startsWith(BEGIN)) {
+			currentPath = line.substring(BEGIN.length());
+			current = new BBEnvironmentParser();
+			currentFailed = false;
+		} else if (!isError && line.startsWith(END)) {
+			if (current != null && !currentFailed) {
+				environments.put(currentPath, current.getEnvironment());
+			}
+			current = null;
+			currentPath = null;
+		} else if (!isError && line.startsWith(LOG)) {
+			errors.response(line.substring(LOG.length()), true);
+		} else if (!isError && line.startsWith(ERROR)) {
+			currentFailed = true;
+			errors.response(line, true);
+		} else if (current != null && !isError) {
+			current.parseLine(line);
+		} else {
+			errors.response(line, isError);
+		}
+	}
+}
@@ -0,0 +1,358 @@
+/*****************************************************************************
+ * Copyright (c) 2026 Intel Corporation
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Intel - initial API and implementation
+ *******************************************************************************/
+package org.yocto.bc.bitbake;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the recipes and appends matched by the BBFILES patterns of a build.
+ *
+ * Patterns are evaluated like bitbake does with <code>glob</code>: every
+ * path segment is matched on its own, so only the directories a pattern can
+ * reach are visited, and in parallel. Directory listings are cached with the
+ * modification time of the directory, a rescan only lists again the
+ * directories whose content changed.
+ */
+public class BBRecipeIndex {
+	public static final String RECIPE_EXTENSION = ".bb";
+	public static final String APPEND_EXTENSION = ".bbappend";
+
+	private static final ForkJoinPool scanPool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+	private final List<String> patterns;
+	private final List<Path> ignored = new ArrayList<Path>();
+	private final Map<Path, Listing> listings = new ConcurrentHashMap<Path, Listing>();
+
+	private volatile List<File> recipes = Collections.emptyList();
+	private volatile List<File> appends = Collections.emptyList();
+	private volatile List<PathMatcher> fullMatchers = null;
+
+	/**
+	 * A cached directory listing.
+	 */
+	private static class Listing {
+		final long modified;
+		final String[] dirs;
+		final String[] files;
+
+		Listing(long modified, String[] dirs, String[] files) {
+			this.modified = modified;
+			this.dirs = dirs;
+			this.files = files;
+		}
+	}
+
+	/**
+	 * @param bbfiles the value of BBFILES
+	 * @param ignoredDirs directories never visited, such as TMPDIR, DL_DIR
+	 * and SSTATE_DIR. Null entries are ignored.
+	 */
+	public BBRecipeIndex(String bbfiles, Collection<String> ignoredDirs) {
+		patterns = new ArrayList<String>();
+		if (bbfiles != null) {
+			String[] elems = bbfiles.trim().split("\\s+");
+			for (int i = 0; i < elems.length; i++) {
+				if (elems[i].length() > 0) {
+					patterns.add(elems[i]);
+				}
+			}
+		}
+		if (ignoredDirs != null) {
+			for (Iterator<String> i = ignoredDirs.iterator(); i.hasNext();) {
+				String dir = i.next();
+				if (dir != null && dir.length() > 0) {
+					ignored.add(Paths.get(dir).normalize());
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the BBFILES patterns this index evaluates.
+	 */
+	public List<String> getPatterns() {
+		return Collections.unmodifiableList(patterns);
+	}
+
+	/**
+	 * Evaluate the patterns against the file system, reusing the listings
+	 * of unchanged directories.
+	 */
+	public void scan() {
+		final Collection<Path> found = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+		List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+
+		for (Iterator<String> i = patterns.iterator(); i.hasNext();) {
+			String pattern = i.next();
+			String[] segments = pattern.split("/");
+			StringBuilder base = new StringBuilder();
+			int first = 0;
+			while (first < segments.length - 1 && !isGlob(segments[first])) {
+				base.append(segments[first]).append('/');
+				first++;
+			}
+			if (base.length() == 0) {
+				// relative patterns are not supported
+				continue;
+			}
+			PathMatcher[] matchers = new PathMatcher[segments.length - first];
+			for (int j = first; j < segments.length; j++) {
+				matchers[j - first] = isGlob(segments[j]) ? FileSystems.getDefault().getPathMatcher("glob:" + segments[j]) : new NameMatcher(segments[j]);
+			}
+			tasks.add(new ScanTask(Paths.get(base.toString()).normalize(), matchers, 0, found));
+		}
+
+		if (!tasks.isEmpty()) {
+			scanPool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		}
+
+		TreeSet<String> recipeSet = new TreeSet<String>();
+		TreeSet<String> appendSet = new TreeSet<String>();
+		for (Iterator<Path> i = found.iterator(); i.hasNext();) {
+			String path = i.next().toString();
+			if (path.endsWith(APPEND_EXTENSION)) {
+				appendSet.add(path);
+			} else if (path.endsWith(RECIPE_EXTENSION)) {
+				recipeSet.add(path);
+			}
+		}
+		recipes = toFiles(recipeSet);
+		appends = toFiles(appendSet);
+	}
+
+	/**
+	 * Tell whether a file is matched by the patterns, without scanning.
+	 *
+	 * @param path absolute path of a recipe or append
+	 * @return true if one of the BBFILES patterns matches the path
+	 */
+	public boolean matches(String path) {
+		Path p = Paths.get(path).normalize();
+		if (isIgnored(p)) {
+			return false;
+		}
+		List<PathMatcher> matchers = fullMatchers;
+		if (matchers == null) {
+			matchers = new ArrayList<PathMatcher>(patterns.size());
+			for (Iterator<String> i = patterns.iterator(); i.hasNext();) {
+				matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + i.next()));
+			}
+			fullMatchers = matchers;
+		}
+		for (Iterator<PathMatcher> i = matchers.iterator(); i.hasNext();) {
+			if (i.next().matches(p)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the recipe files found by the last scan, sorted by path.
+	 */
+	public List<File> getRecipes() {
+		return recipes;
+	}
+
+	/**
+	 * @return the append files found by the last scan, sorted by path.
+	 */
+	public List<File> getAppends() {
+		return appends;
+	}
+
+	/**
+	 * Find the appends applying to a recipe. As in bitbake, an append named
+	 * <code>foo_%.bbappend</code> applies to any version of recipe foo.
+	 *
+	 * @param recipe
+	 * @return the matching append files
+	 */
+	public List<File> getAppends(File recipe) {
+		String name = recipe.getName();
+		if (name.endsWith(RECIPE_EXTENSION)) {
+			name = name.substring(0, name.length() - RECIPE_EXTENSION.length());
+		}
+		List<File> result = new ArrayList<File>();
+		for (Iterator<File> i = appends.iterator(); i.hasNext();) {
+			File append = i.next();
+			String appendName = append.getName();
+			appendName = appendName.substring(0, appendName.length() - APPEND_EXTENSION.length());
+			int wildcard = appendName.indexOf('%');
+			if (wildcard >= 0 ? name.startsWith(appendName.substring(0, wildcard)) : name.equals(appendName)) {
+				result.add(append);
+			}
+		}
+		return result;
+	}
+
+	private static List<File> toFiles(Collection<String> paths) {
+		List<File> files = new ArrayList<File>(paths.size());
+		for (Iterator<String> i = paths.iterator(); i.hasNext();) {
+			files.add(new File(i.next()));
+		}
+		return Collections.unmodifiableList(files);
+	}
+
+	private static boolean isGlob(String segment) {
+		for (int i = 0; i < segment.length(); i++) {
+			char c = segment.charAt(i);
+			if (c == '*' || c == '?' || c == '[' || c == '{') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isIgnored(Path dir) {
+		for (Iterator<Path> i = ignored.iterator(); i.hasNext();) {
+			if (dir.startsWith(i.next())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param dir
+	 * @return the listing of a directory, read again only if the directory
+	 * was modified since it was cached. Null if it cannot be read.
+	 */
+	private Listing list(Path dir) {
+		long modified;
+		try {
+			modified = Files.getLastModifiedTime(dir).toMillis();
+		} catch (IOException e) {
+			listings.remove(dir);
+			return null;
+		}
+		Listing listing = listings.get(dir);
+		if (listing != null && listing.modified == modified) {
+			return listing;
+		}
+
+		List<String> dirs = new ArrayList<String>();
+		List<String> files = new ArrayList<String>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for (Iterator<Path> i = stream.iterator(); i.hasNext();) {
+				Path child = i.next();
+				BasicFileAttributes attrs;
+				try {
+					attrs = Files.readAttributes(child, BasicFileAttributes.class);
+				} catch (IOException e) {
+					// dangling symbolic link
+					attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+				}
+				if (attrs.isDirectory()) {
+					dirs.add(child.getFileName().toString());
+				} else if (attrs.isRegularFile()) {
+					files.add(child.getFileName().toString());
+				}
+			}
+		} catch (IOException e) {
+			listings.remove(dir);
+			return null;
+		}
+		listing = new Listing(modified, dirs.toArray(new String[dirs.size()]), files.toArray(new String[files.size()]));
+		listings.put(dir, listing);
+		return listing;
+	}
+
+	/**
+	 * Matches a path segment without any wildcard.
+	 */
+	private static class NameMatcher implements PathMatcher {
+		private final String name;
+
+		NameMatcher(String name) {
+			this.name = name;
+		}
+
+		public boolean matches(Path path) {
+			return name.equals(path.toString());
+		}
+	}
+
+	/**
+	 * Matches the segment at the given depth of a pattern in a directory,
+	 * forking a task for every matching sub-directory.
+	 */
+	private class ScanTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Path dir;
+		private final PathMatcher[] matchers;
+		private final int depth;
+		private final Collection<Path> found;
+
+		ScanTask(Path dir, PathMatcher[] matchers, int depth, Collection<Path> found) {
+			this.dir = dir;
+			this.matchers = matchers;
+			this.depth = depth;
+			this.found = found;
+		}
+
+		@Override
+		protected void compute() {
+			if (isIgnored(dir)) {
+				return;
+			}
+			Listing listing = list(dir);
+			if (listing == null) {
+				return;
+			}
+			PathMatcher matcher = matchers[depth];
+			// hidden entries are skipped, as glob does
+			if (depth == matchers.length - 1) {
+				for (int i = 0; i < listing.files.length; i++) {
+					if (!listing.files[i].startsWith(".") && matcher.matches(Paths.get(listing.files[i]))) {
+						found.add(dir.resolve(listing.files[i]));
+					}
+				}
+				return;
+			}
+
+			List<ScanTask> children = new ArrayList<ScanTask>();
+			for (int i = 0; i < listing.dirs.length; i++) {
+				if (!listing.dirs[i].startsWith(".") && matcher.matches(Paths.get(listing.dirs[i]))) {
+					children.add(new ScanTask(dir.resolve(listing.dirs[i]), matchers, depth + 1, found));
+				}
+			}
+			invokeAll(children);
+		}
+	}
+}
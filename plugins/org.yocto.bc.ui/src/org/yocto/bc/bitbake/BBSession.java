@@ -12,20 +12,25 @@ package org.yocto.bc.bitbake;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileFilter;
 import java.io.IOException;
 import java.io.StringReader;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
@@ -34,6 +39,7 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.preference.JFacePreferences;
 import org.eclipse.jface.resource.JFaceResources;
 import org.eclipse.ui.console.ConsolePlugin;
@@ -57,192 +63,128 @@ public class BBSession implements IBBSessionListener, IModelElement, Map<String,
 	public static final int TYPE_UNKNOWN = 2;
 	public static final int TYPE_STATEMENT = 3;
 	public static final int TYPE_FLAG = 4;
+	private static final long MIN_RETRY_DELAY = 10 * 1000;
+	private static final long MAX_RETRY_DELAY = 10 * 60 * 1000;
 	
 	protected final ProjectInfo pinfo;
-	protected final ShellSession shell;
-	protected Map<String, Object> properties = null;
-	protected List<String> depends = null;
-	protected boolean initialized = false;
+	protected final Writer out;
+	private ShellSession shell = null;
+	protected volatile BBEnvironment properties = null;
+	protected volatile Set<String> depends = null;
+	protected volatile boolean initialized = false;
 	protected MessageConsole sessionConsole;
-	private final ReentrantReadWriteLock rwlock = new ReentrantReadWriteLock();
-	private final Lock rlock = rwlock.readLock();
-	private final Lock wlock = rwlock.writeLock();
+	private final Lock wlock = new ReentrantLock();
+	private final Object refreshLock = new Object();
+	private CompletableFuture<Map<String, Object>> pendingRefresh = null;
+	private final AtomicInteger changes = new AtomicInteger();
+	// a failed parse is retried on a change or once a growing delay elapsed
+	private int failures = 0;
+	private volatile int failedGeneration = -1;
+	private volatile long retryTime = 0;
 	protected String parsingCmd;
+	protected BBEnvironmentCache envCache;
+	protected ShellSessionPool shellPool;
+	private final Object recipeIndexLock = new Object();
+	private BBRecipeIndex recipeIndex = null;
+	private volatile Runnable loadListener = null;
+	private String recipeIndexFiles = null;
 
-	public BBSession(ShellSession ssession, String projectRoot) throws IOException {
-		shell = ssession;
+	/**
+	 * @param out where the bitbake commands and their output are echoed, may
+	 * be null
+	 * @param projectRoot
+	 * @throws IOException
+	 */
+	public BBSession(Writer out, String projectRoot) throws IOException {
+		this.out = out;
 		this.pinfo = new ProjectInfo();
 		pinfo.setLocation(projectRoot);
 		pinfo.setInitScriptPath(ProjectInfoHelper.getInitScriptPath(projectRoot));
 		this.parsingCmd = "DISABLE_SANITY_CHECKS=1 bitbake -e";
 	}
 
-	private Collection<IPath> adapttoIPath(List<File> asList, IProject project) {
-
-		List<IPath> pathList = new ArrayList<IPath>();
-
-		for (Iterator<File> i = asList.iterator(); i.hasNext();) {
-			File f = (File) i.next();
-			IFile ff = project.getFile(stripLeading(f.toString(), project.getLocationURI().getPath()));
-			if (ff.exists()) {
-				pathList.add((IPath) ff);
-			}
-		}
-
-		return pathList;
-	}
-	
-	private String appendAll(String[] elems, int st) {
-		StringBuffer sb = new StringBuffer();
-
-		for (int i = st; i < elems.length; ++i) {
-			sb.append(elems[i]);
-		}
-
-		return sb.toString();
-	}
-	
-	private int charCount(String trimmed, char c) {
-		int i = 0;
-		int p = 0;
-
-		while ((p = trimmed.indexOf(c, p)) > -1) {
-			i++;
-			p++;
-		}
-
-		return i;
-	}
-	
 	public void clear() {
 		throw new RuntimeException("BB configuration is read-only.");
 	}
 
 	public boolean containsKey(Object arg0) {
-		try {
-			checkValidAndLock(true);
-			return properties.containsKey(arg0);
-		} catch (Exception e) {
-			e.printStackTrace();
-			return false;
-		}finally {
-			rlock.unlock();
-		}
+		return getSnapshot().containsKey(arg0);
 	}
 
 	public boolean containsValue(Object arg0) {
-		try {
-			checkValidAndLock(true);
-			return properties.containsValue(arg0);
-		} catch (Exception e) {
-			e.printStackTrace();
-			return false;
-		}finally {
-			rlock.unlock();
-		}
+		return getSnapshot().containsValue(arg0);
 	}
 
 	public Set<java.util.Map.Entry<String, Object>> entrySet() {
-		try {
-			checkValidAndLock(true);
-			return properties.entrySet();
-		} catch (Exception e) {
-			e.printStackTrace();
-			return null;
-		}finally {
-			rlock.unlock();
-		}
+		return getSnapshot().entrySet();
 	}
 
 	@Override
 	public boolean equals(Object arg0) {
-		try {
-			checkValidAndLock(true);
-			return properties.equals(arg0);
-		} catch (Exception e) {
-			e.printStackTrace();
-			return false;
-		}finally {
-			rlock.unlock();
-		}
+		return getSnapshot().equals(arg0);
 	}
 
-	public ShellSession getShell() {
-		return shell;
+	/**
+	 * Set the persistent cache used to avoid re-running bitbake when none of
+	 * the files the environment depends on changed.
+	 * 
+	 * @param envCache
+	 */
+	public void setEnvironmentCache(BBEnvironmentCache envCache) {
+		this.envCache = envCache;
 	}
 
-	public String getProjInfoRoot() {
-		return pinfo.getRootPath();
+	public BBEnvironmentCache getEnvironmentCache() {
+		return envCache;
 	}
 
 	/**
-	 * Recursively generate list of Recipe files from a root directory.
+	 * Set the pool of shells used to run bitbake concurrently with other
+	 * sessions of the same project.
 	 * 
-	 * @param rootDir
-	 * @param recipes
-	 * @param fileExtension
-	 * @param project
+	 * @param shellPool
 	 */
-	private void findRecipes(File rootDir, List<IPath> recipes, final String fileExtension, IProject project) {
-		File[] children = rootDir.listFiles(new FileFilter() {
-
-			public boolean accept(File pathname) {
-				return pathname.isFile() && pathname.getName().endsWith(fileExtension);
-			}
-
-		});
-
-		if (children != null && children.length > 0) {
-			recipes.addAll(adapttoIPath(Arrays.asList(children), project));
-		}
-
-		File[] childDirs = rootDir.listFiles(new FileFilter() {
-
-			public boolean accept(File pathname) {
-				return pathname.isDirectory();
-			}
+	public void setShellPool(ShellSessionPool shellPool) {
+		this.shellPool = shellPool;
+	}
 
-		});
+	public ShellSessionPool getShellPool() {
+		return shellPool;
+	}
 
-		if (childDirs != null && childDirs.length > 0) {
-			for (int i = 0; i < childDirs.length; ++i) {
-				findRecipes(childDirs[i], recipes, fileExtension, project);
+	/**
+	 * Borrow a shell from the pool of this session, or the session shell if
+	 * there is no pool. It must be given back with {@link #releaseShell(ShellSession)}.
+	 * 
+	 * @return a shell ready to run bitbake commands, echoing them to the
+	 * writer of the session
+	 * @throws IOException
+	 */
+	public ShellSession borrowShell() throws IOException {
+		if (shellPool == null) {
+			synchronized (this) {
+				if (shell == null) {
+					shell = new ShellSession(ShellSession.SHELL_TYPE_BASH, new File(pinfo.getRootPath()),
+							pinfo.getInitScriptPath(), out);
+				}
+				return shell;
 			}
 		}
+		return shellPool.borrow(out);
 	}
 
-	private Collection<IPath> findRecipes(List<IPath> paths, IProject project) {
-		List<IPath> recipes = new ArrayList<IPath>();
-
-		for (Iterator<IPath> i = paths.iterator(); i.hasNext();) {
-			String rawPath = i.next().toString();
-			String[] elems = rawPath.split("\\*/\\*");
-
-			if (elems.length == 2) {
-
-				File rootDir = new File(elems[0]);
-
-				findRecipes(rootDir, recipes, elems[1], project);
-			}
+	public void releaseShell(ShellSession s) {
+		if (shellPool != null && s != shell) {
+			shellPool.release(s);
 		}
-
-		return recipes;
 	}
 
-	public Object get(Object arg0) {
-		try {
-			checkValidAndLock(true);
-			return properties.get(arg0);
-		} catch (Exception e) {
-			e.printStackTrace();
-			return null;
-		}finally {
-			rlock.unlock();
-		}
+	public String getProjInfoRoot() {
+		return pinfo.getRootPath();
 	}
 
-	private List<String> getBitBakeKeywords() {
-		return Arrays.asList(BBLanguageHelper.BITBAKE_KEYWORDS);
+	public Object get(Object arg0) {
+		return getSnapshot().get(arg0);
 	}
 
 	/**
@@ -269,53 +211,81 @@ public class BBSession implements IBBSessionListener, IModelElement, Map<String,
 		return sessionConsole;
 	}
 
-	private int getLineType(String line) {
+	/**
+	 * Find the recipes of the project. This waits for the environment to be
+	 * parsed if it is not available yet.
+	 * 
+	 * @param project
+	 * @return the recipe files matched by BBFILES
+	 */
+	public Collection<IFile> getRecipeFiles(IProject project) {
+		try {
+			Map<String, Object> env = getEnvironment();
+			String bbfiles = (String) env.get("BBFILES");
+			List<File> files;
+			synchronized (recipeIndexLock) {
+				if (recipeIndex == null || !bbfiles.equals(recipeIndexFiles)) {
+					List<String> ignored = new ArrayList<String>();
+					ignored.add((String) env.get("TMPDIR"));
+					ignored.add((String) env.get("DL_DIR"));
+					ignored.add((String) env.get("SSTATE_DIR"));
+					recipeIndex = new BBRecipeIndex(bbfiles, ignored);
+					recipeIndexFiles = bbfiles;
+				}
+				recipeIndex.scan();
+				files = recipeIndex.getRecipes();
+			}
 
-		if (line.contains("=")) {
-			return TYPE_VARIABLE_ASSIGNMENT;
+			return toProjectFiles(files, project);
+		} catch (Exception e) {
+			return null;
 		}
+	}
 
-		for (Iterator<String> i = getBitBakeKeywords().iterator(); i.hasNext();) {
-			if (line.startsWith((String) i.next())) {
-				return TYPE_STATEMENT;
+	/**
+	 * @param project
+	 * @return the bbappend files matched by BBFILES when
+	 * {@link #getRecipeFiles(IProject)} was last called.
+	 */
+	public Collection<IFile> getAppendFiles(IProject project) {
+		List<File> files;
+		synchronized (recipeIndexLock) {
+			if (recipeIndex == null) {
+				return new ArrayList<IFile>();
 			}
+			files = recipeIndex.getAppends();
 		}
-
-		if (line.contains(":")) {
-			return TYPE_FLAG;
-		}
-
-		return TYPE_UNKNOWN;
+		return toProjectFiles(files, project);
 	}
 
-	public Collection<IPath> getRecipeFiles(IProject project) {
-		try {
-			checkValidAndLock(true);
-			if (!initialized) {
-				throw new RuntimeException(this.getClass().getName() + " is not initialized.");
+	private static List<IFile> toProjectFiles(List<File> files, IProject project) {
+		String root = project.getLocationURI().getPath();
+		if (!root.endsWith("/")) {
+			root = root + "/";
+		}
+		List<IFile> result = new ArrayList<IFile>(files.size());
+		for (Iterator<File> i = files.iterator(); i.hasNext();) {
+			String path = i.next().getPath();
+			if (path.startsWith(root)) {
+				result.add(project.getFile(path.substring(root.length())));
 			}
-			String bbfiles = (String) this.properties.get("BBFILES");
-			List<IPath> paths = parseBBFiles(bbfiles);
-			return findRecipes(paths, project);
-		} catch (Exception e) {
-			return null;
 		}
-		finally {
-			rlock.unlock();
+		return result;
+	}
+
+	/**
+	 * @return the index of the recipes matched by BBFILES, or null if
+	 * {@link #getRecipeFiles(IProject)} was never called.
+	 */
+	public BBRecipeIndex getRecipeIndex() {
+		synchronized (recipeIndexLock) {
+			return recipeIndex;
 		}
 	}
 
 	@Override
 	public int hashCode() {
-		try {
-			checkValidAndLock(true);
-			return properties.hashCode();
-		} catch (Exception e) {
-			e.printStackTrace();
-			return 0;
-		}finally {
-			rlock.unlock();
-		}
+		return getSnapshot().hashCode();
 	}
 
 	protected int checkExecuteError(String result, int code) {
@@ -351,251 +321,348 @@ public class BBSession implements IBBSessionListener, IModelElement, Map<String,
 		}.schedule();
 	}
 
-	private void checkValidAndLock(boolean rdlck) throws Exception {
-		if(rdlck)
-			rlock.lock();
-		else
-			wlock.lock();
-		if(!initialized) {
-			//upgrade lock manually
-			if(rdlck) {
-				rlock.unlock();
-				wlock.lock();
+	/**
+	 * Parse the environment if it is not valid, running bitbake unless the
+	 * persistent cache has an up to date copy.
+	 * 
+	 * @return the valid environment
+	 * @throws Exception
+	 */
+	private Map<String, Object> load() throws Exception {
+		wlock.lock();
+		try {
+			if(!initialized) {
+				int generation = changes.get();
+				try {
+					parse();
+				} catch (Exception e) {
+					failures++;
+					retryTime = System.currentTimeMillis() + Math.min(MAX_RETRY_DELAY, MIN_RETRY_DELAY << Math.min(failures - 1, 16));
+					failedGeneration = generation;
+					throw e;
+				}
+				failures = 0;
+				failedGeneration = -1;
+				// a change notified while parsing leaves the session out of date
+				initialized = (generation == changes.get());
 			}
+			return properties;
+		} finally {
+			wlock.unlock();
+		}
+	}
+
+	/**
+	 * Set the environment from the persistent cache or else from bitbake.
+	 * Called with the write lock held.
+	 * 
+	 * @throws Exception
+	 */
+	private void parse() throws Exception {
+		if (!loadFromCache()) {
+			int [] codes = {-1};
+			BBEnvironmentParser parser = new BBEnvironmentParser();
+			ShellSession s = borrowShell();
 			try {
-				if(!initialized) { //recheck
-					int [] codes = {-1};
-					String result = shell.execute(parsingCmd, codes);
-					if(checkExecuteError(result, codes[0]) == 0) {
-						properties = parseBBEnvironment(result);
-					} else {
-						properties = parseBBEnvironment("");
-					}
-					initialized = true;
-				}
+				s.execute(parsingCmd, codes, parser);
 			} finally {
-				//downgrade lock
-				if(rdlck) {
-					rlock.lock();
-					wlock.unlock();
+				releaseShell(s);
+			}
+			if(checkExecuteError(parser.getTail(), codes[0]) == 0) {
+				Map<String, Object> env = parseBBEnvironment(parser.getEnvironment());
+				if (envCache != null) {
+					envCache.store(pinfo.getRootPath(), parsingCmd, env, depends);
 				}
+				setProperties(BBEnvironment.create(env, getBaseEnvironment()));
+			} else {
+				setProperties(BBEnvironment.create(parseBBEnvironment(""), getBaseEnvironment()));
 			}
 		}
-		//not release lock
 	}
 
-	public void initialize() throws Exception {
-		try {
-			checkValidAndLock(false);
-		}finally {
-			wlock.unlock();
+	/**
+	 * Parse the environment in a background job. Only one refresh runs at a
+	 * time, a caller asking while one is running gets the same future.
+	 * 
+	 * @return a future completed with the new environment once it is available
+	 */
+	public CompletableFuture<Map<String, Object>> refresh() {
+		synchronized (refreshLock) {
+			if (pendingRefresh != null) {
+				return pendingRefresh;
+			}
+			final CompletableFuture<Map<String, Object>> future = new CompletableFuture<Map<String, Object>>();
+			pendingRefresh = future;
+			String recipe = getDefaultDepends();
+			Job job = new Job("Parsing BitBake environment of " + ((recipe != null) ? recipe : pinfo.getRootPath())) {
+				@Override
+				protected IStatus run(IProgressMonitor monitor) {
+					try {
+						future.complete(load());
+					} catch (Throwable e) {
+						future.completeExceptionally(e);
+					} finally {
+						synchronized (refreshLock) {
+							if (pendingRefresh == future) {
+								pendingRefresh = null;
+							}
+						}
+					}
+					return Status.OK_STATUS;
+				}
+			};
+			job.schedule();
+			return future;
 		}
 	}
 
-	private boolean isBlockEnd(String trimmed) {
-		return charCount(trimmed, '}') > charCount(trimmed, '{');
-		// return trimmed.indexOf('}') > -1 && trimmed.indexOf('{') == -1;
+	/**
+	 * @return true while the environment is being parsed in the background.
+	 */
+	public boolean isLoading() {
+		synchronized (refreshLock) {
+			return pendingRefresh != null;
+		}
 	}
 
-	private boolean isBlockStart(String trimmed) {
-		return charCount(trimmed, '{') > charCount(trimmed, '}');
-		// return trimmed.indexOf('{') > -1 && trimmed.indexOf('}') == -1;
+	/**
+	 * Return the last known environment without blocking. If it is out of
+	 * date or has never been parsed, a background refresh is started and the
+	 * stale environment, or an empty one while loading, is returned. After a
+	 * failed parse, no refresh is started until a dependency changes or a
+	 * delay, growing with the failures, elapsed.
+	 * 
+	 * @return an immutable snapshot of the environment
+	 */
+	public Map<String, Object> getSnapshot() {
+		Map<String, Object> snapshot = properties;
+		if (!initialized && (failedGeneration != changes.get() || System.currentTimeMillis() >= retryTime)) {
+			refresh();
+		}
+		if (snapshot == null) {
+			return BBEnvironment.empty();
+		}
+		return snapshot;
 	}
 
-	public boolean isEmpty() {
-		try {
-			checkValidAndLock(true);
-			return properties.isEmpty();
-		} catch (Exception e) {
-			e.printStackTrace();
-			return true;
-		}finally {
-			rlock.unlock();
+	/**
+	 * Return the up to date environment, parsing it on the calling thread if
+	 * needed.
+	 * 
+	 * @return an immutable snapshot of the environment
+	 * @throws Exception
+	 */
+	public Map<String, Object> getEnvironment() throws Exception {
+		Map<String, Object> snapshot = properties;
+		if (initialized && snapshot != null) {
+			return snapshot;
 		}
+		return load();
 	}
-	
-	public Set<String> keySet() {
+
+	/**
+	 * Wait at most the given time for an up to date environment.
+	 * 
+	 * @param timeout
+	 * @param unit
+	 * @return the up to date environment, or the last known one if it could
+	 * not be parsed in time
+	 * @throws InterruptedException
+	 */
+	public Map<String, Object> getEnvironment(long timeout, TimeUnit unit) throws InterruptedException {
+		if (initialized && properties != null) {
+			return properties;
+		}
 		try {
-			checkValidAndLock(true);
-			return properties.keySet();
-		} catch (Exception e) {
-			e.printStackTrace();
-			return null;
-		}finally {
-			rlock.unlock();
+			return refresh().get(timeout, unit);
+		} catch (TimeoutException e) {
+			return getSnapshot();
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			return getSnapshot();
 		}
 	}
 
-	protected void parse(String content, Map<String, Object> env) throws Exception {
-		BufferedReader reader = new BufferedReader(new StringReader(content));
-		String line;
-		boolean inLine = false;
-		StringBuffer sb = null;
-		Stack<Object> blockStack = new Stack<Object>();
-
-		while ((line = reader.readLine()) != null) {
-			String trimmed = line.trim();
-			if (trimmed.length() == 0 || line.startsWith("#")) {
-				// weed out the blank and comment lines
-				continue;
-			}
-			// Now we look for block start ends, and ignore all code within
-			// blocks.
-			if (isBlockStart(trimmed)) {
-				blockStack.push(trimmed);
-			} else if (isBlockEnd(trimmed)) {
-				blockStack.pop();
+	private boolean loadFromCache() {
+		if (envCache == null) {
+			return false;
+		}
+		Set<String> cachedDepends = new LinkedHashSet<String>();
+		Map<String, Object> cached = envCache.load(pinfo.getRootPath(), parsingCmd, cachedDepends);
+		if (cached == null) {
+			return false;
+		}
+		setProperties(BBEnvironment.create(cached, getBaseEnvironment()));
+		depends = cachedDepends;
 
-			}
+		String recipe = getDefaultDepends();
+		String text = "Loaded " + ((recipe != null) ? ("recipe " + recipe) : "base configurations")
+				+ " from environment cache (" + envCache.getHitCount() + " hits, "
+				+ envCache.getMissCount() + " misses).\n";
+		displayInConsole(text, 0, false);
+		return true;
+	}
 
-			if (!blockStack.isEmpty()) {
-				// we are in a code block, continue until we break into global
-				// scope.
-				continue;
-			}
-			if (trimmed.endsWith("\\")) {
-				if (!inLine) {
-					inLine = true;
-					sb = new StringBuffer(trimmed.substring(0, trimmed.length() - 1));
-				} else {
-					sb.append(trimmed.substring(0, trimmed.length() - 1));
-				}
-				// Only parse the line when we have the complete contents.
-				continue;
-			} else if (inLine) {
-				inLine = false;
-				line = sb.toString();
+	/**
+	 * Initialize this session from the persistent environment cache only,
+	 * without running bitbake.
+	 * 
+	 * @return true if the session is initialized
+	 */
+	public boolean loadCachedEnvironment() {
+		wlock.lock();
+		try {
+			if (!initialized && loadFromCache()) {
+				initialized = true;
 			}
-
-			parseLine(line, env);
+			return initialized;
+		} finally {
+			wlock.unlock();
 		}
 	}
-	
-	private void parseAdditiveAssignment(String line, String operator, Map<String, Object> env) throws Exception {
-		String[] elems = splitAssignment(line, "\\+=");
 
-		if (elems.length != 2) {
-			throw new Exception("Unable to parse additive variable assignment in line: " + line);
-		}
-
-		if (!env.containsKey(elems[0])) {
-			env.put(elems[0].trim(), elems[1]);
-		} else {
-			String existing = (String) env.get(elems[0]);
-			if (operator.equals("+=")) {
-				env.put(elems[0], existing + elems[1]);
-			} else {
-				env.put(elems[0], elems[1] + existing);
+	/**
+	 * Initialize this session with an environment extracted elsewhere, for
+	 * example by {@link #parseRecipes(Collection)}.
+	 * 
+	 * @param env
+	 */
+	public void initialize(Map<String, Object> env) {
+		wlock.lock();
+		try {
+			Map<String, Object> parsed = parseBBEnvironment(env);
+			if (envCache != null) {
+				envCache.store(pinfo.getRootPath(), parsingCmd, parsed, depends);
 			}
+			setProperties(BBEnvironment.create(parsed, getBaseEnvironment()));
+			initialized = true;
+		} finally {
+			wlock.unlock();
 		}
 	}
 
-	protected String getDefaultDepends() {
-		return null;
+	/**
+	 * @param listener run every time a new environment is set, for example
+	 * to account for the memory it uses, may be null
+	 */
+	public void setLoadListener(Runnable listener) {
+		loadListener = listener;
 	}
-	
-	protected Map<String, Object> parseBBEnvironment(String bbOut) throws Exception {
-		Map<String, Object> env = new Hashtable<String, Object>();
-		this.depends = new ArrayList<String>();
-
-		parse(bbOut, env);
 
-		String included = (String) env.get("BBINCLUDED");
-		if(getDefaultDepends() != null) {
-			this.depends.add(getDefaultDepends());
-		}
-		if(included != null) {
-			this.depends.addAll(Arrays.asList(included.split(" ")));
+	private void setProperties(BBEnvironment env) {
+		properties = env;
+		Runnable listener = loadListener;
+		if (listener != null) {
+			listener.run();
 		}
-
-		return env;
 	}
 
-	private List<IPath> parseBBFiles(String bbfiles) {
-		List<String> bbfiles_list = Arrays.asList(bbfiles.split(" "));
-		List<IPath> paths = new ArrayList<IPath>();
-
-		for (Iterator<String> i = bbfiles_list.iterator(); i.hasNext();) {
-			// TODO: check that path exists?
-			paths.add((IPath) i);
-		}
-		return paths;
+	/**
+	 * @return a rough estimate in bytes of the memory used by the environment.
+	 */
+	public long estimateSize() {
+		BBEnvironment env = properties;
+		return (env != null) ? env.estimateSize() : 0;
 	}
-	
-	//Map delegate methods 
 
-	private void parseConditionalAssignment(String line, Map<String, Object> env) throws Exception {
-		String[] elems = splitAssignment(line, "\\?=");
+	public boolean isInitialized() {
+		return initialized;
+	}
 
-		if (elems.length != 2) {
-			throw new Exception("Unable to parse conditional variable assignment in line: " + line);
+	/**
+	 * Extract the environments of many recipes with one bitbake process, so
+	 * the base configuration is parsed once rather than once per recipe.
+	 * 
+	 * @param recipePaths
+	 * @return the environments keyed by recipe path. Recipes that failed to
+	 * parse are not included.
+	 * @throws IOException
+	 */
+	public Map<String, Map<String, Object>> parseRecipes(Collection<String> recipePaths) throws IOException {
+		if (recipePaths.isEmpty()) {
+			return new Hashtable<String, Map<String, Object>>();
 		}
 
-		if (!env.containsKey(elems[0].trim())) {
-			env.put(elems[0].trim(), elems[1].trim());
+		int [] codes = {-1};
+		BBRecipeBatch batch = new BBRecipeBatch();
+		ShellSession s = borrowShell();
+		try {
+			s.execute(BBRecipeBatch.getCommand(recipePaths), codes, batch);
+		} finally {
+			releaseShell(s);
 		}
-	}
 
-	private void parseImmediateAssignment(String line, String delimiter, Map<String, Object> env) throws Exception {
-		String[] elems = splitAssignment(line, delimiter);
+		Map<String, Map<String, Object>> envs = batch.getEnvironments();
+		String text = "Parsing " + recipePaths.size() + " recipes: " + envs.size() + " parsed";
+		if (codes[0] != 0 || envs.size() != recipePaths.size()) {
+			text = text + ", " + (recipePaths.size() - envs.size()) + " failed.\n" + batch.getTail();
+			displayInConsole(text, 1, false);
+		} else {
+			displayInConsole(text + ".\n", 0, false);
+		}
 
-		env.put(elems[0], substitute(elems[1], env));
+		return envs;
 	}
 
-	private void parseKeyValue(String line, String delimiter, Map<String, Object> env) throws Exception {
-		String[] elems = splitAssignment(line, delimiter);
+	public void initialize() throws Exception {
+		getEnvironment();
+	}
 
-		env.put(elems[0], elems[1]);
+	public boolean isEmpty() {
+		return getSnapshot().isEmpty();
+	}
+	
+	public Set<String> keySet() {
+		return getSnapshot().keySet();
 	}
 
-	private void parseLine(String line, Map<String, Object> env) throws Exception {
+	protected void parse(String content, Map<String, Object> env) throws Exception {
+		BBEnvironmentParser parser = new BBEnvironmentParser(env);
+		BufferedReader reader = new BufferedReader(new StringReader(content));
+		String line;
 
-		switch (getLineType(line)) {
-		case TYPE_VARIABLE_ASSIGNMENT:
-			parseVariableAssignment(line, env);
-			break;
-		case TYPE_STATEMENT:
-		case TYPE_FLAG:
-			// for now ignore statements
-			break;
-		case TYPE_UNKNOWN:
-			// we'll gloss over unknown lines as well;
-			break;
-		default:
-			throw new Exception("Unable to parse line: " + line);
+		while ((line = reader.readLine()) != null) {
+			parser.parseLine(line);
 		}
 	}
 
-	private void parseVariableAssignment(String line, Map<String, Object> env) throws Exception {
-		if (line.contains("?=")) {
-			parseConditionalAssignment(line, env);
-		} else if (line.contains("+=")) {
-			parseAdditiveAssignment(line, "+=", env);
-		} else if (line.contains("=+")) {
-			parseAdditiveAssignment(line, "=+", env);
-		} else if (line.contains(":=")) {
-			parseImmediateAssignment(line, ":=", env);
-		} else {
-			parseKeyValue(line, "=", env);
-		}
+	protected String getDefaultDepends() {
+		return null;
+	}
 
+	/**
+	 * @return the environment whose values the snapshots of this session
+	 * share, or null for a base configuration.
+	 */
+	protected BBEnvironment getBaseEnvironment() {
+		return null;
 	}
+	
+	protected Map<String, Object> parseBBEnvironment(String bbOut) throws Exception {
+		Map<String, Object> env = new Hashtable<String, Object>();
 
-	private List<String> parseVars(String line) {
-		List<String> l = new ArrayList<String>();
+		parse(bbOut, env);
 
-		int i = 0;
+		return parseBBEnvironment(env);
+	}
 
-		while ((i = line.indexOf("${", i)) > -1) {
-			int i2 = line.indexOf("}", i);
+	protected Map<String, Object> parseBBEnvironment(Map<String, Object> env) {
+		Set<String> depends = new LinkedHashSet<String>();
 
-			l.add((String) line.subSequence(i + 2, i2));
-			i++;
+		String included = (String) env.get("BBINCLUDED");
+		if(getDefaultDepends() != null) {
+			depends.add(getDefaultDepends());
 		}
+		if(included != null) {
+			depends.addAll(Arrays.asList(included.split(" ")));
+		}
+		this.depends = depends;
 
-		return l;
+		return env;
 	}
 
+	//Map delegate methods 
+
 	public Object put(String arg0, Object arg1) {
 		throw new RuntimeException("BB configuration is read-only.");
 	}
@@ -609,66 +676,10 @@ public class BBSession implements IBBSessionListener, IModelElement, Map<String,
 		throw new RuntimeException("BB configuration is read-only.");
 	}
 
-	private String removeQuotes(String line) {
-		line = line.trim();
-
-		if (line.startsWith("\"")) {
-			line = line.substring(1);
-		}
-
-		if (line.endsWith("\"")) {
-			line = line.substring(0, line.length() - 1);
-		}
-
-		return line;
-	}
-
 	public int size() {
-		try {
-			checkValidAndLock(true);
-			return properties.size();
-		}catch (Exception e) {
-			e.printStackTrace();
-			return 0;
-		}finally {
-			rlock.unlock();
-		}
-	}
-
-	private String[] splitAssignment(String line, String seperator) throws Exception {
-		String[] elems = line.split(seperator);
-
-		if (elems.length < 2) {
-			throw new Exception("Unable to parse assignment in line: " + line);
-		} else if (elems.length == 2) {
-
-			elems[0] = elems[0].trim(); // Clean up trailing or leading spaces.
-			if (elems[0].startsWith("export ")) {
-				elems[0] = elems[0].substring("export ".length()).trim();
-			}
-			elems[1] = removeQuotes(elems[1]); // Evaluate variables
-
-			return elems;
-		} else {
-			String[] retVal = new String[2];
-
-			retVal[0] = elems[0];
-			if (retVal[0].startsWith("export ")) {
-				retVal[0] = retVal[0].substring("export ".length()).trim();
-			}
-			retVal[1] = appendAll(elems, 1);
-
-			return retVal;
-		}
+		return getSnapshot().size();
 	}
 
-	private String stripLeading(String target, String leading) {
-		if (target.startsWith(leading)) {
-			target = target.substring(leading.length());
-		}
-
-		return target;
-	}
 
 	/**
 	 * Return a string with variable substitutions in place.
@@ -677,58 +688,58 @@ public class BBSession implements IBBSessionListener, IModelElement, Map<String,
 	 * @return Input string with any substitutions from this file.
 	 */
 	public String substitute(String expression, Map<String, Object> env) {
+		return BBEnvironmentParser.substitute(expression, env);
+	}
 
-		List<String> vars = parseVars(expression);
+	public Collection<Object> values() {
+		return getSnapshot().values();
+	}
 
-		for (Iterator<String> i = vars.iterator(); i.hasNext();) {
-			String varName = (String) i.next();
-			String varToken = "${" + varName + "}";
+	public void changeNotified(IResource[] added, IResource[] removed, IResource[] changed) {
+		// No lock here: a session being parsed holds the write lock for the
+		// whole bitbake run and must not block the resource change listener.
+		if (isAffectedBy(removed) || isAffectedBy(changed)) {
+			changes.incrementAndGet();
+			initialized = false;
+		}
+	}
 
-			if (env.containsKey(varName)) {
-				expression = expression.replace(varToken, (String) env.get(varName));
-			} else if (System.getProperty(varName) != null) {
-				expression = expression.replace(varToken, System.getProperty(varName));
-			} else if (varName.toUpperCase().equals("HOME")) {
-				expression = expression.replace(varToken, System.getProperty("user.home"));
+	private boolean isAffectedBy(IResource[] resources) {
+		Set<String> deps = this.depends;
+		if (resources == null || deps == null) {
+			return false;
+		}
+		for (int i = 0; i < resources.length; i++) {
+			IPath location = resources[i].getLocation();
+			if (location == null) {
+				continue;
+			}
+			String path = location.toString();
+			if (deps.contains(path) && isDependency(path)) {
+				return true;
 			}
 		}
-
-		return expression;
+		return false;
 	}
 
-	public Collection<Object> values() {
-		try {
-			checkValidAndLock(true);
-			return properties.values();
-		} catch (Exception e) {
-			e.printStackTrace();
-			return null;
-		}finally {
-			rlock.unlock();
-		}
+	/**
+	 * A base configuration only needs to be parsed again when configuration
+	 * files or classes change. Editing a recipe only invalidates the
+	 * environment of that recipe.
+	 * 
+	 * @param path a file listed in BBINCLUDED
+	 * @return true if a change to the file invalidates this session
+	 */
+	protected boolean isDependency(String path) {
+		return isBaseConfiguration(path);
 	}
 
-	public void changeNotified(IResource[] added, IResource[] removed, IResource[] changed) {
-		wlock.lock();
-		try {
-			if (initialized && (removed != null || changed != null)) {
-				for(int i=0;removed != null && i<removed.length;i++) {
-					if (this.depends.contains(removed[i].getLocation().toString())) {
-						initialized = false;
-						return;
-					}
-				}
-				for(int i=0;changed != null && i<changed.length;i++) {
-					if (this.depends.contains(changed[i].getLocation().toString())) {
-						initialized = false;
-						return;
-					}
-				}
-			}
-		}
-		finally {
-			wlock.unlock();
-		}
+	/**
+	 * @param path
+	 * @return true if the file is part of the base configuration (conf files and classes).
+	 */
+	public static boolean isBaseConfiguration(String path) {
+		return path.endsWith(".conf") || path.endsWith(".bbclass") || path.contains("/conf/");
 	}
 
 }
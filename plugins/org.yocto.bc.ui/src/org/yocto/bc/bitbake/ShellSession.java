@@ -65,17 +65,13 @@ public class ShellSession {
 	private String shellPath = null;
 	private final String initCmd;
 	private final File root;
-	private final Writer out;
+	private Writer out;
 
 	public ShellSession(int shellType, File root, String initCmd, Writer out) throws IOException {
 		this.root = root;
 		this.initCmd  = initCmd;
 
-		if (out == null) {
-			this.out = new NullWriter();
-		} else {
-			this.out = out;
-		}
+		setWriter(out);
 
 		if (shellType == SHELL_TYPE_SH) {
 			shellPath = "/bin/sh";
@@ -107,6 +103,7 @@ public class ShellSession {
 	public String execute(String command, int[] retCode) throws IOException {
 		String errorMessage = null;
 		interrupt = false;
+		ensureAlive();
 		out.write(command);
 		out.write(LT);
 		sendToProcessAndTerminate(command);
@@ -152,6 +149,61 @@ public class ShellSession {
 		return sb.toString();
 	}
 
+	/**
+	 * Execute a command and hand every line of its standard output to the
+	 * handler as it is read, without buffering the whole result.
+	 *
+	 * @param command
+	 * @param retCode receives the exit code of the command, may be null
+	 * @param handler
+	 * @throws IOException
+	 */
+	synchronized
+	public void execute(String command, int[] retCode, ICommandResponseHandler handler) throws IOException {
+		String errorMessage = null;
+		interrupt = false;
+		ensureAlive();
+		out.write(command);
+		out.write(LT);
+		sendToProcessAndTerminate(command);
+
+		InputStream errIs = process.getErrorStream();
+		if (errIs.available() > 0) {
+			byte[] msg = new byte[errIs.available()];
+
+			errIs.read(msg, 0, msg.length);
+			out.write(new String(msg));
+			out.write(LT);
+			handler.response(new String(msg), true);
+			errorMessage = "Error while executing: " + command + LT + new String(msg);
+		}
+
+		BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()), 64 * 1024);
+		String line = null;
+
+		while (((line = br.readLine()) != null) && !line.endsWith(TERMINATOR) && !interrupt) {
+			handler.response(line, false);
+			out.write(line);
+			out.write(LT);
+		}
+
+		if (interrupt) {
+			process.destroy();
+			initializeShell();
+			interrupt = false;
+		}else if (line != null && retCode != null) {
+			try {
+				retCode[0]=Integer.parseInt(line.substring(0,line.lastIndexOf(TERMINATOR)));
+			}catch (NumberFormatException e) {
+				throw new IOException("Can NOT get return code" + command + LT + line);
+			}
+		}
+
+		if (errorMessage != null) {
+			throw new IOException(errorMessage);
+		}
+	}
+
 	synchronized
 	public void execute(String command, ICommandResponseHandler handler) throws IOException {
 		System.out.println(command);
@@ -161,6 +213,7 @@ public class ShellSession {
 	synchronized 
 	public void execute(String command, String terminator, ICommandResponseHandler handler) throws IOException {
 		interrupt = false;
+		ensureAlive();
 		InputStream errIs = process.getErrorStream();
 		if (errIs.available() > 0) {
 			clearErrorStream(errIs);
@@ -224,12 +277,53 @@ public class ShellSession {
 		pos.flush();
 	}
 
+	/**
+	 * Set where the commands and their output are echoed.
+	 *
+	 * @param out the writer, or null to discard them
+	 */
+	synchronized
+	public void setWriter(Writer out) {
+		if (out == null) {
+			this.out = new NullWriter();
+		} else {
+			this.out = out;
+		}
+	}
+
 	/**
 	 * Interrupt any running processes.
 	 */
 	public void interrupt() {
 		interrupt = true;
 	}
+
+	/**
+	 * Start a new shell if the previous one was closed, for example after
+	 * being idle for too long.
+	 * 
+	 * @throws IOException
+	 */
+	private void ensureAlive() throws IOException {
+		if (!process.isAlive()) {
+			initializeShell();
+		}
+	}
+
+	/**
+	 * @return true if the underlying shell process is still running.
+	 */
+	public boolean isAlive() {
+		return process.isAlive();
+	}
+
+	/**
+	 * Terminate the underlying shell process. A new one is started if the
+	 * session is used again.
+	 */
+	public void close() {
+		process.destroy();
+	}
 	
 	private class NullWriter extends Writer {
 
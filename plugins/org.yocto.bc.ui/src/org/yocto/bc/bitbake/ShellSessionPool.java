@@ -0,0 +1,250 @@
+/*****************************************************************************
+ * Copyright (c) 2026 Intel Corporation
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Intel - initial API and implementation
+ *******************************************************************************/
+package org.yocto.bc.bitbake;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * A bounded pool of initialized shell sessions for one project root.
+ *
+ * Every shell is already in the project root with the init script sourced,
+ * so independent bitbake invocations (recipe parsing, build actions) can run
+ * concurrently instead of queueing behind a single synchronized session.
+ */
+public class ShellSessionPool {
+	/**
+	 * System property used to configure the number of shells per project.
+	 */
+	public static final String POOL_SIZE_PROPERTY = "org.yocto.bc.shellPoolSize";
+	public static final int DEFAULT_POOL_SIZE = 4;
+
+	private final int shellType;
+	private final File root;
+	private final String initCmd;
+	private final int maxSize;
+	private final LinkedList<IdleShell> idle = new LinkedList<IdleShell>();
+	private int created = 0;
+	private int waiting = 0;
+	private boolean closed = false;
+
+	private long borrowCount = 0;
+	private long waitCount = 0;
+	private long waitTime = 0;
+	private int maxWaiting = 0;
+
+	private static class IdleShell {
+		final ShellSession shell;
+		final long since = System.currentTimeMillis();
+
+		IdleShell(ShellSession shell) {
+			this.shell = shell;
+		}
+	}
+
+	public ShellSessionPool(int shellType, File root, String initCmd) {
+		this(shellType, root, initCmd, Integer.getInteger(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE).intValue());
+	}
+
+	public ShellSessionPool(int shellType, File root, String initCmd, int maxSize) {
+		this.shellType = shellType;
+		this.root = root;
+		this.initCmd = initCmd;
+		this.maxSize = Math.max(1, maxSize);
+	}
+
+	/**
+	 * Borrow a shell, creating one if the pool is not full yet or waiting for
+	 * one to be released otherwise. The shell must be given back with
+	 * {@link #release(ShellSession)}.
+	 *
+	 * @return an initialized shell session
+	 * @throws IOException
+	 */
+	public ShellSession borrow() throws IOException {
+		return borrow(null);
+	}
+
+	/**
+	 * Borrow a shell echoing its commands and their output, including the
+	 * initialization of a new shell, to a writer until it is released.
+	 *
+	 * @param out the writer, may be null
+	 * @return an initialized shell session
+	 * @throws IOException
+	 */
+	public ShellSession borrow(Writer out) throws IOException {
+		synchronized (this) {
+			if (closed) {
+				throw new IOException("Shell pool for " + root + " is closed.");
+			}
+			borrowCount++;
+			if (idle.isEmpty() && created >= maxSize) {
+				long start = System.currentTimeMillis();
+				waitCount++;
+				waiting++;
+				maxWaiting = Math.max(maxWaiting, waiting);
+				try {
+					while (idle.isEmpty() && created >= maxSize && !closed) {
+						wait();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for a shell in " + root);
+				} finally {
+					waiting--;
+					waitTime += System.currentTimeMillis() - start;
+				}
+				if (closed) {
+					throw new IOException("Shell pool for " + root + " is closed.");
+				}
+			}
+			if (!idle.isEmpty()) {
+				ShellSession shell = idle.removeFirst().shell;
+				shell.setWriter(out);
+				return shell;
+			}
+			// reserve a slot, the shell itself is created outside the lock
+			created++;
+		}
+
+		try {
+			return new ShellSession(shellType, root, initCmd, out);
+		} catch (IOException e) {
+			synchronized (this) {
+				created--;
+				notifyAll();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Give a borrowed shell back to the pool. Shells whose process died are
+	 * discarded.
+	 *
+	 * @param shell
+	 */
+	public void release(ShellSession shell) {
+		if (shell == null) {
+			return;
+		}
+		shell.setWriter(null);
+		boolean discard;
+		synchronized (this) {
+			discard = closed || !shell.isAlive();
+			if (discard) {
+				created--;
+			} else {
+				idle.addFirst(new IdleShell(shell));
+			}
+			notifyAll();
+		}
+		if (discard) {
+			shell.close();
+		}
+	}
+
+	/**
+	 * Terminate all idle shells and refuse further borrowing. Shells still in
+	 * use are terminated when they are released.
+	 */
+	public void close() {
+		LinkedList<IdleShell> toClose;
+		synchronized (this) {
+			closed = true;
+			toClose = new LinkedList<IdleShell>(idle);
+			created -= idle.size();
+			idle.clear();
+			notifyAll();
+		}
+		for (Iterator<IdleShell> i = toClose.iterator(); i.hasNext();) {
+			i.next().shell.close();
+		}
+	}
+
+	/**
+	 * Terminate the shells that have not been used for the given time.
+	 * 
+	 * @param idleTime time in milliseconds
+	 * @return the number of shells terminated
+	 */
+	public int closeIdle(long idleTime) {
+		LinkedList<IdleShell> toClose = new LinkedList<IdleShell>();
+		synchronized (this) {
+			long limit = System.currentTimeMillis() - idleTime;
+			// released shells are added first, the oldest are at the end
+			while (!idle.isEmpty() && idle.getLast().since < limit) {
+				toClose.add(idle.removeLast());
+				created--;
+			}
+			if (!toClose.isEmpty()) {
+				notifyAll();
+			}
+		}
+		for (Iterator<IdleShell> i = toClose.iterator(); i.hasNext();) {
+			i.next().shell.close();
+		}
+		return toClose.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public synchronized int getSize() {
+		return created;
+	}
+
+	public synchronized int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * @return the number of callers currently queued for a shell.
+	 */
+	public synchronized int getWaitingCount() {
+		return waiting;
+	}
+
+	public synchronized int getMaxWaitingCount() {
+		return maxWaiting;
+	}
+
+	public synchronized long getBorrowCount() {
+		return borrowCount;
+	}
+
+	/**
+	 * @return the number of borrows that had to queue for a shell.
+	 */
+	public synchronized long getWaitCount() {
+		return waitCount;
+	}
+
+	/**
+	 * @return the total time in milliseconds spent waiting for a shell.
+	 */
+	public synchronized long getWaitTime() {
+		return waitTime;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ShellSessionPool[" + root + ", size=" + created + "/" + maxSize + ", idle=" + idle.size()
+				+ ", waiting=" + waiting + ", borrows=" + borrowCount + ", waits=" + waitCount
+				+ ", waitTime=" + waitTime + "ms]";
+	}
+}
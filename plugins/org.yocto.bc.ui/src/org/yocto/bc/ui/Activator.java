@@ -15,8 +15,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.core.resources.IResource;
@@ -24,16 +27,23 @@ import org.eclipse.core.resources.IResourceChangeEvent;
 import org.eclipse.core.resources.IResourceChangeListener;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.resource.ImageDescriptor;
 import org.eclipse.jface.resource.ImageRegistry;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
 
+import org.yocto.bc.bitbake.BBEnvironmentCache;
 import org.yocto.bc.bitbake.BBRecipe;
 import org.yocto.bc.bitbake.BBSession;
 import org.yocto.bc.bitbake.ProjectInfoHelper;
 import org.yocto.bc.bitbake.ShellSession;
+import org.yocto.bc.bitbake.ShellSessionPool;
 import org.yocto.bc.ui.model.ProjectInfo;
+import org.yocto.bc.ui.model.RecipeIndex;
 
 public class Activator extends AbstractUIPlugin {
 
@@ -44,28 +54,103 @@ public class Activator extends AbstractUIPlugin {
 
 	// The shared instance
 	private static Activator plugin;
-	private static Map<String, ShellSession> shellMap;
+
+	/**
+	 * System property giving the number of project sessions kept in memory.
+	 */
+	public static final String SESSION_CACHE_SIZE_PROPERTY = "org.yocto.bc.sessionCacheSize";
+	/**
+	 * System property giving the memory in megabytes used by recipe environments.
+	 */
+	public static final String RECIPE_CACHE_SIZE_PROPERTY = "org.yocto.bc.recipeCacheSize";
+	/**
+	 * System property giving the number of recipes next to a hovered recipe
+	 * whose environments are extracted ahead of time, 0 to disable.
+	 */
+	public static final String PRELOAD_RECIPES_PROPERTY = "org.yocto.bc.preloadRecipes";
+	/**
+	 * System property giving the disk space in megabytes used by the cached environments.
+	 */
+	public static final String ENV_CACHE_SIZE_PROPERTY = "org.yocto.bc.envCacheSize";
+	/**
+	 * System property giving the minutes after which an unused shell is terminated.
+	 */
+	public static final String SHELL_IDLE_TIMEOUT_PROPERTY = "org.yocto.bc.shellIdleTimeout";
+	private static final long MAINTENANCE_INTERVAL = 60 * 1000;
+
+	private static final long shellIdleTimeout = Long.getLong(SHELL_IDLE_TIMEOUT_PROPERTY, 10).longValue() * 60 * 1000;
+
+	private static final BoundedCache<String, BBRecipe> bbRecipeMap = new BoundedCache<String, BBRecipe>(
+			"recipes", 0, Long.getLong(RECIPE_CACHE_SIZE_PROPERTY, 256).longValue() * 1024 * 1024, 0,
+			new BoundedCache.Weigher<BBRecipe>() {
+				public long weigh(BBRecipe recipe) {
+					return recipe.estimateSize();
+				}
+			}, null);
+	private static final BoundedCache<String, BBSession> bbSessionMap = new BoundedCache<String, BBSession>(
+			"sessions", Integer.getInteger(SESSION_CACHE_SIZE_PROPERTY, 8).intValue(), 0, 0, null,
+			new BoundedCache.RemovalListener<String, BBSession>() {
+				public void removed(String projectRoot, BBSession session) {
+					releaseProject(projectRoot, false);
+				}
+			});
+	private static Map<String, ShellSessionPool> shellPoolMap;
 	private static Map<String, ProjectInfo> projInfoMap;
-	private static Hashtable<String,BBSession> bbSessionMap;
-	private static Hashtable<String,BBRecipe> bbRecipeMap;
+	private static BBEnvironmentCache envCache;
+	private static RecipeIndex recipeIndex;
 
 	private IResourceChangeListener listener = new BCResourceChangeListener();
+	private Job maintenanceJob;
 
 	public static BBRecipe getBBRecipe(BBSession session, String filePath) throws IOException {
-		if (bbRecipeMap == null) {
-			bbRecipeMap = new Hashtable<String, BBRecipe>();
-		}
-
-		String key = session.getProjInfoRoot() + filePath;
-		BBRecipe recipe = (BBRecipe) bbRecipeMap.get(key);
+		final String key = session.getProjInfoRoot() + filePath;
+		BBRecipe recipe = bbRecipeMap.get(key);
 		if (recipe == null) {
 			recipe = new BBRecipe(session,filePath);
+			// weigh the recipe again once its environment is set
+			recipe.setLoadListener(new Runnable() {
+				public void run() {
+					bbRecipeMap.reweigh(key);
+				}
+			});
 			bbRecipeMap.put(key, recipe);
 		}
 
 		return recipe;
 	}
 	
+	/**
+	 * Initialize the recipe environments of many recipes at once. Recipes
+	 * found in the environment cache are loaded from it, the others are
+	 * extracted with a single bitbake process. Recipes that failed to be
+	 * extracted that way are not tried again while they are cached.
+	 * 
+	 * @param session
+	 * @param filePaths
+	 * @throws IOException
+	 */
+	public static void loadBBRecipes(BBSession session, Collection<String> filePaths) throws IOException {
+		List<String> pending = new ArrayList<String>();
+		for (Iterator<String> i = filePaths.iterator(); i.hasNext();) {
+			String filePath = i.next();
+			BBRecipe recipe = getBBRecipe(session, filePath);
+			if (!recipe.loadCachedEnvironment() && !recipe.isBatchFailed()) {
+				pending.add(filePath);
+			}
+		}
+
+		Map<String, Map<String, Object>> envs = session.parseRecipes(pending);
+		for (Iterator<String> i = pending.iterator(); i.hasNext();) {
+			String filePath = i.next();
+			Map<String, Object> env = envs.get(filePath);
+			if (env != null) {
+				getBBRecipe(session, filePath).initialize(env);
+			} else {
+				getBBRecipe(session, filePath).setBatchFailed();
+			}
+		}
+	}
+
 	/**
 	 * Get or create a BitBake session passing in ProjectInfo
 	 * @param pinfo
@@ -73,14 +158,12 @@ public class Activator extends AbstractUIPlugin {
 	 * @throws IOException
 	 */
 	public static BBSession getBBSession(String projectRoot, Writer out) throws IOException {
-		if (bbSessionMap == null) {
-			bbSessionMap = new Hashtable<String, BBSession>();
-		}
-		
-		BBSession bbs = (BBSession) bbSessionMap.get(projectRoot);
+		BBSession bbs = bbSessionMap.get(projectRoot);
 		
 		if (bbs == null) {
-			bbs = new BBSession(getShellSession(projectRoot, out), projectRoot);
+			bbs = new BBSession(out, projectRoot);
+			bbs.setEnvironmentCache(envCache);
+			bbs.setShellPool(getShellSessionPool(projectRoot));
 			bbSessionMap.put(projectRoot, bbs);
 		}
 		
@@ -94,20 +177,36 @@ public class Activator extends AbstractUIPlugin {
 	 * @throws IOException
 	 */
 	public static BBSession getBBSession(String projectRoot) throws IOException {
-		if (bbSessionMap == null) {
-			bbSessionMap = new Hashtable<String, BBSession>();
-		}
-		
-		BBSession bbs = (BBSession) bbSessionMap.get(projectRoot);
+		BBSession bbs = bbSessionMap.get(projectRoot);
 		
 		if (bbs == null) {
-			bbs = new BBSession(getShellSession(projectRoot, null), projectRoot);
+			bbs = new BBSession(null, projectRoot);
+			bbs.setEnvironmentCache(envCache);
+			bbs.setShellPool(getShellSessionPool(projectRoot));
 			bbSessionMap.put(projectRoot, bbs);
 		}
 		
 		return bbs;
 	}
 
+	/**
+	 * @return the index of the recipes of the workspace projects.
+	 */
+	public static synchronized RecipeIndex getRecipeIndex() {
+		if (recipeIndex == null) {
+			recipeIndex = new RecipeIndex();
+		}
+		return recipeIndex;
+	}
+
+	/**
+	 * @return the persistent cache of parsed bitbake environments, or null
+	 * if the plug-in has not been started.
+	 */
+	public static BBEnvironmentCache getEnvironmentCache() {
+		return envCache;
+	}
+
 	/**
 	 * Returns the shared instance
 	 *
@@ -149,42 +248,111 @@ public class Activator extends AbstractUIPlugin {
 	}
 
 	public static void notifyAllBBSession(IResource[] added, IResource[] removed, IResource[] changed) {
-		Iterator<BBRecipe> recipe_iter;
-		Iterator<BBSession> session_iter;
-		if(bbRecipeMap != null) {
-			recipe_iter = bbRecipeMap.values().iterator();
-			while(recipe_iter.hasNext()) {
-				BBRecipe p = (BBRecipe)recipe_iter.next();
-				p.changeNotified(added, removed, changed);
+		Iterator<BBRecipe> recipe_iter = bbRecipeMap.values().iterator();
+		while(recipe_iter.hasNext()) {
+			BBRecipe p = recipe_iter.next();
+			p.changeNotified(added, removed, changed);
+		}
+
+		Iterator<BBSession> session_iter = bbSessionMap.values().iterator();
+		while(session_iter.hasNext()) {
+			BBSession p = session_iter.next();
+			p.changeNotified(added, removed, changed);
+		}
+	}
+
+	/**
+	 * @return a description of the size and efficiency of the in-memory
+	 * caches, the shell pools and the persistent environment cache.
+	 */
+	public static String getCacheStatistics() {
+		StringBuffer sb = new StringBuffer();
+		sb.append(bbSessionMap).append(ShellSession.LT);
+		sb.append(bbRecipeMap).append(ShellSession.LT);
+		synchronized (Activator.class) {
+			if (shellPoolMap != null) {
+				for (Iterator<ShellSessionPool> i = shellPoolMap.values().iterator(); i.hasNext();) {
+					sb.append(i.next()).append(ShellSession.LT);
+				}
 			}
 		}
+		if (envCache != null) {
+			sb.append("environment cache: ").append(envCache.getHitCount()).append(" hits, ")
+				.append(envCache.getMissCount()).append(" misses").append(ShellSession.LT);
+		}
+		return sb.toString();
+	}
 
-		if(bbSessionMap != null) {
-			session_iter= bbSessionMap.values().iterator();
-			while(session_iter.hasNext()) {
-				BBSession p = (BBSession)session_iter.next();
-				p.changeNotified(added, removed, changed);
+	/**
+	 * Terminate the pooled shells that have not been used for a while.
+	 * Terminated shells are started again on demand.
+	 */
+	private static void closeIdleShells() {
+		List<ShellSessionPool> pools;
+		synchronized (Activator.class) {
+			if (shellPoolMap == null) {
+				return;
+			}
+			pools = new ArrayList<ShellSessionPool>(shellPoolMap.values());
+		}
+		for (Iterator<ShellSessionPool> i = pools.iterator(); i.hasNext();) {
+			i.next().closeIdle(shellIdleTimeout);
+		}
+	}
+
+	/**
+	 * Release the shells and recipes of a project whose session is no longer
+	 * cached.
+	 * 
+	 * @param projectRoot
+	 * @param closePool true to also discard the shell pool. Otherwise only
+	 * its idle shells are terminated, so an evicted session still referenced
+	 * elsewhere keeps working.
+	 */
+	private static void releaseProject(String projectRoot, boolean closePool) {
+		ShellSessionPool pool = null;
+		synchronized (Activator.class) {
+			if (shellPoolMap != null) {
+				pool = closePool ? shellPoolMap.remove(projectRoot) : shellPoolMap.get(projectRoot);
+			}
+		}
+		if (pool != null) {
+			if (closePool) {
+				pool.close();
+			} else {
+				pool.closeIdle(0);
+			}
+		}
+		// the keys are the project root followed by the absolute recipe path:
+		// match the separator too, to leave sibling projects such as
+		// <projectRoot>2 alone
+		String prefix = projectRoot + "/";
+		for (Iterator<String> i = bbRecipeMap.keys().iterator(); i.hasNext();) {
+			String key = i.next();
+			if (key.startsWith(prefix)) {
+				bbRecipeMap.remove(key);
 			}
 		}
 	}
 
 	/**
 	 * @param absolutePath
-	 * @return a cached shell session for a given project root.
-	 * @throws IOException 
+	 * @return the pool of shells used to run bitbake concurrently for a given project root.
+	 * @throws IOException
 	 */
-	private static ShellSession getShellSession(String absolutePath, Writer out) throws IOException {
-		if (shellMap == null) {
-			shellMap = new Hashtable<String, ShellSession>();
+	public static synchronized ShellSessionPool getShellSessionPool(String absolutePath) throws IOException {
+		if (shellPoolMap == null) {
+			shellPoolMap = new Hashtable<String, ShellSessionPool>();
 		}
-		
-		ShellSession ss = (ShellSession) shellMap.get(absolutePath);
-		
-		if (ss == null) {
-			ss = new ShellSession(ShellSession.SHELL_TYPE_BASH, new File(absolutePath), ProjectInfoHelper.getInitScriptPath(absolutePath), out);
+
+		ShellSessionPool pool = shellPoolMap.get(absolutePath);
+
+		if (pool == null) {
+			pool = new ShellSessionPool(ShellSession.SHELL_TYPE_BASH, new File(absolutePath), ProjectInfoHelper.getInitScriptPath(absolutePath));
+			shellPoolMap.put(absolutePath, pool);
 		}
-		
-		return ss;
+
+		return pool;
 	}
 
 	public static void putProjInfo(String location, ProjectInfo pinfo) {
@@ -211,8 +379,20 @@ public class Activator extends AbstractUIPlugin {
 	public void start(BundleContext context) throws Exception {
 		super.start(context);
 		plugin = this;
+		envCache = new BBEnvironmentCache(getStateLocation().append("bbenv").toFile(),
+				Long.getLong(ENV_CACHE_SIZE_PROPERTY, 512).longValue() * 1024 * 1024);
 		ResourcesPlugin.getWorkspace().addResourceChangeListener(
 			      listener, IResourceChangeEvent.POST_CHANGE);
+		maintenanceJob = new Job("Release idle BitBake shells") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				closeIdleShells();
+				schedule(MAINTENANCE_INTERVAL);
+				return Status.OK_STATUS;
+			}
+		};
+		maintenanceJob.setSystem(true);
+		maintenanceJob.schedule(MAINTENANCE_INTERVAL);
 	}
 
 	/*
@@ -223,6 +403,20 @@ public class Activator extends AbstractUIPlugin {
 	public void stop(BundleContext context) throws Exception {
 		ResourcesPlugin.getWorkspace().removeResourceChangeListener(
 			      listener);
+		if (maintenanceJob != null) {
+			maintenanceJob.cancel();
+			maintenanceJob = null;
+		}
+		bbSessionMap.clear();
+		synchronized (Activator.class) {
+			if (shellPoolMap != null) {
+				for (Iterator<ShellSessionPool> i = shellPoolMap.values().iterator(); i.hasNext();) {
+					i.next().close();
+				}
+				shellPoolMap.clear();
+			}
+		}
+		envCache = null;
 		plugin = null;
 		super.stop(context);
 	}
@@ -232,8 +426,8 @@ public class Activator extends AbstractUIPlugin {
 	 * @param path
 	 */
 	public static void resetBBSession(String path) {
-		shellMap.remove(path);
 		bbSessionMap.remove(path);
+		releaseProject(path, true);
 	}
 
 	protected void initializeImageRegistry(ImageRegistry reg) {
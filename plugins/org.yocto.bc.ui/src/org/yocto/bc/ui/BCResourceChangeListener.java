@@ -15,7 +15,9 @@ import org.yocto.bc.ui.builder.BitbakeCommanderNature;
 public class BCResourceChangeListener implements IResourceChangeListener {
 
 	public void resourceChanged(IResourceChangeEvent event) {
+		final HashSet<IResource> added = new HashSet<IResource>();
 		final HashSet<IResource> removed = new HashSet<IResource>();
+		final HashSet<IResource> removedProjects = new HashSet<IResource>();
 		final HashSet<IResource> changed = new HashSet<IResource>();
         switch (event.getType()) {
            case IResourceChangeEvent.POST_CHANGE:
@@ -25,6 +27,10 @@ public class BCResourceChangeListener implements IResourceChangeListener {
             				IResource res = delta.getResource();
             				Boolean visit= true;
             				if (res instanceof IProject) {
+            					if (delta.getKind() == IResourceDelta.REMOVED || 
+            						((delta.getFlags() & IResourceDelta.OPEN) != 0 && !((IProject) res).isOpen())) {
+            						removedProjects.add(res);
+            					}
             					visit = false;
             					try {
             						if(((IProject) res).isOpen() && 
@@ -37,6 +43,9 @@ public class BCResourceChangeListener implements IResourceChangeListener {
             				if (visit && (res instanceof IFile))
             				{
             			        switch (delta.getKind()) {
+            			           case IResourceDelta.ADDED:
+            			        	  added.add(res);
+            			              break;
             			           case IResourceDelta.REMOVED:
             			        	  removed.add(res);
             			              break;
@@ -49,9 +58,13 @@ public class BCResourceChangeListener implements IResourceChangeListener {
             		  }
             	  });
             	  //notify all the sessions
-            	  Activator.notifyAllBBSession(null, 
+            	  Activator.notifyAllBBSession(added.toArray(new IResource[added.size()]), 
             			  removed.toArray(new IResource[removed.size()]), 
             			  changed.toArray(new IResource[changed.size()]));
+            	  //update the recipe index in place
+            	  removed.addAll(removedProjects);
+            	  Activator.getRecipeIndex().resourcesChanged(added.toArray(new IResource[added.size()]), 
+            			  removed.toArray(new IResource[removed.size()]));
             	  
               }catch (CoreException e) {
             	  e.printStackTrace();
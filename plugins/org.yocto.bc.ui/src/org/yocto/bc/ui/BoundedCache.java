@@ -0,0 +1,271 @@
+/*****************************************************************************
+ * Copyright (c) 2026 Intel Corporation
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Intel - initial API and implementation
+ *******************************************************************************/
+package org.yocto.bc.ui;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A thread-safe cache evicting the least recently used entries once a
+ * maximum number of entries or a maximum total weight is exceeded, and
+ * optionally entries that were not accessed for a given time.
+ *
+ * Weights are computed again every time an entry is accessed or
+ * {@link #reweigh(Object) reweighed}, so values growing after insertion (a
+ * recipe whose environment got parsed) are accounted for.
+ */
+public class BoundedCache<K, V> {
+
+	public interface Weigher<V> {
+		long weigh(V value);
+	}
+
+	public interface RemovalListener<K, V> {
+		void removed(K key, V value);
+	}
+
+	private static class Entry<V> {
+		final V value;
+		long weight;
+		long lastAccess;
+
+		Entry(V value) {
+			this.value = value;
+		}
+	}
+
+	private final String name;
+	private final int maxEntries;
+	private final long maxWeight;
+	private final long expireAfterAccess;
+	private final Weigher<V> weigher;
+	private final RemovalListener<K, V> listener;
+	private final LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+	private long weight = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private long expirations = 0;
+
+	/**
+	 * @param name name used in statistics
+	 * @param maxEntries maximum number of entries, 0 for no limit
+	 * @param maxWeight maximum total weight, 0 for no limit
+	 * @param expireAfterAccess milliseconds after which an unused entry expires, 0 for never
+	 * @param weigher computes the weight of a value, may be null
+	 * @param listener notified of evicted and expired entries, may be null
+	 */
+	public BoundedCache(String name, int maxEntries, long maxWeight, long expireAfterAccess, Weigher<V> weigher, RemovalListener<K, V> listener) {
+		this.name = name;
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+		this.expireAfterAccess = expireAfterAccess;
+		this.weigher = weigher;
+		this.listener = listener;
+	}
+
+	public V get(K key) {
+		List<Map.Entry<K, V>> removed;
+		V value;
+		synchronized (this) {
+			Entry<V> e = map.get(key);
+			if (e == null) {
+				misses++;
+				return null;
+			}
+			hits++;
+			touch(e);
+			value = e.value;
+			removed = evict();
+		}
+		notifyRemoved(removed);
+		return value;
+	}
+
+	public void put(K key, V value) {
+		List<Map.Entry<K, V>> removed;
+		synchronized (this) {
+			Entry<V> e = new Entry<V>(value);
+			Entry<V> old = map.put(key, e);
+			if (old != null) {
+				weight -= old.weight;
+			}
+			touch(e);
+			removed = evict();
+		}
+		notifyRemoved(removed);
+	}
+
+	/**
+	 * Compute the weight of an entry again after its value changed, evicting
+	 * other entries if the maximum weight is exceeded.
+	 *
+	 * @param key
+	 */
+	public void reweigh(K key) {
+		List<Map.Entry<K, V>> removed;
+		synchronized (this) {
+			Entry<V> e = map.get(key);
+			if (e == null) {
+				return;
+			}
+			touch(e);
+			removed = evict();
+		}
+		notifyRemoved(removed);
+	}
+
+	/**
+	 * Remove an entry without notifying the removal listener.
+	 *
+	 * @param key
+	 * @return the removed value, or null
+	 */
+	public synchronized V remove(K key) {
+		Entry<V> e = map.remove(key);
+		if (e == null) {
+			return null;
+		}
+		weight -= e.weight;
+		return e.value;
+	}
+
+	/**
+	 * Drop the entries that were not accessed for longer than the expiry
+	 * time, notifying the removal listener.
+	 */
+	public void expire() {
+		if (expireAfterAccess <= 0) {
+			return;
+		}
+		List<Map.Entry<K, V>> removed = new ArrayList<Map.Entry<K, V>>();
+		synchronized (this) {
+			long limit = System.currentTimeMillis() - expireAfterAccess;
+			for (Iterator<Map.Entry<K, Entry<V>>> i = map.entrySet().iterator(); i.hasNext();) {
+				Map.Entry<K, Entry<V>> e = i.next();
+				if (e.getValue().lastAccess >= limit) {
+					// access ordered: the remaining entries are more recent
+					break;
+				}
+				i.remove();
+				weight -= e.getValue().weight;
+				expirations++;
+				removed.add(new AbstractMap.SimpleImmutableEntry<K, V>(e.getKey(), e.getValue().value));
+			}
+		}
+		notifyRemoved(removed);
+	}
+
+	/**
+	 * Remove all entries, notifying the removal listener.
+	 */
+	public void clear() {
+		List<Map.Entry<K, V>> removed = new ArrayList<Map.Entry<K, V>>();
+		synchronized (this) {
+			for (Iterator<Map.Entry<K, Entry<V>>> i = map.entrySet().iterator(); i.hasNext();) {
+				Map.Entry<K, Entry<V>> e = i.next();
+				removed.add(new AbstractMap.SimpleImmutableEntry<K, V>(e.getKey(), e.getValue().value));
+			}
+			map.clear();
+			weight = 0;
+		}
+		notifyRemoved(removed);
+	}
+
+	/**
+	 * @return a copy of the cached values, least recently used first.
+	 */
+	public synchronized List<V> values() {
+		List<V> values = new ArrayList<V>(map.size());
+		for (Iterator<Entry<V>> i = map.values().iterator(); i.hasNext();) {
+			values.add(i.next().value);
+		}
+		return values;
+	}
+
+	/**
+	 * @return a copy of the cached keys, least recently used first.
+	 */
+	public synchronized List<K> keys() {
+		return new ArrayList<K>(map.keySet());
+	}
+
+	public synchronized int size() {
+		return map.size();
+	}
+
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	public synchronized long getExpirationCount() {
+		return expirations;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return name + ": " + map.size() + " entries, weight " + weight + ", " + hits + " hits, " + misses
+				+ " misses, " + evictions + " evictions, " + expirations + " expirations";
+	}
+
+	private void touch(Entry<V> e) {
+		e.lastAccess = System.currentTimeMillis();
+		if (weigher != null) {
+			long w = weigher.weigh(e.value);
+			weight += w - e.weight;
+			e.weight = w;
+		}
+	}
+
+	private List<Map.Entry<K, V>> evict() {
+		List<Map.Entry<K, V>> removed = null;
+		Iterator<Map.Entry<K, Entry<V>>> i = map.entrySet().iterator();
+		// never evict the most recently used entry
+		while (map.size() > 1 && ((maxEntries > 0 && map.size() > maxEntries) || (maxWeight > 0 && weight > maxWeight))) {
+			Map.Entry<K, Entry<V>> e = i.next();
+			i.remove();
+			weight -= e.getValue().weight;
+			evictions++;
+			if (removed == null) {
+				removed = new ArrayList<Map.Entry<K, V>>();
+			}
+			removed.add(new AbstractMap.SimpleImmutableEntry<K, V>(e.getKey(), e.getValue().value));
+		}
+		return removed;
+	}
+
+	private void notifyRemoved(List<Map.Entry<K, V>> removed) {
+		if (removed == null || listener == null) {
+			return;
+		}
+		for (Iterator<Map.Entry<K, V>> i = removed.iterator(); i.hasNext();) {
+			Map.Entry<K, V> e = i.next();
+			listener.removed(e.getKey(), e.getValue());
+		}
+	}
+}
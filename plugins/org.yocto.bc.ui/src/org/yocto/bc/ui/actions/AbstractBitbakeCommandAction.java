@@ -32,6 +32,7 @@ import org.eclipse.ui.console.MessageConsoleStream;
 
 import org.yocto.bc.bitbake.BBLanguageHelper;
 import org.yocto.bc.bitbake.BBSession;
+import org.yocto.bc.bitbake.ShellSession;
 import org.yocto.bc.ui.Activator;
 import org.yocto.bc.ui.builder.BitbakeCommanderNature;
 
@@ -110,15 +111,18 @@ public abstract class AbstractBitbakeCommandAction implements IWorkbenchWindowAc
 		final MessageConsoleStream err = mc.newMessageStream();
 		err.setColor(errorColor);
 
+		ShellSession shell = null;
 		try {
+			shell = bbs.borrowShell();
 			for (int i = 0; i < cmds.length; ++i) {
 				cmd.println(cmds[i]);
 				monitor.subTask(cmds[i]);
-				bbs.getShell().execute(cmds[i]);
+				shell.execute(cmds[i]);
 			}
 		} catch (IOException e) {
 			return new Status(IStatus.ERROR, Activator.PLUGIN_ID, e.getMessage(), e);
 		} finally {
+			bbs.releaseShell(shell);
 			try {
 				if (errorOccurred) {
 					cmd.println("At least one error occured while executing this command.  Check output for more details.");
@@ -11,17 +11,22 @@
 package org.yocto.bc.ui.actions;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.util.Map;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.wizard.WizardDialog;
 import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.IWorkbenchWindowActionDelegate;
+import org.yocto.bc.bitbake.BBSession;
 import org.yocto.bc.ui.Activator;
 import org.yocto.bc.ui.builder.BitbakeCommanderNature;
 import org.yocto.bc.ui.wizards.variable.VariableWizard;
@@ -34,7 +39,8 @@ import org.yocto.bc.ui.wizards.variable.VariableWizard;
 public class LaunchVariableWizardAction implements IWorkbenchWindowActionDelegate {
 
 	private IWorkbenchWindow window;
-	private Map<String, Object> session;
+	private BBSession session;
+	private Map<String, Object> environment;
 
 	public void dispose() {
 	}
@@ -44,7 +50,31 @@ public class LaunchVariableWizardAction implements IWorkbenchWindowActionDelegat
 	}
 
 	public void run(IAction action) {
-		VariableWizard wizard = new VariableWizard(session);
+		// the wizard does not refresh: wait for the environment before opening it
+		final BBSession bbs = session;
+		try {
+			window.run(true, false, new IRunnableWithProgress() {
+				public void run(IProgressMonitor monitor) throws InvocationTargetException {
+					monitor.beginTask("Parsing BitBake environment", IProgressMonitor.UNKNOWN);
+					try {
+						environment = bbs.getEnvironment();
+					} catch (Exception e) {
+						throw new InvocationTargetException(e);
+					} finally {
+						monitor.done();
+					}
+				}
+			});
+		} catch (InvocationTargetException e) {
+			e.printStackTrace();
+			MessageDialog.openError(window.getShell(), "Yocto Project BitBake Commander",
+					"Unable to parse the BitBake environment: " + e.getTargetException().getMessage());
+			return;
+		} catch (InterruptedException e) {
+			return;
+		}
+
+		VariableWizard wizard = new VariableWizard(environment);
 		
 		WizardDialog wd = new WizardDialog(window.getShell(), wizard);
 		wd.create();
@@ -7,8 +7,12 @@
 package org.yocto.bc.ui.editors.bitbake;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -23,12 +27,17 @@ import org.yocto.bc.bitbake.BBSession;
 import org.yocto.bc.ui.Activator;
 
 class BBVariableTextHover implements ITextHover {
+	private static final int preloadRecipes = Integer.getInteger(Activator.PRELOAD_RECIPES_PROPERTY, 8).intValue();
+
 	private final BBSession session;
+	private final IFile targetFile;
 	private volatile Map<String, Object> envMap;
 
-	public BBVariableTextHover(BBSession session, String file) {
+	public BBVariableTextHover(BBSession session, IFile targetFile) {
 		this.session = session;
+		this.targetFile = targetFile;
 		envMap = session;
+		String file = targetFile.getLocationURI().getPath();
 		LoadRecipeJob loadRecipeJob = new LoadRecipeJob(getFilename(file), file);
 		loadRecipeJob.schedule();
 	}
@@ -109,6 +118,39 @@ class BBVariableTextHover implements ITextHover {
 				return new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Unable to load session for " + filePath, e);
 			} 
 			
+			if (preloadRecipes > 0) {
+				new LoadNeighboursJob(targetFile).schedule();
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
+	/**
+	 * Extracts, with a single bitbake process, the environments of the
+	 * recipes next to the recipe in its layer, so that hovering over them is
+	 * immediate.
+	 */
+	private class LoadNeighboursJob extends Job {
+		private final IFile file;
+
+		public LoadNeighboursJob(IFile file) {
+			super("Extracting BitBake environments of the recipes next to " + file.getName());
+			this.file = file;
+			setPriority(Job.DECORATE);
+			setSystem(true);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor mon) {
+			List<String> filePaths = new ArrayList<String>();
+			for (Iterator<IFile> i = Activator.getRecipeIndex().getNeighbourRecipes(file, preloadRecipes).iterator(); i.hasNext();) {
+				filePaths.add(i.next().getLocationURI().getPath());
+			}
+			try {
+				Activator.loadBBRecipes(session, filePaths);
+			} catch (Exception e) {
+				return new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Unable to load the recipes next to " + file.getName(), e);
+			}
 			return Status.OK_STATUS;
 		}
 	}
@@ -13,7 +13,6 @@ package org.yocto.bc.ui.filesystem;
 import java.io.File;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 
@@ -23,6 +22,7 @@ import org.eclipse.core.filesystem.provider.FileSystem;
 
 import org.yocto.bc.bitbake.BBSession;
 import org.yocto.bc.ui.Activator;
+import org.yocto.bc.ui.BoundedCache;
 
 /**
  * A filesystem that ignores specific OE directories that contain derived information.
@@ -36,11 +36,13 @@ public class OEFileSystem extends FileSystem {
 		return ref;
 	}
 
-	private Map<URI, OEFile> fileStoreCache;
+	private static final int FILE_STORE_CACHE_SIZE = 1024;
+
+	private BoundedCache<URI, OEFile> fileStoreCache;
 
 	public OEFileSystem() {
 		ref = this;
-		fileStoreCache = new Hashtable<URI, OEFile>();
+		fileStoreCache = new BoundedCache<URI, OEFile>("file stores", FILE_STORE_CACHE_SIZE, 0, 0, null, null);
 	}
 	
 	@Override
@@ -49,10 +51,14 @@ public class OEFileSystem extends FileSystem {
 		OEFile uf = (OEFile) fileStoreCache.get(uri);
 		
 		if (uf == null) {
-			BBSession config = null;
+			Map<String, Object> config = null;
 			try {
-				config = Activator.getBBSession(uri.getPath());
-				config.initialize();
+				BBSession session = Activator.getBBSession(uri.getPath());
+				// a stale environment is good enough to locate the derived directories
+				config = session.getSnapshot();
+				if (config.isEmpty()) {
+					config = session.getEnvironment();
+				}
 			} catch (Exception e) {
 				e.printStackTrace();
 				return new OEIgnoreFile(new File(uri.getPath()));
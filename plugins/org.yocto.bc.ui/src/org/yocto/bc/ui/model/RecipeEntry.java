@@ -0,0 +1,98 @@
+/*****************************************************************************
+ * Copyright (c) 2026 Intel Corporation
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Intel - initial API and implementation
+ *******************************************************************************/
+package org.yocto.bc.ui.model;
+
+import org.eclipse.core.resources.IFile;
+
+/**
+ * A recipe of the {@link RecipeIndex}.
+ *
+ * Name and version are derived from the file name the way bitbake does by
+ * default (<code>name_version.bb</code>), without parsing the recipe.
+ */
+public class RecipeEntry {
+	private final IFile file;
+	private final String baseName;
+	private final String name;
+	private final String version;
+	private final String layer;
+	private final String searchText;
+	private volatile IFile[] appends;
+
+	RecipeEntry(IFile file, String layer, IFile[] appends) {
+		this.file = file;
+		this.layer = layer;
+		this.appends = appends;
+
+		String fileName = file.getName();
+		baseName = fileName.substring(0, fileName.length() - RecipeIndex.RECIPE_EXTENSION.length());
+		int sep = baseName.indexOf('_');
+		if (sep > 0) {
+			name = baseName.substring(0, sep);
+			version = baseName.substring(sep + 1);
+		} else {
+			name = baseName;
+			version = "";
+		}
+		searchText = (fileName + " " + layer).toLowerCase();
+	}
+
+	public IFile getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the file name without extension, used to match appends.
+	 */
+	public String getBaseName() {
+		return baseName;
+	}
+
+	/**
+	 * @return the recipe name (PN).
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the recipe version (PV), empty if not part of the file name.
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the name of the layer containing the recipe.
+	 */
+	public String getLayer() {
+		return layer;
+	}
+
+	/**
+	 * @return the bbappend files applying to this recipe.
+	 */
+	public IFile[] getAppends() {
+		return appends;
+	}
+
+	void setAppends(IFile[] appends) {
+		this.appends = appends;
+	}
+
+	/**
+	 * @param filter lower case text
+	 * @return true if the file name or the layer contain the text
+	 */
+	public boolean matches(String filter) {
+		return filter.length() == 0 || searchText.indexOf(filter) >= 0;
+	}
+}
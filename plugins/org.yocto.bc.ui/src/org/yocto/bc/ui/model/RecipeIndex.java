@@ -0,0 +1,394 @@
+/*****************************************************************************
+ * Copyright (c) 2026 Intel Corporation
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Intel - initial API and implementation
+ *******************************************************************************/
+package org.yocto.bc.ui.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import org.yocto.bc.bitbake.BBRecipeIndex;
+import org.yocto.bc.bitbake.BBSession;
+import org.yocto.bc.ui.Activator;
+import org.yocto.bc.ui.builder.BitbakeCommanderNature;
+
+/**
+ * The recipes of all the BitBake Commander projects of the workspace.
+ *
+ * A project is scanned once, then the index is kept up to date from the
+ * resource deltas: added and removed recipes and appends are applied in
+ * place instead of scanning the project again.
+ */
+public class RecipeIndex {
+	public static final String RECIPE_EXTENSION = BBRecipeIndex.RECIPE_EXTENSION;
+	public static final String APPEND_EXTENSION = BBRecipeIndex.APPEND_EXTENSION;
+
+	private static final String LAYER_CONF = "conf/layer.conf";
+	private static final RecipeEntry[] NO_RECIPES = new RecipeEntry[0];
+	private static final IFile[] NO_APPENDS = new IFile[0];
+
+	/**
+	 * Notified after recipes were added or removed. Listeners may be called
+	 * from any thread.
+	 */
+	public interface Listener {
+		void recipesChanged(RecipeIndex index);
+	}
+
+	private final Map<IFile, RecipeEntry> recipes = new HashMap<IFile, RecipeEntry>();
+	// append base name, ending with '%' for wildcard appends, to the append files
+	private final Map<String, List<IFile>> appends = new HashMap<String, List<IFile>>();
+	private final Map<IProject, BBRecipeIndex> projects = new HashMap<IProject, BBRecipeIndex>();
+	private final Map<IContainer, String> layers = new HashMap<IContainer, String>();
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	private volatile RecipeEntry[] snapshot = NO_RECIPES;
+	private Job loadJob;
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return the indexed recipes sorted by name and version. The array must
+	 * not be modified.
+	 */
+	public RecipeEntry[] getRecipes() {
+		return snapshot;
+	}
+
+	/**
+	 * @param project
+	 * @return true if the recipes of the project are in the index.
+	 */
+	public synchronized boolean isLoaded(IProject project) {
+		return projects.containsKey(project);
+	}
+
+	/**
+	 * @param file
+	 * @param max maximum number of recipes returned
+	 * @return the indexed recipes of the layer of a recipe closest to it in
+	 * the layer, those of the same directory first, the recipe excluded. The
+	 * list is empty if the recipe is not indexed.
+	 */
+	public synchronized List<IFile> getNeighbourRecipes(final IFile file, int max) {
+		List<IFile> result = new ArrayList<IFile>();
+		RecipeEntry entry = recipes.get(file);
+		if (entry == null) {
+			return result;
+		}
+		for (Iterator<RecipeEntry> i = recipes.values().iterator(); i.hasNext();) {
+			RecipeEntry e = i.next();
+			if (!e.getFile().equals(file) && e.getLayer().equals(entry.getLayer())
+					&& e.getFile().getProject().equals(file.getProject())) {
+				result.add(e.getFile());
+			}
+		}
+		final IPath path = file.getFullPath();
+		Collections.sort(result, new Comparator<IFile>() {
+			public int compare(IFile a, IFile b) {
+				int d = b.getFullPath().matchingFirstSegments(path) - a.getFullPath().matchingFirstSegments(path);
+				return (d != 0) ? d : a.getFullPath().toString().compareTo(b.getFullPath().toString());
+			}
+		});
+		return (result.size() > max) ? new ArrayList<IFile>(result.subList(0, max)) : result;
+	}
+
+	/**
+	 * Index, in a background job, the BitBake Commander projects that are
+	 * not indexed yet.
+	 */
+	public synchronized void loadProjects() {
+		if (loadJob == null) {
+			loadJob = new Job("Indexing recipes") {
+				@Override
+				protected IStatus run(IProgressMonitor monitor) {
+					IProject[] all = ResourcesPlugin.getWorkspace().getRoot().getProjects();
+					monitor.beginTask("Indexing recipes", all.length);
+					for (int i = 0; i < all.length && !monitor.isCanceled(); ++i) {
+						try {
+							if (all[i].isOpen() && all[i].hasNature(BitbakeCommanderNature.NATURE_ID) && !isLoaded(all[i])) {
+								monitor.subTask(all[i].getName());
+								load(all[i]);
+							}
+						} catch (Exception e) {
+							e.printStackTrace();
+						}
+						monitor.worked(1);
+					}
+					monitor.done();
+					return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+				}
+			};
+		}
+		loadJob.schedule();
+	}
+
+	/**
+	 * Scan the projects again, for changes made outside of the workspace.
+	 */
+	public void reload() {
+		synchronized (this) {
+			projects.clear();
+			layers.clear();
+		}
+		loadProjects();
+	}
+
+	/**
+	 * Scan a project and replace its recipes in the index.
+	 *
+	 * @param project
+	 * @throws Exception
+	 */
+	public void load(IProject project) throws Exception {
+		BBSession session = Activator.getBBSession(project.getLocationURI().getPath());
+		Collection<IFile> recipeFiles = session.getRecipeFiles(project);
+		if (recipeFiles == null) {
+			return;
+		}
+		Collection<IFile> appendFiles = session.getAppendFiles(project);
+
+		synchronized (this) {
+			dropProject(project);
+			for (Iterator<IFile> i = appendFiles.iterator(); i.hasNext();) {
+				addAppend(i.next());
+			}
+			for (Iterator<IFile> i = recipeFiles.iterator(); i.hasNext();) {
+				addRecipe(i.next());
+			}
+			projects.put(project, session.getRecipeIndex());
+			updateSnapshot();
+		}
+		fireChanged();
+	}
+
+	/**
+	 * Apply a resource change to the index. Added files are only indexed if
+	 * their project is and BBFILES matches them.
+	 *
+	 * @param added added files
+	 * @param removed removed files and projects
+	 */
+	public void resourcesChanged(IResource[] added, IResource[] removed) {
+		boolean modified = false;
+		synchronized (this) {
+			for (int i = 0; i < removed.length; i++) {
+				IResource res = removed[i];
+				if (res instanceof IProject) {
+					modified |= dropProject((IProject) res);
+					projects.remove(res);
+				} else if (res instanceof IFile) {
+					if (recipes.remove(res) != null) {
+						modified = true;
+					} else if (res.getName().endsWith(APPEND_EXTENSION) && removeAppend((IFile) res)) {
+						modified = true;
+					}
+				}
+			}
+			for (int i = 0; i < added.length; i++) {
+				if (!(added[i] instanceof IFile)) {
+					continue;
+				}
+				IFile file = (IFile) added[i];
+				BBRecipeIndex patterns = projects.get(file.getProject());
+				IPath location = file.getLocation();
+				if (patterns == null || location == null || !patterns.matches(location.toString())) {
+					continue;
+				}
+				if (file.getName().endsWith(APPEND_EXTENSION)) {
+					addAppend(file);
+					updateAppends(file);
+					modified = true;
+				} else if (file.getName().endsWith(RECIPE_EXTENSION)) {
+					addRecipe(file);
+					modified = true;
+				}
+			}
+			if (modified) {
+				updateSnapshot();
+			}
+		}
+		if (modified) {
+			fireChanged();
+		}
+	}
+
+	private void fireChanged() {
+		for (Iterator<Listener> i = listeners.iterator(); i.hasNext();) {
+			i.next().recipesChanged(this);
+		}
+	}
+
+	private boolean dropProject(IProject project) {
+		boolean modified = false;
+		for (Iterator<IFile> i = recipes.keySet().iterator(); i.hasNext();) {
+			if (project.equals(i.next().getProject())) {
+				i.remove();
+				modified = true;
+			}
+		}
+		for (Iterator<List<IFile>> i = appends.values().iterator(); i.hasNext();) {
+			List<IFile> files = i.next();
+			for (Iterator<IFile> j = files.iterator(); j.hasNext();) {
+				if (project.equals(j.next().getProject())) {
+					j.remove();
+				}
+			}
+			if (files.isEmpty()) {
+				i.remove();
+			}
+		}
+		for (Iterator<IContainer> i = layers.keySet().iterator(); i.hasNext();) {
+			if (project.equals(i.next().getProject())) {
+				i.remove();
+			}
+		}
+		return modified;
+	}
+
+	private void addRecipe(IFile file) {
+		String baseName = file.getName().substring(0, file.getName().length() - RECIPE_EXTENSION.length());
+		recipes.put(file, new RecipeEntry(file, getLayer(file.getParent()), findAppends(baseName)));
+	}
+
+	private static String getAppendKey(IFile file) {
+		String name = file.getName();
+		name = name.substring(0, name.length() - APPEND_EXTENSION.length());
+		int wildcard = name.indexOf('%');
+		return (wildcard >= 0) ? name.substring(0, wildcard + 1) : name;
+	}
+
+	private void addAppend(IFile file) {
+		String key = getAppendKey(file);
+		List<IFile> files = appends.get(key);
+		if (files == null) {
+			files = new ArrayList<IFile>(1);
+			appends.put(key, files);
+		}
+		if (!files.contains(file)) {
+			files.add(file);
+		}
+	}
+
+	private boolean removeAppend(IFile file) {
+		List<IFile> files = appends.get(getAppendKey(file));
+		if (files == null || !files.remove(file)) {
+			return false;
+		}
+		if (files.isEmpty()) {
+			appends.remove(getAppendKey(file));
+		}
+		updateAppends(file);
+		return true;
+	}
+
+	/**
+	 * Recompute the appends of the recipes an append file applies to.
+	 */
+	private void updateAppends(IFile append) {
+		String key = getAppendKey(append);
+		boolean wildcard = key.endsWith("%");
+		String prefix = wildcard ? key.substring(0, key.length() - 1) : key;
+		for (Iterator<RecipeEntry> i = recipes.values().iterator(); i.hasNext();) {
+			RecipeEntry entry = i.next();
+			String baseName = entry.getBaseName();
+			if (wildcard ? baseName.startsWith(prefix) : baseName.equals(prefix)) {
+				entry.setAppends(findAppends(baseName));
+			}
+		}
+	}
+
+	/**
+	 * Find the appends of a recipe. As in bitbake, <code>foo_%.bbappend</code>
+	 * applies to any recipe whose name starts with <code>foo_</code>.
+	 */
+	private IFile[] findAppends(String baseName) {
+		if (appends.isEmpty()) {
+			return NO_APPENDS;
+		}
+		List<IFile> result = null;
+		List<IFile> files = appends.get(baseName);
+		if (files != null) {
+			result = new ArrayList<IFile>(files);
+		}
+		for (int i = 0; i <= baseName.length(); i++) {
+			files = appends.get(baseName.substring(0, i) + '%');
+			if (files != null) {
+				if (result == null) {
+					result = new ArrayList<IFile>(files.size());
+				}
+				result.addAll(files);
+			}
+		}
+		return (result == null) ? NO_APPENDS : result.toArray(new IFile[result.size()]);
+	}
+
+	/**
+	 * @param dir
+	 * @return the name of the nearest directory containing conf/layer.conf,
+	 * or of the project.
+	 */
+	private String getLayer(IContainer dir) {
+		if (dir == null || dir.getType() == IResource.ROOT) {
+			return "";
+		}
+		String layer = layers.get(dir);
+		if (layer == null) {
+			IPath location = dir.getLocation();
+			if (dir.getType() == IResource.PROJECT || (location != null && location.append(LAYER_CONF).toFile().isFile())) {
+				layer = dir.getName();
+			} else {
+				layer = getLayer(dir.getParent());
+			}
+			layers.put(dir, layer);
+		}
+		return layer;
+	}
+
+	private void updateSnapshot() {
+		RecipeEntry[] entries = recipes.values().toArray(new RecipeEntry[recipes.size()]);
+		Arrays.sort(entries, new Comparator<RecipeEntry>() {
+			public int compare(RecipeEntry a, RecipeEntry b) {
+				int c = a.getName().compareTo(b.getName());
+				if (c == 0) {
+					c = a.getVersion().compareTo(b.getVersion());
+				}
+				if (c == 0) {
+					c = a.getFile().getFullPath().toString().compareTo(b.getFile().getFullPath().toString());
+				}
+				return c;
+			}
+		});
+		snapshot = entries;
+	}
+}
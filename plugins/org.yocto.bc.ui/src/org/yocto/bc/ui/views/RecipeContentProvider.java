@@ -10,50 +10,92 @@
  *******************************************************************************/
 package org.yocto.bc.ui.views;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-
-import org.eclipse.core.resources.IProject;
-import org.eclipse.core.resources.ResourcesPlugin;
-import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.IPath;
-import org.eclipse.jface.viewers.IStructuredContentProvider;
+import java.util.Arrays;
+
+import org.eclipse.jface.viewers.ILazyContentProvider;
+import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.widgets.Control;
+
+import org.yocto.bc.ui.model.RecipeEntry;
+import org.yocto.bc.ui.model.RecipeIndex;
 
-import org.yocto.bc.bitbake.BBSession;
-import org.yocto.bc.ui.Activator;
-import org.yocto.bc.ui.builder.BitbakeCommanderNature;
+/**
+ * Feeds a virtual table with the recipes of a {@link RecipeIndex}. Only the
+ * visible rows are materialized, the index is filtered without copying
+ * the recipes.
+ */
+class RecipeContentProvider implements ILazyContentProvider, RecipeIndex.Listener {
+	private TableViewer viewer;
+	private RecipeIndex index;
+	private RecipeEntry[] elements = new RecipeEntry[0];
+	private String filter = "";
 
-class RecipeContentProvider implements IStructuredContentProvider {
 	public void dispose() {
+		if (index != null) {
+			index.removeListener(this);
+			index = null;
+		}
 	}
 
-	public Object[] getElements(Object parent) {
-		List<IPath> recipes = new ArrayList<IPath>();
-		IProject[] projects = ResourcesPlugin.getWorkspace().getRoot().getProjects();
-		for (int i = 0; i < projects.length; ++i) {
-			try {
-				if (projects[i].isOpen() && projects[i].hasNature(BitbakeCommanderNature.NATURE_ID)) {
-					recipes.addAll(getRecipesFromProject(projects[i]));
-				}
-			} catch (CoreException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			} catch (Exception e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+	public void inputChanged(Viewer v, Object oldInput, Object newInput) {
+		viewer = (TableViewer) v;
+		if (index != null) {
+			index.removeListener(this);
+		}
+		index = (newInput instanceof RecipeIndex) ? (RecipeIndex) newInput : null;
+		if (index != null) {
+			index.addListener(this);
+			update();
+			index.loadProjects();
+		}
+	}
+
+	public void updateElement(int i) {
+		if (i < elements.length) {
+			viewer.replace(elements[i], i);
 		}
+	}
 
-		return recipes.toArray();
+	/**
+	 * Only show the recipes whose file or layer name contain the text.
+	 *
+	 * @param text
+	 */
+	public void setFilter(String text) {
+		filter = text.trim().toLowerCase();
+		update();
 	}
 
-	private Collection<IPath> getRecipesFromProject(IProject project) throws Exception {
-		BBSession session = Activator.getBBSession(project.getLocationURI().getPath(), null);
-		return session.getRecipeFiles(project);
+	public void recipesChanged(RecipeIndex changed) {
+		final Control control = (viewer != null) ? viewer.getControl() : null;
+		if (control == null || control.isDisposed()) {
+			return;
+		}
+		control.getDisplay().asyncExec(new Runnable() {
+			public void run() {
+				if (!control.isDisposed()) {
+					update();
+				}
+			}
+		});
 	}
 
-	public void inputChanged(Viewer v, Object oldInput, Object newInput) {
+	private void update() {
+		RecipeEntry[] all = (index != null) ? index.getRecipes() : new RecipeEntry[0];
+		if (filter.length() == 0) {
+			elements = all;
+		} else {
+			RecipeEntry[] matching = new RecipeEntry[all.length];
+			int count = 0;
+			for (int i = 0; i < all.length; i++) {
+				if (all[i].matches(filter)) {
+					matching[count++] = all[i];
+				}
+			}
+			elements = Arrays.copyOf(matching, count);
+		}
+		viewer.setItemCount(elements.length);
+		viewer.refresh();
 	}
-}
\ No newline at end of file
+}
@@ -24,10 +24,16 @@ import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.ITableLabelProvider;
 import org.eclipse.jface.viewers.LabelProvider;
 import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.TableViewerColumn;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
 import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Menu;
+import org.eclipse.swt.widgets.Text;
 import org.eclipse.ui.IActionBars;
 import org.eclipse.ui.ISharedImages;
 import org.eclipse.ui.IWorkbenchActionConstants;
@@ -36,16 +42,34 @@ import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.part.FileEditorInput;
 import org.eclipse.ui.part.ViewPart;
 
+import org.yocto.bc.ui.Activator;
 import org.yocto.bc.ui.editors.bitbake.BitBakeFileEditor;
+import org.yocto.bc.ui.model.RecipeEntry;
 
 public class RecipeView extends ViewPart {
 	class ViewLabelProvider extends LabelProvider implements ITableLabelProvider {
 		public Image getColumnImage(Object obj, int index) {
-			return getImage(obj);
+			return (index == 0) ? getImage(obj) : null;
 		}
 
 		public String getColumnText(Object obj, int index) {
 
+			if (obj instanceof RecipeEntry) {
+				RecipeEntry recipe = (RecipeEntry) obj;
+				switch (index) {
+				case 0:
+					return recipe.getName();
+				case 1:
+					return recipe.getVersion();
+				case 2:
+					return recipe.getLayer();
+				case 3:
+					return (recipe.getAppends().length > 0) ? Integer.toString(recipe.getAppends().length) : "";
+				default:
+					return recipe.getFile().getProjectRelativePath().toString();
+				}
+			}
+
 			if (obj instanceof IFile) {
 				return ((IFile) obj).getName();
 			}
@@ -59,7 +83,12 @@ public class RecipeView extends ViewPart {
 		}
 	}
 	public static final String ID_VIEW = "org.yocto.bc.ui.views.RecipeView";
+	private static final String[] COLUMNS = { "Recipe", "Version", "Layer", "Appends", "Path" };
+	private static final int[] COLUMN_WIDTHS = { 200, 100, 120, 60, 300 };
 private TableViewer viewer;
+	private RecipeContentProvider contentProvider;
+	private Text filterText;
+	private Action refreshAction;
 	
 	/*	private Action action1;
 		private Action action2;
@@ -73,10 +102,33 @@ private TableViewer viewer;
 
 	@Override
 	public void createPartControl(Composite parent) {
-		viewer = new TableViewer(parent, SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL);
-		viewer.setContentProvider(new RecipeContentProvider());
+		GridLayout layout = new GridLayout(1, false);
+		layout.marginWidth = 0;
+		layout.marginHeight = 0;
+		parent.setLayout(layout);
+
+		filterText = new Text(parent, SWT.SEARCH | SWT.ICON_SEARCH | SWT.ICON_CANCEL);
+		filterText.setMessage("Filter recipes");
+		filterText.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+		filterText.addModifyListener(new ModifyListener() {
+			public void modifyText(ModifyEvent e) {
+				contentProvider.setFilter(filterText.getText());
+			}
+		});
+
+		viewer = new TableViewer(parent, SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL | SWT.VIRTUAL | SWT.FULL_SELECTION);
+		viewer.getControl().setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+		viewer.getTable().setHeaderVisible(true);
+		for (int i = 0; i < COLUMNS.length; i++) {
+			TableViewerColumn column = new TableViewerColumn(viewer, SWT.NONE);
+			column.getColumn().setText(COLUMNS[i]);
+			column.getColumn().setWidth(COLUMN_WIDTHS[i]);
+		}
+		viewer.setUseHashlookup(true);
+		contentProvider = new RecipeContentProvider();
+		viewer.setContentProvider(contentProvider);
 		viewer.setLabelProvider(new ViewLabelProvider());
-		viewer.setInput(getViewSite());
+		viewer.setInput(Activator.getRecipeIndex());
 		makeActions();
 		hookContextMenu();
 		hookDoubleClickAction();
@@ -99,7 +151,8 @@ private TableViewer viewer;
 	private void fillLocalToolBar(IToolBarManager manager) {
 /*		manager.add(action1);
 		manager.add(action2);
-*/	}
+*/		manager.add(refreshAction);
+	}
 
 	private void hookContextMenu() {
 		MenuManager menuMgr = new MenuManager("#PopupMenu");
@@ -138,12 +191,26 @@ private TableViewer viewer;
 		action2.setText("Action 2");
 		action2.setToolTipText("Action 2 tooltip");
 		action2.setImageDescriptor(PlatformUI.getWorkbench().getSharedImages().getImageDescriptor(ISharedImages.IMG_OBJS_INFO_TSK));
-*/		doubleClickAction = new Action() {
+*/		refreshAction = new Action() {
+			@Override
+			public void run() {
+				Activator.getRecipeIndex().reload();
+			}
+		};
+		refreshAction.setText("Refresh");
+		refreshAction.setToolTipText("Scan the recipes of all projects again");
+		refreshAction.setImageDescriptor(PlatformUI.getWorkbench().getSharedImages().getImageDescriptor(ISharedImages.IMG_ELCL_SYNCED));
+
+		doubleClickAction = new Action() {
 			@Override
 			public void run() {
 				ISelection selection = viewer.getSelection();
 				Object obj = ((IStructuredSelection) selection).getFirstElement();
 
+				if (obj instanceof RecipeEntry) {
+					obj = ((RecipeEntry) obj).getFile();
+				}
+
 				if (obj instanceof IFile) {
 					try {
 						RecipeView.this.getViewSite().getPage().openEditor(new FileEditorInput((IFile) obj), BitBakeFileEditor.EDITOR_ID);
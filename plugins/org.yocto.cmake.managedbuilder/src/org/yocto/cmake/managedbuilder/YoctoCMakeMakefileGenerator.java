@@ -11,9 +11,18 @@
 package org.yocto.cmake.managedbuilder;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.eclipse.cdt.managedbuilder.core.IBuilder;
 import org.eclipse.cdt.managedbuilder.core.IConfiguration;
@@ -40,6 +49,7 @@ public class YoctoCMakeMakefileGenerator implements IManagedBuilderMakefileGener
 	private static final String MAKEFILE_NAME = "Makefile"; //$NON-NLS-1$
 	private static final String CMAKE_FILE_NAME = "CMakeLists.txt"; //$NON-NLS-1$
 	private static final String CMAKECACHE_FILE_NAME = "CMakeCache.txt"; //$NON-NLS-1$
+	private static final String FINGERPRINT_FILE_NAME = "YoctoCMakeConfigure.fingerprint"; //$NON-NLS-1$
 
 	private IProject project;
 	private int lastBuildInfoChecksum = 0;
@@ -106,10 +116,10 @@ public class YoctoCMakeMakefileGenerator implements IManagedBuilderMakefileGener
 
 		IFile cmakeFile = project.getFile(CMAKE_FILE_NAME);
 		IResourceDelta cmakeDelta = delta.findMember(cmakeFile.getProjectRelativePath());
-		IResourceDelta[] deltas = delta
-				.getAffectedChildren(IResourceDelta.ADDED | IResourceDelta.REMOVED);
 
-		if (deltas.length > 0 || cmakeDelta != null || currentBuildInfoChecksum != lastBuildInfoChecksum) {
+		// Sources added or removed are left to the Makefiles generated by
+		// cmake, which run it again when the CMakeLists.txt files change
+		if (cmakeDelta != null || currentBuildInfoChecksum != lastBuildInfoChecksum) {
 			lastBuildInfoChecksum = currentBuildInfoChecksum;
 			return regenerateMakefiles();
 		} else {
@@ -143,15 +153,10 @@ public class YoctoCMakeMakefileGenerator implements IManagedBuilderMakefileGener
 			monitor.subTask(
 					YoctoCMakeMessages.getString("YoctoCMakeMakefileGenerator.creatingBuildDirectory")); //$NON-NLS-1$
 			location.toFile().mkdirs();
-		} else {
-			monitor.subTask(
-					YoctoCMakeMessages.getString("YoctoCMakeMakefileGenerator.removingCacheFiles")); //$NON-NLS-1$
-			IFile cmakeCache = project.getFile(workingDir.append(CMAKECACHE_FILE_NAME));
-			cmakeCache.delete(true, monitor);
 		}
-		monitor.setTaskName(taskName);
 
-		createToolchainCMakeFile(workingDir);
+		String toolchainCMakeFileContent = createToolchainCMakeFileContent();
+		updateToolchainCMakeFile(toolchainCMakeFileContent);
 
 		// Create the Makefiles by executing cmake
 		ExecuteConfigureJob job =
@@ -161,10 +166,48 @@ public class YoctoCMakeMakefileGenerator implements IManagedBuilderMakefileGener
 		job.setPriority(Job.BUILD);
 		job.setUser(false);
 
+		// The Makefiles generated by cmake run it again when the CMakeLists.txt
+		// files change, and cmake updates its cache from the options of the
+		// command line: only a new toolchain or generator requires a new cache
+		String cacheFingerprint = getFingerprint(toolchainCMakeFileContent,
+				String.join("\0", getCacheOptions(job.getConfigureCommand()))); //$NON-NLS-1$
+		String configureFingerprint = getFingerprint(cacheFingerprint,
+				String.join("\0", job.getConfigureCommand()), //$NON-NLS-1$
+				new TreeMap<String, String>(job.getEnvironment()).toString());
+
+		File fingerprintFile = location.append(FINGERPRINT_FILE_NAME).toFile();
+		String[] lastFingerprints = readFingerprints(fingerprintFile);
+		File cmakeCacheFile = location.append(CMAKECACHE_FILE_NAME).toFile();
+
+		if (configureFingerprint.equals(lastFingerprints[1]) && cmakeCacheFile.exists()
+				&& location.append(MAKEFILE_NAME).toFile().exists()) {
+			monitor.done();
+			return new MultiStatus(
+					ManagedBuilderCorePlugin.getUniqueIdentifier(), IStatus.OK,
+					new String(YoctoCMakeMessages.getString("YoctoCMakeMakefileGenerator.ok.makefilesStillValid")), null); //$NON-NLS-1$
+		}
+
+		if (!cacheFingerprint.equals(lastFingerprints[0]) && cmakeCacheFile.exists()) {
+			monitor.subTask(
+					YoctoCMakeMessages.getString("YoctoCMakeMakefileGenerator.removingCacheFiles")); //$NON-NLS-1$
+			IFile cmakeCache = project.getFile(workingDir.append(CMAKECACHE_FILE_NAME));
+			if (cmakeCache.exists()) {
+				cmakeCache.delete(true, monitor);
+			} else {
+				cmakeCacheFile.delete();
+			}
+		}
+		// configure again next time if cmake fails
+		fingerprintFile.delete();
+		monitor.setTaskName(taskName);
+
 		job.schedule();
 		try {
 			job.join();
 			monitor.done();
+			if (job.getResult().isOK()) {
+				writeFingerprints(fingerprintFile, cacheFingerprint, configureFingerprint);
+			}
 			return new MultiStatus(
 					Activator.PLUGIN_ID, job.getResult().getSeverity(),
 					job.getResult().getMessage(), null);
@@ -176,6 +219,73 @@ public class YoctoCMakeMakefileGenerator implements IManagedBuilderMakefileGener
 		}
 	}
 
+	/**
+	 * @param command cmake command line
+	 * @return the command and the options that cmake cannot change in an
+	 *         existing cache: generator, toolset, platform and toolchain file
+	 */
+	private List<String> getCacheOptions(List<String> command) {
+		List<String> options = new ArrayList<String>();
+		for (int i = 0; i < command.size(); i++) {
+			String arg = command.get(i);
+			if (i == 0 || arg.startsWith("-DCMAKE_TOOLCHAIN_FILE")) { //$NON-NLS-1$
+				options.add(arg);
+			} else if (arg.equals("-G") || arg.equals("-T") || arg.equals("-A")) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				options.add(arg);
+				if (i + 1 < command.size()) {
+					options.add(command.get(++i));
+				}
+			} else if (arg.startsWith("-G") || arg.startsWith("-T") || arg.startsWith("-A")) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				options.add(arg);
+			}
+		}
+		return options;
+	}
+
+	private String getFingerprint(String... parts) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+			for (String part : parts) {
+				digest.update(part.getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+			}
+			StringBuilder fingerprint = new StringBuilder();
+			for (byte b : digest.digest()) {
+				fingerprint.append(String.format("%02x", Byte.valueOf(b))); //$NON-NLS-1$
+			}
+			return fingerprint.toString();
+		} catch (NoSuchAlgorithmException e) {
+			return Integer.toHexString(Arrays.hashCode(parts));
+		}
+	}
+
+	/**
+	 * @param fingerprintFile
+	 * @return the fingerprints of the cache and of the configuration of the
+	 *         last successful configure, null if unknown
+	 */
+	private String[] readFingerprints(File fingerprintFile) {
+		String[] fingerprints = new String[2];
+		try {
+			List<String> lines = Files.readAllLines(fingerprintFile.toPath(), StandardCharsets.UTF_8);
+			for (int i = 0; i < fingerprints.length && i < lines.size(); i++) {
+				fingerprints[i] = lines.get(i);
+			}
+		} catch (IOException e) {
+			// configure as if the first time
+		}
+		return fingerprints;
+	}
+
+	private void writeFingerprints(File fingerprintFile, String cacheFingerprint, String configureFingerprint) {
+		try {
+			Files.write(fingerprintFile.toPath(), Arrays.asList(cacheFingerprint, configureFingerprint),
+					StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	private String createCMakeSetStatement(String variable, String value, String cacheOption) {
 		String setStatement = "set("; //$NON-NLS-1$
 		setStatement += variable + " " + value; //$NON-NLS-1$
@@ -187,40 +297,54 @@ public class YoctoCMakeMakefileGenerator implements IManagedBuilderMakefileGener
 	}
 
 	// Considered poky's cmake.bbclass for this method
-	private void createToolchainCMakeFile(IPath workingDir) {
+	private String createToolchainCMakeFileContent() {
 		String toolchainCMakeFileContentAsString = "# CMake system name must be something like \"Linux\".\n" + //$NON-NLS-1$
 				"# This is important for cross-compiling.\n"; //$NON-NLS-1$
 
-		String targetArchValue = YoctoSDKUtils.getEnvValue(project, "TARGET_ARCH"); //$NON-NLS-1$
+		List<String> findRootPathValues = Arrays.asList("OECORE_TARGET_SYSROOT", //$NON-NLS-1$
+														"STAGING_DIR_HOST", //$NON-NLS-1$
+														"STAGING_DIR_NATIVE", //$NON-NLS-1$
+														"CROSS_DIR", //$NON-NLS-1$
+														"OECMAKE_PERLNATIVE_DIR", //$NON-NLS-1$
+														"OECMAKE_EXTRA_ROOT_PATH", //$NON-NLS-1$
+														"EXTERNAL_TOOLCHAIN"); //$NON-NLS-1$
+		List<String> envNames = new ArrayList<String>(findRootPathValues);
+		envNames.addAll(Arrays.asList("TARGET_ARCH", "OECMAKE_C_COMPILER", "OECMAKE_CXX_COMPILER", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				"OECMAKE_C_FLAGS", "OECMAKE_CXX_FLAGS", "OECMAKE_C_FLAGS_RELEASE", "OECMAKE_CXX_FLAGS_RELEASE", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				"OECMAKE_C_LINK_FLAGS", "OECMAKE_CXX_LINK_FLAGS", "OECMAKE_RPATH", "STAGING_DATADIR")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		// read all the variables from the project description at once
+		Map<String, String> envValues = YoctoSDKUtils.getEnvValues(project, envNames.toArray(new String[0]));
+
+		String targetArchValue = envValues.get("TARGET_ARCH"); //$NON-NLS-1$
 		toolchainCMakeFileContentAsString += createCMakeSetStatement("CMAKE_SYSTEM_PROCESSOR", targetArchValue, null); //$NON-NLS-1$
 
-		String oeCMakeCCompilerValue = 	YoctoSDKUtils.getEnvValue(project, "OECMAKE_C_COMPILER"); //$NON-NLS-1$
+		String oeCMakeCCompilerValue = 	envValues.get("OECMAKE_C_COMPILER"); //$NON-NLS-1$
 		toolchainCMakeFileContentAsString += createCMakeSetStatement("CMAKE_C_COMPILER", oeCMakeCCompilerValue, null); //$NON-NLS-1$
 
-		String oeCMakeCXXCompilerValue = YoctoSDKUtils.getEnvValue(project, "OECMAKE_CXX_COMPILER"); //$NON-NLS-1$
+		String oeCMakeCXXCompilerValue = envValues.get("OECMAKE_CXX_COMPILER"); //$NON-NLS-1$
 		toolchainCMakeFileContentAsString += createCMakeSetStatement("CMAKE_CXX_COMPILER", oeCMakeCXXCompilerValue, null); //$NON-NLS-1$
 
-		String oeCMakeCFlagsValue = YoctoSDKUtils.getEnvValue(project, "OECMAKE_C_FLAGS"); //$NON-NLS-1$
+		String oeCMakeCFlagsValue = envValues.get("OECMAKE_C_FLAGS"); //$NON-NLS-1$
 		toolchainCMakeFileContentAsString += createCMakeSetStatement("CMAKE_C_FLAGS", //$NON-NLS-1$
 				"\"" + oeCMakeCFlagsValue + "\"", "CACHE STRING \"CFLAGS\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-		String oeCMakeCXXFlagsValue = YoctoSDKUtils.getEnvValue(project, "OECMAKE_CXX_FLAGS"); //$NON-NLS-1$
+		String oeCMakeCXXFlagsValue = envValues.get("OECMAKE_CXX_FLAGS"); //$NON-NLS-1$
 		toolchainCMakeFileContentAsString += createCMakeSetStatement("CMAKE_CXX_FLAGS", //$NON-NLS-1$
 				"\"" + oeCMakeCXXFlagsValue + "\"", "CACHE STRING \"CXXFLAGS\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-		String oeCMakeCFlagsReleaseValue = YoctoSDKUtils.getEnvValue(project, "OECMAKE_C_FLAGS_RELEASE"); //$NON-NLS-1$
+		String oeCMakeCFlagsReleaseValue = envValues.get("OECMAKE_C_FLAGS_RELEASE"); //$NON-NLS-1$
 		toolchainCMakeFileContentAsString += createCMakeSetStatement("CMAKE_C_FLAGS_RELEASE", //$NON-NLS-1$
 				"\"" + oeCMakeCFlagsReleaseValue + "\"", "CACHE STRING \"CFLAGS for release\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-		String oeCMakeCXXFlagsReleaseValue = YoctoSDKUtils.getEnvValue(project, "OECMAKE_CXX_FLAGS_RELEASE"); //$NON-NLS-1$
+		String oeCMakeCXXFlagsReleaseValue = envValues.get("OECMAKE_CXX_FLAGS_RELEASE"); //$NON-NLS-1$
 		toolchainCMakeFileContentAsString += createCMakeSetStatement("CMAKE_CXX_FLAGS_RELEASE", //$NON-NLS-1$
 				"\"" + oeCMakeCXXFlagsReleaseValue + "\"", "CACHE STRING \"CXXFLAGS for release\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-		String oeCMakeCLinkFlagsValue = YoctoSDKUtils.getEnvValue(project, "OECMAKE_C_LINK_FLAGS"); //$NON-NLS-1$
+		String oeCMakeCLinkFlagsValue = envValues.get("OECMAKE_C_LINK_FLAGS"); //$NON-NLS-1$
 		toolchainCMakeFileContentAsString += createCMakeSetStatement("CMAKE_C_LINK_FLAGS", //$NON-NLS-1$
 				"\"" + oeCMakeCLinkFlagsValue + "\"", "CACHE STRING \"LDFLAGS\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-		String oeCMakeCXXLinkFlagsValue = YoctoSDKUtils.getEnvValue(project, "OECMAKE_CXX_LINK_FLAGS"); //$NON-NLS-1$
+		String oeCMakeCXXLinkFlagsValue = envValues.get("OECMAKE_CXX_LINK_FLAGS"); //$NON-NLS-1$
 		toolchainCMakeFileContentAsString += createCMakeSetStatement("CMAKE_CXX_LINK_FLAGS", //$NON-NLS-1$
 				"\"" + oeCMakeCXXLinkFlagsValue + "\"", "CACHE STRING \"LDFLAGS\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
@@ -228,14 +352,7 @@ public class YoctoCMakeMakefileGenerator implements IManagedBuilderMakefileGener
 		toolchainCMakeFileContentAsString += "# only search in the paths provided so cmake doesnt pick\n"; //$NON-NLS-1$
 		toolchainCMakeFileContentAsString += "# up libraries and tools from the native build machine\n"; //$NON-NLS-1$
 
-		List<String> findRootPathValues = Arrays.asList("OECORE_TARGET_SYSROOT", //$NON-NLS-1$
-														"STAGING_DIR_HOST", //$NON-NLS-1$
-														"STAGING_DIR_NATIVE", //$NON-NLS-1$
-														"CROSS_DIR", //$NON-NLS-1$
-														"OECMAKE_PERLNATIVE_DIR", //$NON-NLS-1$
-														"OECMAKE_EXTRA_ROOT_PATH", //$NON-NLS-1$
-														"EXTERNAL_TOOLCHAIN"); //$NON-NLS-1$
-		toolchainCMakeFileContentAsString += createCMakeSetStatement("CMAKE_FIND_ROOT_PATH", getFindRootPath(findRootPathValues), null); //$NON-NLS-1$
+		toolchainCMakeFileContentAsString += createCMakeSetStatement("CMAKE_FIND_ROOT_PATH", getFindRootPath(findRootPathValues, envValues), null); //$NON-NLS-1$
 
 		toolchainCMakeFileContentAsString += createCMakeSetStatement("CMAKE_FIND_ROOT_PATH_MODE_PROGRAM", "NEVER", null); //$NON-NLS-1$ //$NON-NLS-2$
 		toolchainCMakeFileContentAsString += createCMakeSetStatement("CMAKE_FIND_ROOT_PATH_MODE_LIBRARY", "ONLY", null); //$NON-NLS-1$ //$NON-NLS-2$
@@ -249,13 +366,13 @@ public class YoctoCMakeMakefileGenerator implements IManagedBuilderMakefileGener
 		toolchainCMakeFileContentAsString += "# We need to set the rpath to the correct directory as cmake does not provide any\n"; //$NON-NLS-1$
 		toolchainCMakeFileContentAsString += "# directory as rpath by default\n"; //$NON-NLS-1$
 
-		String oeCMakeRPathValue = YoctoSDKUtils.getEnvValue(project, "OECMAKE_RPATH"); //$NON-NLS-1$
+		String oeCMakeRPathValue = envValues.get("OECMAKE_RPATH"); //$NON-NLS-1$
 		toolchainCMakeFileContentAsString += createCMakeSetStatement("CMAKE_INSTALL_RPATH", oeCMakeRPathValue, null); //$NON-NLS-1$
 
 		toolchainCMakeFileContentAsString += "\n"; //$NON-NLS-1$
 		toolchainCMakeFileContentAsString += "# Use native cmake modules\n"; //$NON-NLS-1$
 
-		String stagingDatadirValue = YoctoSDKUtils.getEnvValue(project, "STAGING_DATADIR"); //$NON-NLS-1$
+		String stagingDatadirValue = envValues.get("STAGING_DATADIR"); //$NON-NLS-1$
 		toolchainCMakeFileContentAsString += createCMakeSetStatement("CMAKE_MODULE_PATH", //$NON-NLS-1$
 				stagingDatadirValue + "/cmake/Modules/", null); //$NON-NLS-1$
 
@@ -264,24 +381,45 @@ public class YoctoCMakeMakefileGenerator implements IManagedBuilderMakefileGener
 		toolchainCMakeFileContentAsString += createCMakeSetStatement("CMAKE_LIBRARY_PATH", //$NON-NLS-1$
 				"${libdir} ${base_libdir}", null); //$NON-NLS-1$
 
-		InputStream toolchainCMakeFileContent = new ByteArrayInputStream(toolchainCMakeFileContentAsString.getBytes());
+		return toolchainCMakeFileContentAsString;
+	}
 
+	/**
+	 * Write the toolchain file, unless it already has the content: a new
+	 * modification time would make the Makefiles run cmake again.
+	 *
+	 * @param content
+	 */
+	private void updateToolchainCMakeFile(String content) {
+		byte[] bytes = content.getBytes();
 		IFile toolchainCMakeFile = project.getFile(TOOLCHAINCMAKE_FILE_NAME);
+		IPath toolchainCMakeFileLocation = toolchainCMakeFile.getLocation();
+		try {
+			if (toolchainCMakeFileLocation != null && Arrays.equals(bytes,
+					Files.readAllBytes(toolchainCMakeFileLocation.toFile().toPath()))) {
+				return;
+			}
+		} catch (IOException e) {
+			// missing: create it
+		}
+
+		InputStream toolchainCMakeFileContent = new ByteArrayInputStream(bytes);
 		try {
 			if (toolchainCMakeFile.exists()) {
-				toolchainCMakeFile.delete(true, monitor);
+				toolchainCMakeFile.setContents(toolchainCMakeFileContent, true, false, monitor);
+			} else {
+				toolchainCMakeFile.create(toolchainCMakeFileContent, true, monitor);
 			}
-			toolchainCMakeFile.create(toolchainCMakeFileContent, true, monitor);
 		} catch (CoreException e) {
 			e.printStackTrace();
 		}
 	}
 
-	private String getFindRootPath(List<String> values) {
+	private String getFindRootPath(List<String> values, Map<String, String> envValues) {
 		String findRootPath = "";
 
 		for (String value : values) {
-			String pathValue = YoctoSDKUtils.getEnvValue(project, value);
+			String pathValue = envValues.get(value);
 
 			if (pathValue.length() > 0) {
 				findRootPath += pathValue + " ";
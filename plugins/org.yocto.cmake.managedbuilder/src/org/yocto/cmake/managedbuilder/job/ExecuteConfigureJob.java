@@ -16,6 +16,7 @@ import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.cdt.core.CCorePlugin;
@@ -49,6 +50,7 @@ public class ExecuteConfigureJob extends Job {
 	private IProject project;
 	private IConfiguration configuration;
 	private IPath location;
+	private Map<String, String> environment;
 
 
 	public ExecuteConfigureJob(String name,
@@ -95,8 +97,24 @@ public class ExecuteConfigureJob extends Job {
 	}
 
 	protected void createProcesses() {
+		environment = getEnvVariablesAsMap(project);
 		configureProcess =
-				new SystemProcess(configureCommand, location.toFile(), getEnvVariablesAsMap(project));
+				new SystemProcess(configureCommand, location.toFile(), environment);
+	}
+
+	/**
+	 * @return the cmake command line, which must not be modified
+	 */
+	public List<String> getConfigureCommand() {
+		return configureCommand;
+	}
+
+	/**
+	 * @return the environment variables cmake runs with, which must not be
+	 *         modified
+	 */
+	public Map<String, String> getEnvironment() {
+		return environment;
 	}
 
 	private Map<String,String> getEnvVariablesAsMap (IProject project) {
@@ -86,7 +86,6 @@ public class ContainerCommandLauncher implements ICommandLauncher, IErrorMessage
 		return fProject;
 	}
 
-	@SuppressWarnings("unused")
 	private String getImageName() {
 		return fImageName;
 	}
@@ -402,8 +401,12 @@ public class ContainerCommandLauncher implements ICommandLauncher, IErrorMessage
 	protected void printImageHeader(OutputStream os) {
 		if (os != null) {
 			try {
-				os.write(NLS.bind(Messages.ContainerCommandLauncher_image_msg,
-						((ContainerCommandProcess) fProcess).getImage()).getBytes());
+				// commands run in pooled containers are not container
+				// processes
+				String image = (fProcess instanceof ContainerCommandProcess)
+						? ((ContainerCommandProcess) fProcess).getImage()
+						: getImageName();
+				os.write(NLS.bind(Messages.ContainerCommandLauncher_image_msg, image).getBytes());
 				os.write(NEWLINE.getBytes());
 				os.flush();
 			} catch (IOException e) {
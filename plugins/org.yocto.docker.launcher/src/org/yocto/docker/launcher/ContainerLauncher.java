@@ -11,32 +11,38 @@
  *******************************************************************************/
 package org.yocto.docker.launcher;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
-//import java.nio.file.Files;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
@@ -45,7 +51,6 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
-import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.dialogs.MessageDialog;
@@ -97,16 +102,14 @@ public class ContainerLauncher {
 	private static final String ERROR_NO_CONNECTIONS = "ContainerNoConnections.msg"; //$NON-NLS-1$
 	private static final String ERROR_NO_CONNECTION_WITH_URI = "ContainerNoConnectionWithURI.msg"; //$NON-NLS-1$
 
-	private static final String DIRFILE_NAME = "copiedVolumes"; //$NON-NLS-1$
+	// volumes extracted at the same time from an image
+	private static final int MAX_PARALLEL_COPIES = 4;
+	private static final int BUFFER_SIZE = 256 * 1024;
 
 	private static RunConsole console;
 
 //	private static Map<IProject, ID> fidMap = new HashMap<>();
 
-	private static Object lockObject = new Object();
-	private static Map<String, Map<String, Set<String>>> copiedVolumesMap = null;
-	private static Map<String, Map<String, Set<String>>> copyingVolumesMap = null;
-
 	private class CopyVolumesJob extends Job {
 
 		private static final String COPY_VOLUMES_JOB_TITLE = "ContainerLaunch.copyVolumesJob.title"; //$NON-NLS-1$
@@ -115,12 +118,23 @@ public class ContainerLauncher {
 		private static final String ERROR_COPYING_VOLUME = "ContainerLaunch.copyVolumesJob.error"; //$NON-NLS-1$
 
 		private final Map<String, String> volumes;
+		private final Map<String, VolumeSync> syncedVolumes;
 		private final IDockerConnection connection;
 		private final String containerId;
 
-		public CopyVolumesJob(Map<String, String> volumes, IDockerConnection connection, String containerId) {
+		/**
+		 * @param volumes       - map of host directories to container
+		 *                      directories
+		 * @param syncedVolumes - host directories mounted from named volumes,
+		 *                      copied incrementally
+		 * @param connection    - remote connection
+		 * @param containerId   - created container
+		 */
+		public CopyVolumesJob(Map<String, String> volumes, Map<String, VolumeSync> syncedVolumes,
+				IDockerConnection connection, String containerId) {
 			super(Messages.getString(COPY_VOLUMES_JOB_TITLE));
 			this.volumes = volumes;
+			this.syncedVolumes = syncedVolumes;
 			this.connection = connection;
 			this.containerId = containerId;
 		}
@@ -138,6 +152,7 @@ public class ContainerLauncher {
 				}
 				String hostDirectory = iterator.next();
 				String containerDirectory = volumes.get(hostDirectory);
+				VolumeSync sync = syncedVolumes.get(hostDirectory);
 				if (!containerDirectory.endsWith("/")) { //$NON-NLS-1$
 					containerDirectory = containerDirectory + "/"; //$NON-NLS-1$
 				}
@@ -146,7 +161,11 @@ public class ContainerLauncher {
 				}
 				monitor.setTaskName(Messages.getFormattedString(COPY_VOLUMES_TASK, hostDirectory));
 				try {
-					((DockerConnection) connection).copyToContainer(hostDirectory, containerId, containerDirectory);
+					if (sync != null) {
+						sync.sync(containerId, monitor);
+					} else {
+						((DockerConnection) connection).copyToContainer(hostDirectory, containerId, containerDirectory);
+					}
 					monitor.worked(1);
 				} catch (DockerException | InterruptedException | IOException e) {
 					monitor.done();
@@ -179,6 +198,24 @@ public class ContainerLauncher {
 		public int read() throws IOException {
 			return in.read();
 		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			// a non-blocking stream may return no data before the end
+			int n;
+			while ((n = in.read(b, off, len)) == 0) {
+				Thread.yield();
+			}
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
 	}
 
 	private class CopyVolumesFromImageJob extends Job {
@@ -192,8 +229,7 @@ public class ContainerLauncher {
 		private final IDockerConnection connection;
 		private final String image;
 		private final IPath target;
-		private Set<String> dirList;
-		private Set<String> copyingList;
+		private final VolumeCopyRegistry.ImageVolumes copied;
 
 		public CopyVolumesFromImageJob(IDockerConnection connection, String image, List<String> volumes,
 				List<String> excludedDirs, IPath target) {
@@ -203,43 +239,17 @@ public class ContainerLauncher {
 			this.connection = connection;
 			this.image = image;
 			this.target = target;
-			Map<String, Set<String>> dirMap = null;
-			Map<String, Set<String>> copyingMap = null;
-			synchronized (lockObject) {
-				String uri = connection.getUri();
-				dirMap = copiedVolumesMap.get(uri);
-				if (dirMap == null) {
-					dirMap = new HashMap<>();
-					copiedVolumesMap.put(uri, dirMap);
-				}
-				dirList = dirMap.get(image);
-				if (dirList == null) {
-					dirList = new LinkedHashSet<>();
-					dirMap.put(image, dirList);
-				}
-				copyingMap = copyingVolumesMap.get(uri);
-				if (copyingMap == null) {
-					copyingMap = new HashMap<>();
-					copyingVolumesMap.put(uri, copyingMap);
-				}
-				copyingList = copyingMap.get(image);
-				if (copyingList == null) {
-					copyingList = new LinkedHashSet<>();
-					copyingMap.put(image, copyingList);
-				}
-			}
+			this.copied = VolumeCopyRegistry.getInstance().get(connection.getUri(), image);
 		}
 
 		@Override
 		protected IStatus run(final IProgressMonitor monitor) {
 			monitor.beginTask(Messages.getFormattedString(COPY_VOLUMES_FROM_DESC, image), volumes.size());
 			String containerId = null;
-			String currentVolume = null;
 
-			// keep a list of already copied/being copied volumes so we can skip them and
-			// wait at the end to
-			// make sure if another job was copying them, it has finished
-			List<String> alreadyCopiedList = new ArrayList<>();
+			// the copies of other jobs to wait for at the end, so that the
+			// volumes are complete when the job ends
+			List<CompletableFuture<Boolean>> waiting = new ArrayList<>();
 
 			try {
 				IDockerImage dockerImage = ((DockerConnection) connection).getImageByTag(image);
@@ -256,10 +266,7 @@ public class ContainerLauncher {
 						if (!dockerImage.id().equals(imageId)) {
 							// if image id has changed...all bets are off
 							// and we must reload all directories
-							synchronized (lockObject) {
-								dirList.clear();
-								copyingList.clear();
-							}
+							copied.reset();
 							needImageIdFile = true;
 						}
 					} catch (IOException e) {
@@ -271,10 +278,7 @@ public class ContainerLauncher {
 							BufferedWriter bufferedWriter = new BufferedWriter(writer);) {
 						bufferedWriter.write(dockerImage.id());
 						bufferedWriter.newLine();
-						synchronized (lockObject) {
-							dirList.clear();
-							copyingList.clear();
-						}
+						copied.reset();
 					} catch (IOException e) {
 						// ignore
 					}
@@ -282,32 +286,10 @@ public class ContainerLauncher {
 
 				// check if we have anything to copy
 				boolean somethingToCopy = false;
-				synchronized (lockObject) {
-					for (String volume : volumes) {
-						boolean excluded = false;
-						for (String dir : excludedDirs) {
-							if (volume.startsWith(dir) && volume.charAt(dir.length()) == File.separatorChar) {
-								excluded = true;
-								break;
-							}
-						}
-						if (excluded) {
-							continue;
-						}
-						boolean alreadyCopied = false;
-						for (String path : dirList) {
-							if (volume.equals(path) || (volume.startsWith(path)
-									&& volume.charAt(path.length()) == File.separatorChar)) {
-								if (!copyingList.contains(path)) {
-									alreadyCopied = true;
-									break;
-								}
-							}
-						}
-						if (!alreadyCopied) {
-							somethingToCopy = true;
-							break;
-						}
+				for (String volume : volumes) {
+					if (!isSkipped(volume) && copied.find(volume) == null) {
+						somethingToCopy = true;
+						break;
 					}
 				}
 
@@ -324,141 +306,75 @@ public class ContainerLauncher {
 				IDockerHostConfig hostConfig = hostBuilder.build();
 				containerId = ((DockerConnection) connection).createContainer(config, hostConfig, null);
 
-				// copy each volume if it exists and is not copied over yet
+				// select the volumes which are not copied over yet. A volume
+				// inside another one is copied with it.
+				List<String> pending = new ArrayList<>();
 				for (String volume : volumes) {
-					currentVolume = volume;
-					if (monitor.isCanceled()) {
-						monitor.done();
-						return Status.CANCEL_STATUS;
-					}
-					// don't bother copying files from project
-					if (volume.contains("${ProjName}")) { //$NON-NLS-1$
+					// don't bother copying files from project, nor directories
+					// that are excluded
+					if (isSkipped(volume)) {
 						monitor.worked(1);
 						continue;
 					}
-					// don't copy directories that are excluded
-					boolean excluded = false;
-					for (String dir : excludedDirs) {
-						if (volume.equals(dir)
-								|| (volume.startsWith(dir) && volume.charAt(dir.length()) == File.separatorChar)) {
-							excluded = true;
-							break;
-						}
-					}
-					if (excluded) {
+					// if the directory is copied or being copied, either
+					// directly or as part of a parent directory, make sure it
+					// is finished copying before ending
+					CompletableFuture<Boolean> copy = copied.find(volume);
+					if (copy != null) {
+						waiting.add(copy);
 						monitor.worked(1);
 						continue;
 					}
-					// if we have already copied the directory either directly
-					// or as part of a parent directory copy, then skip to next
-					// volume.
-					String alreadyCopied = null;
-					synchronized (lockObject) {
-						for (String path : dirList) {
-							if (volume.equals(path) || (volume.startsWith(path)
-									&& volume.charAt(path.length()) == File.separatorChar)) {
-								alreadyCopied = path;
-								if (!dirList.contains(volume)) {
-									dirList.add(volume);
-								}
-								break;
-							}
-						}
-					}
-
-					// if we found a match, make sure it is finished copying
-					// before continuing
-					if (alreadyCopied != null) {
-						alreadyCopiedList.add(alreadyCopied);
+					if (addPending(pending, volume)) {
 						monitor.worked(1);
+					}
+				}
+				// another job may have started one of them in the meantime
+				Map<String, VolumeCopyRegistry.Copy> started = new HashMap<>();
+				for (Iterator<String> i = pending.iterator(); i.hasNext();) {
+					String volume = i.next();
+					VolumeCopyRegistry.Copy copy = copied.start(volume);
+					if (copy != null) {
+						started.put(volume, copy);
 						continue;
 					}
+					CompletableFuture<Boolean> other = copied.find(volume);
+					if (other != null) {
+						waiting.add(other);
+					}
+					i.remove();
+					monitor.worked(1);
+				}
 
-					// synchronize on the volume so others can wait until copy
-					// is completed
-					// instead of returning too fast and the headers won't be
-					// there
-					synchronized (volume) {
-						try (Closeable token = ((DockerConnection) connection).getOperationToken()) {
-							monitor.setTaskName(Messages.getFormattedString(COPY_VOLUMES_FROM_TASK, volume));
-							monitor.worked(1);
-
-							InputStream in = ((DockerConnection) connection).copyContainer(token, containerId, volume);
-
-							synchronized (lockObject) {
-								if (!dirList.contains(volume)) {
-									dirList.add(volume);
-									copyingList.add(volume);
-								} else {
-									continue;
-								}
-							}
-
-							/*
-							 * The input stream from copyContainer might be incomplete or non-blocking so we
-							 * should wrap it in a stream that is guaranteed to block until data is
-							 * available.
-							 */
-							TarArchiveInputStream k = new TarArchiveInputStream(new BlockingInputStream(in));
-							TarArchiveEntry te = null;
-							target.toFile().mkdirs();
-							IPath currDir = target.append(volume).removeLastSegments(1);
-							currDir.toFile().mkdirs();
-							while ((te = k.getNextTarEntry()) != null) {
-								long size = te.getSize();
-								IPath path = currDir;
-								path = path.append(te.getName());
-								File f = new File(path.toOSString());
-								if (te.isDirectory()) {
-									f.mkdir();
-									continue;
-								} else {
-									f.createNewFile();
-								}
-								FileOutputStream os = new FileOutputStream(f);
-								int bufferSize = ((int) size > 4096 ? 4096 : (int) size);
-								byte[] barray = new byte[bufferSize];
-								int result = -1;
-								while ((result = k.read(barray, 0, bufferSize)) > -1) {
-									if (monitor.isCanceled()) {
-										monitor.done();
-										k.close();
-										os.close();
-										return Status.CANCEL_STATUS;
-									}
-									os.write(barray, 0, result);
-								}
-								os.close();
-							}
-							k.close();
-							// remove from copying list so subsequent jobs might
-							// know that the volume
-							// is fully copied
-							synchronized (lockObject) {
-								copyingList.remove(currentVolume);
-							}
-						} catch (final DockerException e) {
-							// ignore
-							synchronized (lockObject) {
-								copyingList.remove(currentVolume);
-								dirList.remove(currentVolume);
-							}
+				// the volumes are independent: extract several at a time
+				final String copyContainerId = containerId;
+				final AtomicLong copiedBytes = new AtomicLong();
+				ExecutorService executor = Executors
+						.newFixedThreadPool(Math.max(1, Math.min(pending.size(), MAX_PARALLEL_COPIES)));
+				List<Future<IStatus>> results = new ArrayList<>();
+				for (final String volume : pending) {
+					final VolumeCopyRegistry.Copy copy = started.get(volume);
+					results.add(executor.submit(() -> copyVolume(copyContainerId, volume, copy, copiedBytes, monitor)));
+					waiting.add(copy);
+				}
+				executor.shutdown();
+				IStatus result = Status.OK_STATUS;
+				for (Future<IStatus> future : results) {
+					try {
+						if (future.get().getSeverity() == IStatus.CANCEL) {
+							result = Status.CANCEL_STATUS;
 						}
+					} catch (ExecutionException e) {
+						Activator.log(e.getCause());
 					}
 				}
+				if (result.getSeverity() == IStatus.CANCEL) {
+					monitor.done();
+					return result;
+				}
 			} catch (InterruptedException e) {
 				// do nothing
-			} catch (IOException | DockerException e) {
-				if (currentVolume != null) {
-					synchronized (lockObject) {
-						if (copyingList != null) {
-							copyingList.remove(currentVolume);
-						}
-						if (dirList != null) {
-							dirList.remove(currentVolume);
-						}
-					}
-				}
+			} catch (DockerException e) {
 				Activator.log(e);
 			} finally {
 				// remove the container used for copying
@@ -469,73 +385,245 @@ public class ContainerLauncher {
 						// ignore
 					}
 				}
-				for (String copiedVolume : alreadyCopiedList) {
-					synchronized (copiedVolume) {
-						// do something so synchronization will occur
-						synchronized (lockObject) {
-							if (!dirList.contains(copiedVolume)) {
-								dirList.add(copiedVolume);
-							}
-						}
+				for (CompletableFuture<Boolean> copy : waiting) {
+					try {
+						copy.get();
+					} catch (InterruptedException | ExecutionException e) {
+						// the other job logs its errors
+					}
+				}
+				// list the volumes copied as part of a parent directory too
+				for (String volume : volumes) {
+					CompletableFuture<Boolean> copy = isSkipped(volume) ? null : copied.find(volume);
+					if (copy != null && copy.getNow(Boolean.FALSE).booleanValue()) {
+						copied.add(volume);
 					}
 				}
 				monitor.done();
 			}
 			return Status.OK_STATUS;
 		}
-	}
 
-	@Override
-	protected void finalize() throws Throwable {
-		synchronized (lockObject) {
-			if (copiedVolumesMap != null) {
-				IPath pluginPath = Platform.getStateLocation(Platform.getBundle(Activator.PLUGIN_ID));
-				IPath path = pluginPath.append(DIRFILE_NAME);
-
-				File dirFile = path.toFile();
-				FileOutputStream f = new FileOutputStream(dirFile);
-				try (ObjectOutputStream oos = new ObjectOutputStream(f)) {
-					oos.writeObject(copiedVolumesMap);
+		/**
+		 * @return true if the volume is never copied: files of the project,
+		 *         or an excluded directory.
+		 */
+		private boolean isSkipped(String volume) {
+			if (volume.contains("${ProjName}")) { //$NON-NLS-1$
+				return true;
+			}
+			for (String dir : excludedDirs) {
+				if (isInside(volume, dir)) {
+					return true;
 				}
 			}
+			return false;
 		}
-		super.finalize();
-	}
 
-	public ContainerLauncher() {
-		initialize();
-	}
+		/**
+		 * Add a volume to the volumes to copy, unless it is inside one of them.
+		 * The volumes inside it are removed, as they are copied with it.
+		 *
+		 * @return true if the volume is copied with another one
+		 */
+		private boolean addPending(List<String> pending, String volume) {
+			for (Iterator<String> i = pending.iterator(); i.hasNext();) {
+				String path = i.next();
+				if (isInside(volume, path)) {
+					return true;
+				}
+				if (isInside(path, volume)) {
+					i.remove();
+				}
+			}
+			pending.add(volume);
+			return false;
+		}
+
+		/**
+		 * Copy a volume of the image to the target directory. The copy must
+		 * have been started in the registry, it is finished whatever happens
+		 * so that the jobs waiting for it wake up.
+		 *
+		 * @param containerId - container created from the image
+		 * @param volume      - the volume to copy
+		 * @param copy        - the copy started in the registry
+		 * @param copiedBytes - bytes copied by all the volumes so far
+		 * @param monitor     - progress monitor shared by all the volumes
+		 * @return the status of the copy
+		 */
+		private IStatus copyVolume(String containerId, String volume, VolumeCopyRegistry.Copy copy,
+				AtomicLong copiedBytes, IProgressMonitor monitor) {
+			boolean complete = false;
+			try (Closeable token = ((DockerConnection) connection).getOperationToken()) {
+				synchronized (monitor) {
+					monitor.setTaskName(Messages.getFormattedString(COPY_VOLUMES_FROM_TASK, volume));
+					monitor.worked(1);
+				}
+
+				InputStream in = ((DockerConnection) connection).copyContainer(token, containerId, volume);
 
-	@SuppressWarnings("unchecked")
-	private void initialize() {
-		synchronized (lockObject) {
-			if (copiedVolumesMap == null) {
-				IPath pluginPath = Platform.getStateLocation(Platform.getBundle(Activator.PLUGIN_ID));
-				IPath path = pluginPath.append(DIRFILE_NAME);
-
-				File dirFile = path.toFile();
-				if (dirFile.exists()) {
-					try (FileInputStream f = new FileInputStream(dirFile)) {
-						try (ObjectInputStream ois = new ObjectInputStream(f)) {
-							copiedVolumesMap = (Map<String, Map<String, Set<String>>>) ois.readObject();
-						} catch (ClassNotFoundException | FileNotFoundException e) {
-							// should never happen so print stack trace
-							e.printStackTrace();
+				/*
+				 * The input stream from copyContainer might be incomplete or non-blocking so we
+				 * should wrap it in a stream that is guaranteed to block until data is
+				 * available.
+				 */
+				try (TarArchiveInputStream k = new TarArchiveInputStream(
+						new BlockingInputStream(new BufferedInputStream(in, BUFFER_SIZE)))) {
+					complete = extract(k, target, target.append(volume).removeLastSegments(1), copiedBytes, monitor);
+				}
+				return complete ? Status.OK_STATUS : Status.CANCEL_STATUS;
+			} catch (DockerException | InterruptedException | IOException e) {
+				if (e instanceof IOException) {
+					Activator.log(e);
+				}
+				return Status.OK_STATUS;
+			} finally {
+				copied.finish(volume, copy, complete);
+			}
+		}
+
+		/**
+		 * Extract a tar stream, preserving symbolic links, hard links,
+		 * permissions and modification times. Entries which would be written
+		 * outside the directory, through a symbolic link extracted before
+		 * them, are skipped. Absolute symbolic links are made relative links
+		 * to the copy of the image, so that they do not resolve to the files
+		 * of the host.
+		 *
+		 * @param imageRoot - directory of the copy of the image root
+		 * @param dir       - directory the entries are extracted to
+		 * @return false if cancelled
+		 */
+		private boolean extract(TarArchiveInputStream tar, IPath imageRoot, IPath dir, AtomicLong copiedBytes,
+				IProgressMonitor monitor) throws IOException {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			java.nio.file.Path root = dir.toFile().toPath().toAbsolutePath().normalize();
+			java.nio.file.Path base = imageRoot.toFile().toPath().toAbsolutePath().normalize();
+			Files.createDirectories(root);
+			java.nio.file.Path realRoot = root.toRealPath();
+			// directories get their attributes once their content is written
+			List<TarArchiveEntry> directories = new ArrayList<>();
+			TarArchiveEntry te = null;
+			while ((te = tar.getNextTarEntry()) != null) {
+				if (monitor.isCanceled()) {
+					return false;
+				}
+				java.nio.file.Path path = root.resolve(te.getName()).normalize();
+				if (!path.startsWith(root) || !resolvesInside(te.isDirectory() ? path : path.getParent(), realRoot)) {
+					continue;
+				}
+				if (te.isDirectory()) {
+					Files.createDirectories(path);
+					directories.add(te);
+					continue;
+				}
+				Files.createDirectories(path.getParent());
+				if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+					Files.deleteIfExists(path);
+				}
+				if (te.isSymbolicLink()) {
+					java.nio.file.Path link = Paths.get(te.getLinkName());
+					if (link.isAbsolute()) {
+						link = path.getParent().relativize(base.resolve(link.getRoot().relativize(link)).normalize());
+					}
+					Files.createSymbolicLink(path, link);
+					continue;
+				}
+				if (te.isLink()) {
+					java.nio.file.Path link = root.resolve(te.getLinkName()).normalize();
+					if (link.startsWith(root) && resolvesInside(link, realRoot)) {
+						Files.createLink(path, link);
+					}
+					continue;
+				}
+				try (OutputStream os = Files.newOutputStream(path)) {
+					int result;
+					while ((result = tar.read(buffer, 0, buffer.length)) > -1) {
+						if (monitor.isCanceled()) {
+							return false;
 						}
-					} catch (IOException e) {
-						// will handle this below
+						os.write(buffer, 0, result);
+						reportProgress(copiedBytes.addAndGet(result), result, monitor);
 					}
 				}
+				setAttributes(path, te, false);
+			}
+			for (TarArchiveEntry entry : directories) {
+				java.nio.file.Path path = root.resolve(entry.getName()).normalize();
+				if (resolvesInside(path, realRoot)) {
+					setAttributes(path, entry, true);
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * @return true if the real path of the closest existing ancestor of
+		 *         path, or of path itself, is inside the real root, so that
+		 *         writing path does not follow a symbolic link out of it
+		 */
+		private boolean resolvesInside(java.nio.file.Path path, java.nio.file.Path realRoot) {
+			java.nio.file.Path existing = path;
+			while (existing != null && !Files.exists(existing, LinkOption.NOFOLLOW_LINKS)) {
+				existing = existing.getParent();
 			}
-			if (copiedVolumesMap == null) {
-				copiedVolumesMap = new HashMap<>();
+			try {
+				return existing != null && existing.toRealPath().startsWith(realRoot);
+			} catch (IOException e) {
+				// dangling symbolic link
+				return false;
 			}
-			if (copyingVolumesMap == null) {
-				copyingVolumesMap = new HashMap<>();
+		}
+
+		private void reportProgress(long total, int added, IProgressMonitor monitor) {
+			// report every time a megabyte boundary is crossed
+			if ((total >> 20) != ((total - added) >> 20)) {
+				synchronized (monitor) {
+					monitor.subTask(String.format("%.1f MB", total / (1024.0 * 1024.0))); //$NON-NLS-1$
+				}
 			}
 		}
 	}
 
+	/**
+	 * @return true if path is dir or a path inside it.
+	 */
+	private static boolean isInside(String path, String dir) {
+		return path.equals(dir) || (path.startsWith(dir) && path.charAt(dir.length()) == File.separatorChar);
+	}
+
+	/**
+	 * Apply the mode and modification time of a tar entry to a file. The
+	 * owner keeps full access to directories, so that they can be updated
+	 * when the image changes.
+	 */
+	private static void setAttributes(java.nio.file.Path path, TarArchiveEntry te, boolean isDirectory) {
+		try {
+			Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+			PosixFilePermission[] all = PosixFilePermission.values();
+			// OWNER_READ is 0400 down to OTHERS_EXECUTE 0001
+			for (int i = 0; i < all.length; i++) {
+				if ((te.getMode() & (1 << (all.length - 1 - i))) != 0) {
+					permissions.add(all[i]);
+				}
+			}
+			if (isDirectory) {
+				permissions.add(PosixFilePermission.OWNER_READ);
+				permissions.add(PosixFilePermission.OWNER_WRITE);
+				permissions.add(PosixFilePermission.OWNER_EXECUTE);
+			}
+			Files.setPosixFilePermissions(path, permissions);
+		} catch (IOException | UnsupportedOperationException e) {
+			// not a POSIX file system
+		}
+		try {
+			Files.setLastModifiedTime(path, FileTime.fromMillis(te.getModTime().getTime()));
+		} catch (IOException e) {
+			// keep the extraction time
+		}
+	}
+
 	/**
 	 * Perform a launch of a command in a container and output stdout/stderr to
 	 * console.
@@ -803,6 +891,7 @@ public class ContainerLauncher {
 		}
 
 		final Map<String, String> remoteVolumes = new HashMap<>();
+		final Map<String, VolumeSync> syncedVolumes = new HashMap<>();
 		if (!((DockerConnection) connection).isLocal()) {
 			@SuppressWarnings("rawtypes")
 			final Map<String, Map> volumes = new HashMap<>();
@@ -820,6 +909,7 @@ public class ContainerLauncher {
 				remoteVolumes.put(workingDir, workingDir); // $NON-NLS-1$
 				volumes.put(workingDir, new HashMap<>());
 			}
+			hostBuilder = bindSyncedVolumes(connection, image, remoteVolumes, volumes, syncedVolumes, hostBuilder);
 			builder = builder.volumes(volumes);
 		} else {
 			// Running daemon on local host.
@@ -862,7 +952,7 @@ public class ContainerLauncher {
 					// if daemon is remote, we need to copy
 					// data over from the host.
 					if (!remoteVolumes.isEmpty()) {
-						CopyVolumesJob job = new CopyVolumesJob(remoteVolumes, connection, containerId);
+						CopyVolumesJob job = new CopyVolumesJob(remoteVolumes, syncedVolumes, connection, containerId);
 						job.schedule();
 						job.join();
 						if (job.getResult() != Status.OK_STATUS)
@@ -1272,35 +1362,36 @@ public class ContainerLauncher {
 
 		final Map<String, List<IDockerPortBinding>> portBindingsMap = new HashMap<>();
 
-		IDockerConnection[] connections = DockerConnectionManager.getInstance().getConnections();
-		if (connections == null || connections.length == 0) {
+		if (!DockerConnectionManager.getInstance().hasConnections()) {
 			errMsgHolder.setErrorMessage(Messages.getString("ContainerLaunch.noConnections.error")); //$NON-NLS-1$
 			return null;
 		}
 
-		IDockerConnection connection = null;
-		for (IDockerConnection c : connections) {
-			if (c.getUri().equals(connectionName)) {
-				connection = c;
-				break;
-			}
-		}
-
+		IDockerConnection connection = DockerConnectionManager.getInstance().getConnectionByUri(connectionName);
 		if (connection == null) {
 			errMsgHolder.setErrorMessage(Messages.getFormattedString("ContainerLaunch.connectionNotFound.error", //$NON-NLS-1$
 					connectionName));
 			return null;
 		}
 
-		List<IDockerImage> images = connection.getImages();
-		if (images.isEmpty()) {
-			errMsgHolder.setErrorMessage(Messages.getString("ContainerLaunch.noImages.error")); //$NON-NLS-1$
-			return null;
+		// build commands of a local daemon run in kept containers
+		ContainerPool pool = ContainerPool.getInstance();
+		if (((DockerConnection) connection).isLocal() && pool.isEnabled() && !supportStdin && !keepContainer) {
+			final Set<String> volumes = new TreeSet<>();
+			final List<String> volumesFrom = new ArrayList<>();
+			addLocalVolumes(additionalDirs, workingDir, volumes, volumesFrom);
+			final List<String> volumeList = new ArrayList<>(volumes);
+			ContainerPool.Key key = new ContainerPool.Key(connection.getUri(), imageName, volumeList, volumesFrom,
+					uid, privilegedMode, labels);
+			// the image is only inspected when a container has to be created
+			String containerId = pool.lease(key);
+			if (containerId != null || !hasEntrypoint(connection, imageName)) {
+				return runPooledCommand(pool, (DockerConnection) connection, key, containerId, imageName,
+						errMsgHolder, cmdList, workingDir, volumeList, volumesFrom, privilegedMode, labels, uid);
+			}
 		}
 
-		IDockerImageInfo info = connection.getImageInfo(imageName);
-		if (info == null) {
-			errMsgHolder.setErrorMessage(Messages.getFormattedString("ContainerLaunch.imageNotFound.error", imageName)); //$NON-NLS-1$
+		if (!checkImage(connection, imageName, errMsgHolder)) {
 			return null;
 		}
 
@@ -1327,6 +1418,7 @@ public class ContainerLauncher {
 		final Map<String, Map> remoteVolumes = new HashMap<>();
 		final Map<String, String> remoteDataVolumes = new HashMap<>();
 		final Set<String> readOnlyVolumes = new TreeSet<>();
+		final Map<String, VolumeSync> syncedVolumes = new HashMap<>();
 		if (!((DockerConnection) connection).isLocal()) {
 			// if using remote daemon, we have to
 			// handle volume mounting differently.
@@ -1361,6 +1453,8 @@ public class ContainerLauncher {
 				remoteVolumes.put(p.toPortableString(), new HashMap<>());
 				remoteDataVolumes.put(p.toPortableString(), p.toPortableString());
 			}
+			hostBuilder = bindSyncedVolumes(connection, imageName, remoteDataVolumes, remoteVolumes, syncedVolumes,
+					hostBuilder);
 			builder = builder.volumes(remoteVolumes);
 		} else {
 			// Running daemon on local host.
@@ -1371,38 +1465,7 @@ public class ContainerLauncher {
 			// executable will run as the user expects.
 			final Set<String> volumes = new TreeSet<>();
 			final List<String> volumesFrom = new ArrayList<>();
-			if (additionalDirs != null) {
-				for (String dir : additionalDirs) {
-					IPath p = new Path(dir).removeTrailingSeparator();
-					if (dir.contains(":")) { //$NON-NLS-1$
-						DataVolumeModel dvm = DataVolumeModel.parseString(dir);
-						switch (dvm.getMountType()) {
-						case HOST_FILE_SYSTEM:
-							String bind = LaunchConfigurationUtils.convertToUnixPath(dvm.getHostPathMount()) + ':'
-									+ dvm.getContainerPath() + ":Z"; //$NON-NLS-1$
-							if (dvm.isReadOnly()) {
-								bind += ",ro"; //$NON-NLS-1$
-							}
-							volumes.add(bind);
-							break;
-						case CONTAINER:
-							volumesFrom.add(dvm.getContainerMount());
-							break;
-						default:
-							break;
-
-						}
-					} else {
-						volumes.add(p.toPortableString() + ":" //$NON-NLS-1$
-								+ p.toPortableString() + ":Z"); //$NON-NLS-1$
-					}
-				}
-			}
-			if (workingDir != null) {
-				IPath p = new Path(workingDir).removeTrailingSeparator();
-				volumes.add(p.toPortableString() + ":" + p.toPortableString() //$NON-NLS-1$
-						+ ":Z"); //$NON-NLS-1$
-			}
+			addLocalVolumes(additionalDirs, workingDir, volumes, volumesFrom);
 			List<String> volumeList = new ArrayList<>(volumes);
 			hostBuilder = hostBuilder.binds(volumeList);
 			if (!volumesFrom.isEmpty()) {
@@ -1433,7 +1496,7 @@ public class ContainerLauncher {
 			// if daemon is remote, we need to copy
 			// data over from the host.
 			if (!remoteVolumes.isEmpty()) {
-				CopyVolumesJob job = new CopyVolumesJob(remoteDataVolumes, conn, id);
+				CopyVolumesJob job = new CopyVolumesJob(remoteDataVolumes, syncedVolumes, conn, id);
 				job.schedule();
 				try {
 					job.join();
@@ -1451,6 +1514,171 @@ public class ContainerLauncher {
 		return new ContainerCommandProcess(connection, imageName, containerId, null, remoteDataVolumes, keepContainer);
 	}
 
+	/**
+	 * Run a command in a leased container of the pool, or in a container
+	 * created and started if no container of the same image, volumes, user
+	 * and labels is idle.
+	 *
+	 * @param containerId - the leased container, or null to create one
+	 * @return the process of the command, or null if it could not start
+	 */
+	private Process runPooledCommand(ContainerPool pool, DockerConnection connection, ContainerPool.Key key,
+			String containerId, String imageName, IErrorMessageHolder errMsgHolder, List<String> cmdList,
+			String workingDir, List<String> volumeList, List<String> volumesFrom, boolean privilegedMode,
+			HashMap<String, String> labels, Integer uid) {
+		if (containerId == null) {
+			if (!checkImage(connection, imageName, errMsgHolder)) {
+				return null;
+			}
+			// keep the container running between the commands
+			DockerContainerConfig.Builder builder = new DockerContainerConfig.Builder()
+					.cmd(Arrays.asList("/bin/sh", "-c", "while :; do sleep 3600; done")) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					.image(imageName).labels(ContainerPool.getLabels(labels));
+			if (uid != null) {
+				builder = builder.user(uid.toString());
+			}
+			DockerHostConfig.Builder hostBuilder = new DockerHostConfig.Builder().privileged(privilegedMode)
+					.binds(volumeList);
+			if (!volumesFrom.isEmpty()) {
+				hostBuilder = hostBuilder.volumesFrom(volumesFrom);
+			}
+			try {
+				containerId = connection.createContainer(builder.build(), hostBuilder.build(), null);
+				connection.startContainer(containerId, null, null);
+			} catch (DockerException | InterruptedException e) {
+				if (containerId != null) {
+					try {
+						connection.removeContainer(containerId);
+					} catch (DockerException | InterruptedException e1) {
+						// ignore
+					}
+				}
+				errMsgHolder.setErrorMessage(e.getMessage());
+				return null;
+			}
+		}
+		try {
+			return pool.exec(connection, key, containerId, cmdList, workingDir);
+		} catch (IOException e) {
+			errMsgHolder.setErrorMessage(e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @return true if the image defines an entrypoint, which the commands run
+	 *         with <code>docker exec</code> would skip
+	 */
+	private boolean hasEntrypoint(IDockerConnection connection, String imageName) {
+		IDockerImageInfo info = connection.getImageInfo(imageName);
+		if (info == null || info.config() == null) {
+			// let the image check report it
+			return false;
+		}
+		List<String> entrypoint = info.config().entrypoint();
+		return entrypoint != null && !entrypoint.isEmpty();
+	}
+
+	/**
+	 * Check that the image of a command exists.
+	 *
+	 * @return false if not, with the error message set
+	 */
+	private boolean checkImage(IDockerConnection connection, String imageName, IErrorMessageHolder errMsgHolder) {
+		List<IDockerImage> images = connection.getImages();
+		if (images.isEmpty()) {
+			errMsgHolder.setErrorMessage(Messages.getString("ContainerLaunch.noImages.error")); //$NON-NLS-1$
+			return false;
+		}
+
+		IDockerImageInfo info = connection.getImageInfo(imageName);
+		if (info == null) {
+			errMsgHolder.setErrorMessage(Messages.getFormattedString("ContainerLaunch.imageNotFound.error", imageName)); //$NON-NLS-1$
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Add mounts for the directories a command needs on a local daemon.
+	 * When we add mount points, we need entries of the form:
+	 * hostname:mountname:Z.
+	 *
+	 * @param additionalDirs - additional directories to mount
+	 * @param workingDir     - where to run command
+	 * @param volumes        - receives the binds
+	 * @param volumesFrom    - receives the containers to mount the volumes of
+	 */
+	private static void addLocalVolumes(List<String> additionalDirs, String workingDir, Set<String> volumes,
+			List<String> volumesFrom) {
+		if (additionalDirs != null) {
+			for (String dir : additionalDirs) {
+				IPath p = new Path(dir).removeTrailingSeparator();
+				if (dir.contains(":")) { //$NON-NLS-1$
+					DataVolumeModel dvm = DataVolumeModel.parseString(dir);
+					switch (dvm.getMountType()) {
+					case HOST_FILE_SYSTEM:
+						String bind = LaunchConfigurationUtils.convertToUnixPath(dvm.getHostPathMount()) + ':'
+								+ dvm.getContainerPath() + ":Z"; //$NON-NLS-1$
+						if (dvm.isReadOnly()) {
+							bind += ",ro"; //$NON-NLS-1$
+						}
+						volumes.add(bind);
+						break;
+					case CONTAINER:
+						volumesFrom.add(dvm.getContainerMount());
+						break;
+					default:
+						break;
+
+					}
+				} else {
+					volumes.add(p.toPortableString() + ":" //$NON-NLS-1$
+							+ p.toPortableString() + ":Z"); //$NON-NLS-1$
+				}
+			}
+		}
+		if (workingDir != null) {
+			IPath p = new Path(workingDir).removeTrailingSeparator();
+			volumes.add(p.toPortableString() + ":" + p.toPortableString() //$NON-NLS-1$
+					+ ":Z"); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Mount the remote volumes that can be copied incrementally from named
+	 * volumes instead of anonymous ones.
+	 *
+	 * @param connection    - remote connection
+	 * @param image         - image of the container
+	 * @param dataVolumes   - map of host directories to container directories
+	 * @param volumes       - anonymous volumes of the container, the synced
+	 *                      ones are removed
+	 * @param syncedVolumes - receives the synced volumes by host directory
+	 * @param hostBuilder   - host configuration of the container
+	 * @return the host configuration
+	 */
+	@SuppressWarnings("rawtypes")
+	private DockerHostConfig.Builder bindSyncedVolumes(IDockerConnection connection, String image,
+			Map<String, String> dataVolumes, Map<String, Map> volumes, Map<String, VolumeSync> syncedVolumes,
+			DockerHostConfig.Builder hostBuilder) {
+		if (!VolumeSync.isEnabled()) {
+			return hostBuilder;
+		}
+		final List<String> binds = new ArrayList<>();
+		for (Map.Entry<String, String> entry : dataVolumes.entrySet()) {
+			String containerDir = new Path(entry.getValue()).removeTrailingSeparator().toPortableString();
+			if (!VolumeSync.canSync(entry.getKey(), containerDir) || !volumes.containsKey(containerDir)) {
+				continue;
+			}
+			VolumeSync sync = new VolumeSync((DockerConnection) connection, image, entry.getKey(), containerDir);
+			syncedVolumes.put(entry.getKey(), sync);
+			volumes.remove(containerDir);
+			binds.add(sync.getBind());
+		}
+		return binds.isEmpty() ? hostBuilder : hostBuilder.binds(binds);
+	}
+
 	/**
 	 * Clean up the container used for launching
 	 *
@@ -1585,17 +1813,7 @@ public class ContainerLauncher {
 	 * @since 3.0
 	 */
 	public Set<String> getCopiedVolumes(String connectionName, String imageName) {
-		Set<String> copiedSet = new HashSet<>();
-		if (copiedVolumesMap != null) {
-			Map<String, Set<String>> connectionMap = copiedVolumesMap.get(connectionName);
-			if (connectionMap != null) {
-				Set<String> imageSet = connectionMap.get(imageName);
-				if (imageSet != null) {
-					copiedSet = imageSet;
-				}
-			}
-		}
-		return copiedSet;
+		return VolumeCopyRegistry.getInstance().getCopied(connectionName, imageName);
 	}
 
 }
@@ -0,0 +1,526 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Intel Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Intel Corporation - initial API and implementation
+ *******************************************************************************/
+package org.yocto.docker.launcher;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.linuxtools.docker.core.DockerException;
+import org.eclipse.linuxtools.docker.core.IDockerContainerInfo;
+import org.eclipse.linuxtools.internal.docker.core.DockerConnection;
+
+/**
+ * Started containers kept to run the build commands of the projects.
+ *
+ * Creating, starting and removing a container for every make or cmake
+ * invocation of a build costs more than most of the commands. The containers
+ * of a local daemon are kept instead, by connection, image, mounted volumes,
+ * user and labels, and the commands run in them with <code>docker exec</code>.
+ * A container runs one command at a time. It is removed after
+ * <code>org.yocto.docker.launcher.containerPoolIdleTimeout</code> seconds
+ * without commands (300 by default), or when its command is destroyed as the
+ * processes the command started may still be running in it, or when it
+ * stopped.
+ *
+ * The pooled containers are labelled with the location of the workspace.
+ * The containers of the workspace left by a previous session are removed
+ * when a connection is first used, and all of them, idle or running a
+ * command, when the plug-in stops.
+ *
+ * The commands run with the environment of the image, as the commands run in
+ * new containers do. Images with an entrypoint are not pooled, as
+ * <code>docker exec</code> would run the commands without it.
+ *
+ * The pool is disabled by setting
+ * <code>org.yocto.docker.launcher.containerPool</code> to false, and when the
+ * docker command line client, or the one named by
+ * <code>org.yocto.docker.launcher.dockerCommand</code>, is not found.
+ */
+@SuppressWarnings("restriction")
+public class ContainerPool {
+
+	static final String POOL_PROPERTY = "org.yocto.docker.launcher.containerPool"; //$NON-NLS-1$
+	static final String IDLE_TIMEOUT_PROPERTY = "org.yocto.docker.launcher.containerPoolIdleTimeout"; //$NON-NLS-1$
+	static final String DOCKER_COMMAND_PROPERTY = "org.yocto.docker.launcher.dockerCommand"; //$NON-NLS-1$
+	private static final long DEFAULT_IDLE_TIMEOUT = 300;
+	// label of the pooled containers, set to the workspace location
+	static final String POOL_LABEL = "org.yocto.docker.launcher.pooled"; //$NON-NLS-1$
+
+	private static ContainerPool instance;
+
+	/**
+	 * What the commands of a container share: containers are reused for the
+	 * same key only.
+	 */
+	static class Key {
+		private final String connectionUri;
+		private final String image;
+		private final TreeSet<String> binds;
+		private final TreeSet<String> volumesFrom;
+		private final Integer uid;
+		private final boolean privileged;
+		private final TreeMap<String, String> labels;
+
+		Key(String connectionUri, String image, List<String> binds, List<String> volumesFrom, Integer uid,
+				boolean privileged, Map<String, String> labels) {
+			this.connectionUri = connectionUri;
+			this.image = image;
+			this.binds = new TreeSet<>(binds);
+			this.volumesFrom = new TreeSet<>(volumesFrom);
+			this.uid = uid;
+			this.privileged = privileged;
+			this.labels = (labels != null) ? new TreeMap<>(labels) : new TreeMap<>();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return connectionUri.equals(other.connectionUri) && image.equals(other.image)
+					&& binds.equals(other.binds) && volumesFrom.equals(other.volumesFrom)
+					&& Objects.equals(uid, other.uid) && privileged == other.privileged
+					&& labels.equals(other.labels);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(connectionUri, image, binds, volumesFrom, uid, Boolean.valueOf(privileged), labels);
+		}
+	}
+
+	/**
+	 * A started container without command.
+	 */
+	private static class Idle {
+		final DockerConnection connection;
+		final String containerId;
+		final long since;
+
+		Idle(DockerConnection connection, String containerId) {
+			this.connection = connection;
+			this.containerId = containerId;
+			this.since = System.currentTimeMillis();
+		}
+	}
+
+	private final Map<Key, LinkedList<Idle>> idle = new HashMap<>();
+	// uris of the connections the pool created containers with
+	private final Set<String> connections = new HashSet<>();
+	private final long idleTimeout;
+	private final String dockerCommand;
+	private final Job evictJob;
+
+	private final AtomicLong leases = new AtomicLong();
+	private final AtomicLong reuses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	private ContainerPool() {
+		idleTimeout = TimeUnit.SECONDS.toMillis(Long.getLong(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT).longValue());
+		dockerCommand = findDockerCommand();
+		evictJob = new Job("Remove idle build containers") { //$NON-NLS-1$
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				evict(false);
+				synchronized (ContainerPool.this) {
+					if (!idle.isEmpty()) {
+						schedule(idleTimeout);
+					}
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		evictJob.setSystem(true);
+	}
+
+	public static synchronized ContainerPool getInstance() {
+		if (instance == null) {
+			instance = new ContainerPool();
+		}
+		return instance;
+	}
+
+	/**
+	 * @return true if commands may run in pooled containers
+	 */
+	boolean isEnabled() {
+		return dockerCommand != null && !"false".equals(System.getProperty(POOL_PROPERTY)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Take an idle container of a key. The containers of the workspace left
+	 * by a previous session are removed the first time a connection is used.
+	 *
+	 * @param key - what the command needs from the container
+	 * @return the identifier of the container, or null if there is none
+	 */
+	synchronized String lease(Key key) {
+		if (connections.add(key.connectionUri)) {
+			reap(key.connectionUri);
+		}
+		LinkedList<Idle> containers = idle.get(key);
+		if (containers == null || containers.isEmpty()) {
+			return null;
+		}
+		Idle container = containers.removeFirst();
+		if (containers.isEmpty()) {
+			idle.remove(key);
+		}
+		reuses.incrementAndGet();
+		return container.containerId;
+	}
+
+	/**
+	 * Run a command in a leased container, or in a container created for the
+	 * key and started. The container is given back to the pool when the
+	 * command ends.
+	 *
+	 * @param connection  - local connection of the container
+	 * @param key         - what the command needs from the container
+	 * @param containerId - the container
+	 * @param cmdList     - command to run
+	 * @param workingDir  - where to run the command, may be null
+	 * @return the process of the command
+	 * @throws IOException if the command could not be started, the container
+	 *                     is removed then
+	 */
+	Process exec(DockerConnection connection, Key key, String containerId, List<String> cmdList, String workingDir)
+			throws IOException {
+		leases.incrementAndGet();
+		List<String> args = new ArrayList<>();
+		args.addAll(Arrays.asList(dockerCommand, "-H", connection.getUri(), "exec", "-i")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		if (key.uid != null) {
+			args.add("-u"); //$NON-NLS-1$
+			args.add(key.uid.toString());
+		}
+		if (workingDir != null) {
+			args.add("-w"); //$NON-NLS-1$
+			args.add(workingDir);
+		}
+		args.add(containerId);
+		args.addAll(cmdList);
+		Process process;
+		try {
+			process = new ProcessBuilder(args).start();
+		} catch (IOException e) {
+			remove(connection, containerId);
+			throw e;
+		}
+		return new PooledProcess(process, connection, key, containerId);
+	}
+
+	/**
+	 * @return the number of commands run with the pool
+	 */
+	public long getLeases() {
+		return leases.get();
+	}
+
+	/**
+	 * @return the number of commands run in a container of a previous command
+	 */
+	public long getReuses() {
+		return reuses.get();
+	}
+
+	/**
+	 * @return the number of containers removed from the pool
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return the part of the commands run in a container of a previous
+	 *         command, from 0 to 1
+	 */
+	public double getReuseRate() {
+		long count = leases.get();
+		return (count == 0) ? 0 : (double) reuses.get() / count;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d commands, %.0f%% in reused containers, %d containers removed", //$NON-NLS-1$
+				Long.valueOf(getLeases()), Double.valueOf(getReuseRate() * 100), Long.valueOf(getEvictions()));
+	}
+
+	/**
+	 * Remove all the containers of the pool, idle or running a command, when
+	 * the plug-in stops.
+	 */
+	public static synchronized void dispose() {
+		if (instance != null) {
+			instance.evictJob.cancel();
+			instance.evict(true);
+			synchronized (instance) {
+				for (String connectionUri : instance.connections) {
+					instance.reap(connectionUri);
+				}
+			}
+			instance = null;
+		}
+	}
+
+	private synchronized void release(DockerConnection connection, Key key, String containerId) {
+		LinkedList<Idle> containers = idle.get(key);
+		if (containers == null) {
+			containers = new LinkedList<>();
+			idle.put(key, containers);
+		}
+		// most recently used first, so that the others expire
+		containers.addFirst(new Idle(connection, containerId));
+		// a running job is scheduled again once it ends
+		int state = evictJob.getState();
+		if (state != Job.SLEEPING && state != Job.WAITING) {
+			evictJob.schedule(idleTimeout);
+		}
+	}
+
+	private void evict(boolean all) {
+		List<Idle> expired = new ArrayList<>();
+		long now = System.currentTimeMillis();
+		synchronized (this) {
+			for (Iterator<LinkedList<Idle>> i = idle.values().iterator(); i.hasNext();) {
+				LinkedList<Idle> containers = i.next();
+				for (Iterator<Idle> j = containers.iterator(); j.hasNext();) {
+					Idle container = j.next();
+					if (all || now - container.since >= idleTimeout) {
+						expired.add(container);
+						j.remove();
+					}
+				}
+				if (containers.isEmpty()) {
+					i.remove();
+				}
+			}
+		}
+		for (Idle container : expired) {
+			remove(container.connection, container.containerId);
+		}
+	}
+
+	private void remove(DockerConnection connection, String containerId) {
+		evictions.incrementAndGet();
+		try {
+			connection.killContainer(containerId);
+		} catch (DockerException | InterruptedException e) {
+			// already stopped
+		}
+		try {
+			connection.removeContainer(containerId);
+		} catch (DockerException | InterruptedException e) {
+			// ignore
+		}
+	}
+
+	/**
+	 * Remove the containers of a connection labelled with the workspace
+	 * location, with the docker command line client which can list them by
+	 * label.
+	 */
+	private void reap(String connectionUri) {
+		String label = "label=" + POOL_LABEL + "=" + getOwner(); //$NON-NLS-1$ //$NON-NLS-2$
+		List<String> ids = docker(connectionUri, "ps", "-a", "-q", "--filter", label); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		if (!ids.isEmpty()) {
+			List<String> args = new ArrayList<>(Arrays.asList("rm", "-f")); //$NON-NLS-1$ //$NON-NLS-2$
+			args.addAll(ids);
+			docker(connectionUri, args.toArray(new String[args.size()]));
+			evictions.addAndGet(ids.size());
+		}
+	}
+
+	/**
+	 * Run the docker command line client.
+	 *
+	 * @return the lines of the output of the command
+	 */
+	private List<String> docker(String connectionUri, String... command) {
+		List<String> args = new ArrayList<>(Arrays.asList(dockerCommand, "-H", connectionUri)); //$NON-NLS-1$
+		args.addAll(Arrays.asList(command));
+		List<String> lines = new ArrayList<>();
+		try {
+			Process process = new ProcessBuilder(args).redirectErrorStream(true).start();
+			try (BufferedReader reader = new BufferedReader(
+					new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (!line.trim().isEmpty()) {
+						lines.add(line.trim());
+					}
+				}
+			}
+			if (process.waitFor() != 0) {
+				// the output is an error message
+				lines.clear();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			lines.clear();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			lines.clear();
+		}
+		return lines;
+	}
+
+	/**
+	 * @return the value of the label of the containers of this workspace
+	 */
+	private static String getOwner() {
+		return ResourcesPlugin.getWorkspace().getRoot().getLocation().toOSString();
+	}
+
+	/**
+	 * @return false if the container stopped or was removed, and cannot run
+	 *         other commands
+	 */
+	private static boolean isRunning(DockerConnection connection, String containerId) {
+		IDockerContainerInfo info = connection.getContainerInfo(containerId);
+		return info != null && info.state() != null && Boolean.TRUE.equals(info.state().running());
+	}
+
+	private static String findDockerCommand() {
+		String command = System.getProperty(DOCKER_COMMAND_PROPERTY);
+		if (command != null) {
+			return new File(command).canExecute() ? command : null;
+		}
+		String path = System.getenv("PATH"); //$NON-NLS-1$
+		if (path == null) {
+			return null;
+		}
+		for (String dir : path.split(File.pathSeparator)) {
+			File file = new File(dir, "docker"); //$NON-NLS-1$
+			if (file.canExecute()) {
+				return file.getAbsolutePath();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The process of a command run in a pooled container.
+	 */
+	private class PooledProcess extends Process {
+		private final Process process;
+		private final DockerConnection connection;
+		private final Key key;
+		private final String containerId;
+		private boolean destroyed = false;
+		private boolean released = false;
+
+		PooledProcess(Process process, DockerConnection connection, Key key, String containerId) {
+			this.process = process;
+			this.connection = connection;
+			this.key = key;
+			this.containerId = containerId;
+			Thread watcher = new Thread(() -> {
+				try {
+					process.waitFor();
+				} catch (InterruptedException e) {
+					// the container is released when the command ends
+					return;
+				}
+				end();
+			}, "Build container " + containerId); //$NON-NLS-1$
+			watcher.setDaemon(true);
+			watcher.start();
+		}
+
+		@Override
+		public OutputStream getOutputStream() {
+			return process.getOutputStream();
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return process.getInputStream();
+		}
+
+		@Override
+		public InputStream getErrorStream() {
+			return process.getErrorStream();
+		}
+
+		@Override
+		public int waitFor() throws InterruptedException {
+			return process.waitFor();
+		}
+
+		@Override
+		public int exitValue() {
+			return process.exitValue();
+		}
+
+		@Override
+		public void destroy() {
+			synchronized (this) {
+				destroyed = true;
+			}
+			process.destroy();
+			end();
+		}
+
+		private void end() {
+			boolean reuse;
+			synchronized (this) {
+				if (released) {
+					return;
+				}
+				released = true;
+				reuse = !destroyed;
+			}
+			if (reuse && isRunning(connection, containerId)) {
+				release(connection, key, containerId);
+			} else {
+				// the command may still run in the container
+				remove(connection, containerId);
+			}
+		}
+	}
+
+	/**
+	 * @return the labels of a pooled container
+	 */
+	static HashMap<String, String> getLabels(Map<String, String> labels) {
+		HashMap<String, String> pooled = new HashMap<>();
+		if (labels != null) {
+			pooled.putAll(labels);
+		}
+		pooled.put(POOL_LABEL, getOwner());
+		return pooled;
+	}
+}
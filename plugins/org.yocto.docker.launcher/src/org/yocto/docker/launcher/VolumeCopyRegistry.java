@@ -0,0 +1,363 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Intel Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Intel Corporation - initial API and implementation
+ *******************************************************************************/
+package org.yocto.docker.launcher;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.linuxtools.docker.ui.Activator;
+
+/**
+ * The directories copied from images to the host, by connection and image.
+ *
+ * The copied directories of an image are kept in a trie of path segments, so
+ * finding whether a directory or one of its parents was copied does not
+ * depend on the number of copied directories. A copy in progress is a future
+ * that the jobs needing the same directory wait for.
+ *
+ * The registry is saved as it changes to a journal in the state location of
+ * the plug-in, one line per copied directory or per reset image, compacted
+ * when loaded.
+ */
+class VolumeCopyRegistry {
+
+	private static final String JOURNAL_NAME = "copiedVolumes.journal"; //$NON-NLS-1$
+	// serialized map written by previous versions
+	private static final String LEGACY_NAME = "copiedVolumes"; //$NON-NLS-1$
+	private static final String ADDED = "+"; //$NON-NLS-1$
+	private static final String RESET = "-"; //$NON-NLS-1$
+
+	private static VolumeCopyRegistry instance;
+
+	/**
+	 * A directory of an image, in the trie of the copied directories.
+	 */
+	private static class Node {
+		Map<String, Node> children;
+		boolean copied;
+		CompletableFuture<Boolean> copying;
+
+		Node child(String segment, boolean create) {
+			Node node = (children != null) ? children.get(segment) : null;
+			if (node == null && create) {
+				if (children == null) {
+					children = new HashMap<>(4);
+				}
+				node = new Node();
+				children.put(segment, node);
+			}
+			return node;
+		}
+	}
+
+	/**
+	 * A copy in progress, started in a generation of the copied directories
+	 * of an image.
+	 */
+	static class Copy extends CompletableFuture<Boolean> {
+		private final int generation;
+
+		Copy(int generation) {
+			this.generation = generation;
+		}
+	}
+
+	/**
+	 * The copied directories of an image of a connection.
+	 */
+	class ImageVolumes {
+		private final String connectionUri;
+		private final String image;
+		private Node root = new Node();
+		// incremented by each reset, to ignore the copies started before it
+		private int generation;
+
+		ImageVolumes(String connectionUri, String image) {
+			this.connectionUri = connectionUri;
+			this.image = image;
+		}
+
+		/**
+		 * Forget the copied directories, after the image changed. The copies
+		 * in progress are not recorded when they finish.
+		 */
+		synchronized void reset() {
+			root = new Node();
+			generation++;
+			append(RESET, connectionUri, image, null);
+		}
+
+		/**
+		 * @param volume - directory of the image
+		 * @return a future completed with true once the directory, or a
+		 *         parent directory, is copied, or null if it is neither
+		 *         copied nor being copied
+		 */
+		synchronized CompletableFuture<Boolean> find(String volume) {
+			Node node = root;
+			for (String segment : segments(volume)) {
+				if (node.copied) {
+					return CompletableFuture.completedFuture(Boolean.TRUE);
+				}
+				if (node.copying != null) {
+					return node.copying;
+				}
+				node = node.child(segment, false);
+				if (node == null) {
+					return null;
+				}
+			}
+			if (node.copied) {
+				return CompletableFuture.completedFuture(Boolean.TRUE);
+			}
+			return node.copying;
+		}
+
+		/**
+		 * Start copying a directory.
+		 *
+		 * @param volume - directory of the image
+		 * @return the future to complete with {@link #finish(String, Copy, boolean)},
+		 *         or null if the directory is already copied or being copied
+		 */
+		synchronized Copy start(String volume) {
+			if (find(volume) != null) {
+				return null;
+			}
+			Copy copy = new Copy(generation);
+			node(volume).copying = copy;
+			return copy;
+		}
+
+		/**
+		 * End copying a directory and wake up the jobs waiting for it. A copy
+		 * started before the last reset is not recorded.
+		 *
+		 * @param volume - directory of the image
+		 * @param copy   - the future returned by {@link #start(String)}
+		 * @param copied - true if the directory was copied completely
+		 */
+		void finish(String volume, Copy copy, boolean copied) {
+			synchronized (this) {
+				// journaled under the lock, so that it is not after a reset
+				if (copy.generation == generation) {
+					Node node = node(volume);
+					node.copying = null;
+					node.copied |= copied;
+					if (copied) {
+						append(ADDED, connectionUri, image, volume);
+					}
+				}
+			}
+			copy.complete(Boolean.valueOf(copied));
+		}
+
+		/**
+		 * Record a directory as copied, as part of a parent directory.
+		 *
+		 * @param volume - directory of the image
+		 */
+		void add(String volume) {
+			synchronized (this) {
+				Node node = node(volume);
+				if (node.copied) {
+					return;
+				}
+				node.copied = true;
+			}
+			append(ADDED, connectionUri, image, volume);
+		}
+
+		/**
+		 * @return the copied directories
+		 */
+		synchronized Set<String> getCopied() {
+			Set<String> copied = new LinkedHashSet<>();
+			collect(root, "", copied); //$NON-NLS-1$
+			return copied;
+		}
+
+		private void collect(Node node, String path, Set<String> copied) {
+			if (node.copied) {
+				copied.add(path);
+			}
+			if (node.children != null) {
+				for (Map.Entry<String, Node> entry : node.children.entrySet()) {
+					collect(entry.getValue(), path + File.separatorChar + entry.getKey(), copied);
+				}
+			}
+		}
+
+		private Node node(String volume) {
+			Node node = root;
+			for (String segment : segments(volume)) {
+				node = node.child(segment, true);
+			}
+			return node;
+		}
+	}
+
+	private final Map<String, ImageVolumes> images = new ConcurrentHashMap<>();
+	private final File journal;
+
+	private VolumeCopyRegistry() {
+		IPath stateLocation = Platform.getStateLocation(Platform.getBundle(Activator.PLUGIN_ID));
+		journal = stateLocation.append(JOURNAL_NAME).toFile();
+		File legacy = stateLocation.append(LEGACY_NAME).toFile();
+		if (journal.exists()) {
+			load();
+		} else if (legacy.exists()) {
+			loadLegacy(legacy);
+		}
+		compact();
+		legacy.delete();
+	}
+
+	static synchronized VolumeCopyRegistry getInstance() {
+		if (instance == null) {
+			instance = new VolumeCopyRegistry();
+		}
+		return instance;
+	}
+
+	/**
+	 * @param connectionUri - uri of the connection
+	 * @param image         - name of the image
+	 * @return the copied directories of the image
+	 */
+	ImageVolumes get(String connectionUri, String image) {
+		return images.computeIfAbsent(key(connectionUri, image), k -> new ImageVolumes(connectionUri, image));
+	}
+
+	/**
+	 * @param connectionUri - uri of the connection
+	 * @param image         - name of the image
+	 * @return the copied directories of the image, empty if none
+	 */
+	Set<String> getCopied(String connectionUri, String image) {
+		ImageVolumes volumes = images.get(key(connectionUri, image));
+		return (volumes != null) ? volumes.getCopied() : Collections.emptySet();
+	}
+
+	private static String key(String connectionUri, String image) {
+		return connectionUri + '\0' + image;
+	}
+
+	private static List<String> segments(String path) {
+		List<String> segments = new ArrayList<>();
+		for (String segment : path.split("[/\\\\]")) { //$NON-NLS-1$
+			if (!segment.isEmpty()) {
+				segments.add(segment);
+			}
+		}
+		return segments;
+	}
+
+	private synchronized void append(String op, String connectionUri, String image, String volume) {
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(journal.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE),
+				StandardCharsets.UTF_8))) {
+			writer.write(line(op, connectionUri, image, volume));
+		} catch (IOException e) {
+			// the registry is only an optimization
+			e.printStackTrace();
+		}
+	}
+
+	private static String line(String op, String connectionUri, String image, String volume) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(op).append('\t').append(connectionUri).append('\t').append(image);
+		if (volume != null) {
+			sb.append('\t').append(volume);
+		}
+		return sb.append('\n').toString();
+	}
+
+	private void load() {
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(journal), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", 4); //$NON-NLS-1$
+				if (fields.length == 4 && ADDED.equals(fields[0])) {
+					get(fields[1], fields[2]).node(fields[3]).copied = true;
+				} else if (fields.length == 3 && RESET.equals(fields[0])) {
+					get(fields[1], fields[2]).root = new Node();
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadLegacy(File legacy) {
+		try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(legacy))) {
+			Map<String, Map<String, Set<String>>> map = (Map<String, Map<String, Set<String>>>) ois.readObject();
+			for (Map.Entry<String, Map<String, Set<String>>> connection : map.entrySet()) {
+				for (Map.Entry<String, Set<String>> image : connection.getValue().entrySet()) {
+					ImageVolumes volumes = get(connection.getKey(), image.getKey());
+					for (String volume : image.getValue()) {
+						volumes.node(volume).copied = true;
+					}
+				}
+			}
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			// start over
+		}
+	}
+
+	/**
+	 * Rewrite the journal with only the copied directories.
+	 */
+	private synchronized void compact() {
+		File tmp = new File(journal.getPath() + ".tmp"); //$NON-NLS-1$
+		try (Writer writer = new BufferedWriter(
+				new OutputStreamWriter(Files.newOutputStream(tmp.toPath()), StandardCharsets.UTF_8))) {
+			for (ImageVolumes volumes : images.values()) {
+				for (String volume : volumes.getCopied()) {
+					writer.write(line(ADDED, volumes.connectionUri, volumes.image, volume));
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		try {
+			Files.move(tmp.toPath(), journal.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
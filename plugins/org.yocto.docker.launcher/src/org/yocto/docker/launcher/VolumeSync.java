@@ -0,0 +1,610 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Intel Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Intel Corporation - initial API and implementation
+ *******************************************************************************/
+package org.yocto.docker.launcher;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.linuxtools.docker.core.DockerConnectionManager;
+import org.eclipse.linuxtools.docker.core.DockerException;
+import org.eclipse.linuxtools.docker.core.IDockerConnection;
+import org.eclipse.linuxtools.docker.core.IDockerContainerConfig;
+import org.eclipse.linuxtools.docker.core.IDockerContainerInfo;
+import org.eclipse.linuxtools.docker.core.IDockerHostConfig;
+import org.eclipse.linuxtools.internal.docker.core.DockerConnection;
+import org.eclipse.linuxtools.internal.docker.core.DockerContainerConfig;
+import org.eclipse.linuxtools.internal.docker.core.DockerHostConfig;
+
+/**
+ * Incremental copy of a host directory to a remote Docker daemon.
+ *
+ * Instead of an anonymous volume filled with the whole host directory for
+ * every container, the directory is kept in a named volume of the daemon,
+ * mounted by all the containers of the same connection, host directory and
+ * container directory. A manifest of the size, modification time and hash
+ * of the files of the volume is kept in the state location of the plug-in,
+ * so that only the files which changed since the last copy are sent, and
+ * the files removed from the host are removed from the volume.
+ *
+ * A marker file written to the volume with the manifest identifier detects
+ * volumes removed or modified on the daemon, in which case the volume is
+ * emptied and copied again.
+ *
+ * A volume is used by one running container at a time: the copy for a new
+ * container waits until the container of the previous copy stopped, so that
+ * the files of a running build are never changed under it.
+ *
+ * The volumes of a project are emptied, and their manifests removed, when
+ * the project is closed or deleted, and at startup for host directories
+ * which no longer exist.
+ */
+@SuppressWarnings("restriction")
+public class VolumeSync {
+
+	static final String SYNC_PROPERTY = "org.yocto.docker.launcher.incrementalVolumeSync"; //$NON-NLS-1$
+	private static final String PLUGIN_ID = "org.yocto.docker.launcher"; //$NON-NLS-1$
+	private static final String MANIFEST_DIR = "volumeManifests"; //$NON-NLS-1$
+	private static final String MARKER_NAME = ".yocto-volume-sync"; //$NON-NLS-1$
+	private static final String VOLUME_PREFIX = "yocto-sync-"; //$NON-NLS-1$
+	private static final int BUFFER_SIZE = 64 * 1024;
+	// maximum number of paths removed by one helper container
+	private static final int MAX_REMOVED_PER_CONTAINER = 512;
+	// first field of the manifest header, after the manifest identifier
+	private static final String HEADER = "#"; //$NON-NLS-1$
+	// time a container synced with the volume is assumed to start in
+	private static final long START_DELAY = 60000;
+	private static final long POLL_INTERVAL = 1000;
+
+	private static final Map<String, Object> locks = new ConcurrentHashMap<>();
+	private static final Map<String, Holder> holders = new ConcurrentHashMap<>();
+	private static IResourceChangeListener projectListener;
+
+	/**
+	 * The container the volume was last synced for.
+	 */
+	private static class Holder {
+		final String containerId;
+		final long synced;
+
+		Holder(String containerId, long synced) {
+			this.containerId = containerId;
+			this.synced = synced;
+		}
+	}
+
+	/**
+	 * The copied state of a file.
+	 */
+	private static class FileState {
+		final long size;
+		long modified;
+		final String hash;
+
+		FileState(long size, long modified, String hash) {
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+		}
+	}
+
+	private final DockerConnection connection;
+	private final String image;
+	private final File hostDir;
+	private final String containerDir;
+	private final String volumeName;
+	private final File manifestFile;
+
+	private String manifestId;
+	private Map<String, FileState> manifest;
+
+	/**
+	 * @param connection   - remote connection
+	 * @param image        - image of the containers, used to remove files
+	 * @param hostDir      - host directory
+	 * @param containerDir - directory of the volume in the containers
+	 */
+	VolumeSync(DockerConnection connection, String image, String hostDir, String containerDir) {
+		this.connection = connection;
+		this.image = image;
+		this.hostDir = new File(hostDir);
+		this.containerDir = containerDir.endsWith("/") ? containerDir : containerDir + "/"; //$NON-NLS-1$ //$NON-NLS-2$
+		this.volumeName = getVolumeName(connection.getUri(), hostDir, containerDir);
+		IPath statePath = Platform.getStateLocation(Platform.getBundle(PLUGIN_ID));
+		this.manifestFile = statePath.append(MANIFEST_DIR).append(volumeName).toFile();
+	}
+
+	/**
+	 * @return false if incremental copies were disabled with the
+	 *         org.yocto.docker.launcher.incrementalVolumeSync system
+	 *         property.
+	 */
+	static boolean isEnabled() {
+		return !"false".equals(System.getProperty(SYNC_PROPERTY)); //$NON-NLS-1$
+	}
+
+	/**
+	 * @param hostDir      - host directory
+	 * @param containerDir - directory in the container
+	 * @return true if the directory can be copied incrementally to a named
+	 *         volume
+	 */
+	static boolean canSync(String hostDir, String containerDir) {
+		return isEnabled() && containerDir.startsWith("/") && containerDir.indexOf(':') < 0 //$NON-NLS-1$
+				&& new File(hostDir).isDirectory();
+	}
+
+	/**
+	 * @param connectionUri - uri of the connection
+	 * @param hostDir       - host directory
+	 * @param containerDir  - directory in the container
+	 * @return the name of the volume holding the copy of the host directory
+	 */
+	static String getVolumeName(String connectionUri, String hostDir, String containerDir) {
+		String key = connectionUri + '\0' + stripSeparator(hostDir) + '\0' + stripSeparator(containerDir);
+		return VOLUME_PREFIX + hash(key.getBytes(StandardCharsets.UTF_8)).substring(0, 24);
+	}
+
+	/**
+	 * @return the bind mounting the volume of this directory, to pass to the
+	 *         host configuration of the containers
+	 */
+	String getBind() {
+		return volumeName + ":" + stripSeparator(containerDir); //$NON-NLS-1$
+	}
+
+	/**
+	 * Copy the changes of the host directory to the volume, once the
+	 * container of the previous copy stopped.
+	 *
+	 * @param containerId - a created container mounting the volume
+	 * @param monitor     - progress monitor
+	 * @throws DockerException
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+	void sync(String containerId, IProgressMonitor monitor)
+			throws DockerException, InterruptedException, IOException {
+		Object lock = locks.computeIfAbsent(volumeName, k -> new Object());
+		synchronized (lock) {
+			waitForHolder(containerId, monitor);
+			if (monitor.isCanceled()) {
+				return;
+			}
+			holders.put(volumeName, new Holder(containerId, System.currentTimeMillis()));
+			loadManifest();
+			boolean full = manifestId == null || !manifestId.equals(readMarker(containerId));
+
+			Map<String, FileState> current = new HashMap<>();
+			List<String> changed = new ArrayList<>();
+			scan(full ? null : manifest, current, changed, monitor);
+			if (monitor.isCanceled()) {
+				return;
+			}
+
+			// the manifest is only valid again once the copy succeeded
+			manifestFile.delete();
+			if (full) {
+				manifestId = UUID.randomUUID().toString();
+				clearVolume();
+				connection.copyToContainer(hostDir.getPath() + "/", containerId, containerDir); //$NON-NLS-1$
+				copyFiles(new ArrayList<String>(), containerId, true);
+			} else {
+				List<String> removed = new ArrayList<>();
+				for (String path : manifest.keySet()) {
+					if (!current.containsKey(path)) {
+						removed.add(path);
+					}
+				}
+				if (!removed.isEmpty()) {
+					removeFromVolume(removed, monitor);
+				}
+				if (!changed.isEmpty()) {
+					copyFiles(changed, containerId, false);
+				}
+			}
+			manifest = current;
+			saveManifest();
+		}
+	}
+
+	/**
+	 * Wait until no other container uses the volume: the container the
+	 * volume was last synced for stopped or was removed, or did not start
+	 * in time.
+	 */
+	private void waitForHolder(String containerId, IProgressMonitor monitor) throws InterruptedException {
+		Holder holder;
+		while ((holder = holders.get(volumeName)) != null && !holder.containerId.equals(containerId)
+				&& isActive(connection, holder) && !monitor.isCanceled()) {
+			monitor.subTask("Waiting for container " + holder.containerId + " to stop"); //$NON-NLS-1$ //$NON-NLS-2$
+			Thread.sleep(POLL_INTERVAL);
+		}
+	}
+
+	private static boolean isActive(DockerConnection connection, Holder holder) {
+		if (System.currentTimeMillis() - holder.synced < START_DELAY) {
+			return true;
+		}
+		IDockerContainerInfo info = connection.getContainerInfo(holder.containerId);
+		return info != null && info.state() != null && Boolean.TRUE.equals(info.state().running());
+	}
+
+	/**
+	 * Walk the host directory, recording the state of its files and the
+	 * ones that differ from the previous copy. A file whose size and
+	 * modification time did not change is not read again.
+	 */
+	private void scan(final Map<String, FileState> previous, final Map<String, FileState> current,
+			final List<String> changed, final IProgressMonitor monitor) throws IOException {
+		final java.nio.file.Path root = hostDir.toPath();
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		Files.walkFileTree(root, new SimpleFileVisitor<java.nio.file.Path>() {
+			@Override
+			public FileVisitResult visitFile(java.nio.file.Path file, BasicFileAttributes attrs) throws IOException {
+				if (monitor.isCanceled()) {
+					return FileVisitResult.TERMINATE;
+				}
+				if (attrs.isDirectory() || attrs.isOther()) {
+					return FileVisitResult.CONTINUE;
+				}
+				String path = root.relativize(file).toString().replace(File.separatorChar, '/');
+				long modified = attrs.lastModifiedTime().toMillis();
+				FileState state = (previous != null) ? previous.get(path) : null;
+				if (state != null && state.size == attrs.size() && state.modified == modified) {
+					current.put(path, state);
+					return FileVisitResult.CONTINUE;
+				}
+				String hash = attrs.isSymbolicLink() ? hash(Files.readSymbolicLink(file).toString().getBytes(StandardCharsets.UTF_8))
+						: hash(file, buffer);
+				if (state != null && state.size == attrs.size() && state.hash.equals(hash)) {
+					// touched but identical
+					state.modified = modified;
+					current.put(path, state);
+					return FileVisitResult.CONTINUE;
+				}
+				current.put(path, new FileState(attrs.size(), modified, hash));
+				changed.add(path);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(java.nio.file.Path file, IOException exc) {
+				// unreadable files are not copied, as with a full copy
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Copy files of the host directory, and the marker, to the volume in
+	 * one transfer. The files are linked, or copied if they cannot be, to a
+	 * staging directory mirroring the host directory.
+	 */
+	private void copyFiles(List<String> paths, String containerId, boolean withMarker)
+			throws DockerException, InterruptedException, IOException {
+		java.nio.file.Path staging = Files.createTempDirectory("yocto-sync"); //$NON-NLS-1$
+		try {
+			java.nio.file.Path root = hostDir.toPath();
+			for (String path : paths) {
+				java.nio.file.Path source = root.resolve(path);
+				java.nio.file.Path target = staging.resolve(path);
+				Files.createDirectories(target.getParent());
+				if (Files.isSymbolicLink(source)) {
+					Files.createSymbolicLink(target, Files.readSymbolicLink(source));
+					continue;
+				}
+				try {
+					Files.createLink(target, source);
+				} catch (IOException | UnsupportedOperationException e) {
+					Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+				}
+			}
+			if (withMarker) {
+				Files.write(staging.resolve(MARKER_NAME), manifestId.getBytes(StandardCharsets.UTF_8));
+			}
+			connection.copyToContainer(staging.toString() + "/", containerId, containerDir); //$NON-NLS-1$
+		} finally {
+			delete(staging.toFile());
+		}
+	}
+
+	/**
+	 * Remove paths from the volume. The Docker API cannot delete files from a
+	 * container, so this is done by short-lived containers of the image.
+	 */
+	private void removeFromVolume(List<String> paths, IProgressMonitor monitor)
+			throws DockerException, InterruptedException {
+		String dir = stripSeparator(containerDir);
+		for (int start = 0; start < paths.size() && !monitor.isCanceled(); start += MAX_REMOVED_PER_CONTAINER) {
+			List<String> cmd = new ArrayList<>(Arrays.asList("rm", "-rf", "--")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			for (String path : paths.subList(start, Math.min(paths.size(), start + MAX_REMOVED_PER_CONTAINER))) {
+				cmd.add(dir + "/" + path); //$NON-NLS-1$
+			}
+			runInVolume(cmd);
+		}
+	}
+
+	/**
+	 * Remove the whole content of the volume.
+	 */
+	private void clearVolume() throws DockerException, InterruptedException {
+		runInVolume(Arrays.asList("find", stripSeparator(containerDir), "-mindepth", "1", "-delete")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+
+	private void runInVolume(List<String> cmd) throws DockerException, InterruptedException {
+		IDockerContainerConfig config = new DockerContainerConfig.Builder().cmd(cmd).image(image).build();
+		IDockerHostConfig hostConfig = new DockerHostConfig.Builder().binds(Arrays.asList(getBind())).build();
+		String id = connection.createContainer(config, hostConfig, null);
+		try {
+			connection.startContainer(id, null, null);
+			connection.waitForContainer(id);
+		} finally {
+			connection.removeContainer(id);
+		}
+	}
+
+	/**
+	 * @return the identifier of the manifest the volume content matches, or
+	 *         null if the volume is new or was not copied completely
+	 */
+	private String readMarker(String containerId) {
+		try (Closeable token = connection.getOperationToken();
+				InputStream in = connection.copyContainer(token, containerId, containerDir + MARKER_NAME);
+				TarArchiveInputStream tar = new TarArchiveInputStream(in)) {
+			if (tar.getNextTarEntry() == null) {
+				return null;
+			}
+			BufferedReader reader = new BufferedReader(new InputStreamReader(tar, StandardCharsets.UTF_8));
+			return reader.readLine();
+		} catch (DockerException | InterruptedException | IOException e) {
+			return null;
+		}
+	}
+
+	private void loadManifest() {
+		manifestId = null;
+		manifest = new HashMap<>();
+		if (!manifestFile.exists()) {
+			return;
+		}
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(Files.newInputStream(manifestFile.toPath()), StandardCharsets.UTF_8))) {
+			String id = reader.readLine();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(HEADER)) {
+					continue;
+				}
+				// size, modification time, hash and path separated by tabs
+				String[] fields = line.split("\t", 4); //$NON-NLS-1$
+				if (fields.length == 4) {
+					manifest.put(fields[3],
+							new FileState(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2]));
+				}
+			}
+			manifestId = id;
+		} catch (IOException | NumberFormatException e) {
+			manifest.clear();
+		}
+	}
+
+	private void saveManifest() throws IOException {
+		manifestFile.getParentFile().mkdirs();
+		File tmp = new File(manifestFile.getPath() + ".tmp"); //$NON-NLS-1$
+		try (BufferedWriter writer = new BufferedWriter(
+				new OutputStreamWriter(Files.newOutputStream(tmp.toPath()), StandardCharsets.UTF_8))) {
+			writer.write(manifestId);
+			writer.newLine();
+			// connection, image, host and container directories
+			writer.write(HEADER + "\t" + connection.getUri() + "\t" + image + "\t" + hostDir.getPath() + "\t" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+					+ stripSeparator(containerDir));
+			writer.newLine();
+			for (Iterator<Map.Entry<String, FileState>> i = manifest.entrySet().iterator(); i.hasNext();) {
+				Map.Entry<String, FileState> entry = i.next();
+				FileState state = entry.getValue();
+				writer.write(state.size + "\t" + state.modified + "\t" + state.hash + "\t" + entry.getKey()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				writer.newLine();
+			}
+		}
+		Files.move(tmp.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Start removing the volumes of projects when they are closed or deleted,
+	 * and remove the volumes of host directories which no longer exist.
+	 */
+	public static synchronized void startCleanup() {
+		if (projectListener != null) {
+			return;
+		}
+		projectListener = new IResourceChangeListener() {
+			@Override
+			public void resourceChanged(IResourceChangeEvent event) {
+				if (event.getResource() instanceof IProject) {
+					IPath location = ((IProject) event.getResource()).getLocation();
+					if (location != null) {
+						final String root = stripSeparator(location.toOSString());
+						schedulePurge(dir -> dir.equals(root) || dir.startsWith(root + File.separator));
+					}
+				}
+			}
+		};
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(projectListener,
+				IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_DELETE);
+		schedulePurge(dir -> !new File(dir).isDirectory());
+	}
+
+	/**
+	 * Stop removing the volumes of closed or deleted projects.
+	 */
+	public static synchronized void stopCleanup() {
+		if (projectListener != null) {
+			ResourcesPlugin.getWorkspace().removeResourceChangeListener(projectListener);
+			projectListener = null;
+		}
+	}
+
+	private static void schedulePurge(final Predicate<String> hostDirFilter) {
+		Job job = new Job("Remove synced volumes") { //$NON-NLS-1$
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				purge(hostDirFilter);
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.schedule();
+	}
+
+	/**
+	 * Empty the volumes of the host directories accepted by the filter and
+	 * remove their manifests. Volumes still used by a running container, or
+	 * whose daemon cannot be reached, are kept for a later purge. The
+	 * connection only removes containers, so the emptied volumes themselves
+	 * are left to docker volume prune.
+	 */
+	private static void purge(Predicate<String> hostDirFilter) {
+		IPath statePath = Platform.getStateLocation(Platform.getBundle(PLUGIN_ID));
+		File[] files = statePath.append(MANIFEST_DIR).toFile().listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			String[] header = readHeader(file);
+			if (header == null || !hostDirFilter.test(header[3])) {
+				continue;
+			}
+			Object lock = locks.computeIfAbsent(file.getName(), k -> new Object());
+			synchronized (lock) {
+				IDockerConnection connection = DockerConnectionManager.getInstance().getConnectionByUri(header[1]);
+				if (connection instanceof DockerConnection) {
+					VolumeSync sync = new VolumeSync((DockerConnection) connection, header[2], header[3], header[4]);
+					Holder holder = holders.get(sync.volumeName);
+					try {
+						if (!connection.isOpen() || holder != null && isActive(sync.connection, holder)) {
+							continue;
+						}
+						if (sync.volumeName.equals(file.getName())) {
+							sync.clearVolume();
+						}
+					} catch (DockerException | InterruptedException e) {
+						e.printStackTrace();
+						continue;
+					}
+				}
+				holders.remove(file.getName());
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * @return the fields of the manifest header, or null for manifests
+	 *         written without one
+	 */
+	private static String[] readHeader(File file) {
+		if (file.getName().endsWith(".tmp")) { //$NON-NLS-1$
+			return null;
+		}
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8))) {
+			reader.readLine();
+			String line = reader.readLine();
+			String[] fields = (line != null && line.startsWith(HEADER)) ? line.split("\t", 5) : null; //$NON-NLS-1$
+			return (fields != null && fields.length == 5) ? fields : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private static String hash(java.nio.file.Path file, byte[] buffer) throws IOException {
+		MessageDigest digest = newDigest();
+		try (InputStream in = Files.newInputStream(file)) {
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, n);
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	private static String hash(byte[] bytes) {
+		return toHex(newDigest().digest(bytes));
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+
+	private static String stripSeparator(String dir) {
+		return (dir.length() > 1 && dir.endsWith("/")) ? dir.substring(0, dir.length() - 1) : dir; //$NON-NLS-1$
+	}
+
+	private static void delete(File file) {
+		File[] children = file.isDirectory() && !Files.isSymbolicLink(file.toPath()) ? file.listFiles() : null;
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -12,6 +12,8 @@ package org.yocto.docker.launcher.internal;
 
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
+import org.yocto.docker.launcher.ContainerPool;
+import org.yocto.docker.launcher.VolumeSync;
 
 public class Activator implements BundleActivator {
 
@@ -28,6 +30,7 @@ public class Activator implements BundleActivator {
 	@Override
 	public void start(BundleContext bundleContext) throws Exception {
 		Activator.context = bundleContext;
+		VolumeSync.startCleanup();
 	}
 
 	/*
@@ -36,6 +39,8 @@ public class Activator implements BundleActivator {
 	 */
 	@Override
 	public void stop(BundleContext bundleContext) throws Exception {
+		VolumeSync.stopCleanup();
+		ContainerPool.dispose();
 		Activator.context = null;
 	}
 
@@ -12,6 +12,7 @@ package org.yocto.remote.utils;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.rse.core.model.IHost;
 import org.eclipse.rse.services.shells.IHostShell;
 
@@ -31,6 +32,38 @@ public class CommandRunnable implements Runnable{
 	}
 	@Override
 	public void run() {
+		try {
+			runCommand();
+		} finally {
+			// the command may have modified any remote file
+			RemoteHelper.getRemoteMachine(connection).getFileCache().invalidateAll();
+		}
+	}
+
+	private void runCommand() {
+		try {
+			cmd.setProcessBuffer(RemoteHelper.runCommandChannel(connection, cmd, monitor));
+			return;
+		} catch (OperationCanceledException e) {
+			return;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch (RemoteCommandChannel.SessionEndedException e) {
+			if (e.started) {
+				// running the command again could repeat its effects
+				ProcessStreamBuffer buffer = new ProcessStreamBuffer(false);
+				buffer.addErrorLine(e.getMessage() + " while running: " + cmd.getCommandLine());
+				buffer.setExitCode(-1);
+				cmd.setProcessBuffer(buffer);
+				return;
+			}
+			// fall back to a dedicated shell
+			e.printStackTrace();
+		} catch (Exception e) {
+			// the command did not start: fall back to a dedicated shell
+			e.printStackTrace();
+		}
 		try {
 			hostShell = RemoteHelper.runCommandRemote(connection, cmd, monitor);
 			cmd.setProcessBuffer(RemoteHelper.processOutput(monitor, hostShell, cmdHandler));
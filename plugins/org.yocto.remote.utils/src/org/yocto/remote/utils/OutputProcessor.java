@@ -25,6 +25,7 @@ import org.eclipse.rse.services.shells.IHostShell;
 public abstract class OutputProcessor{
 	private static final int ERROR_BUFFER = 1;
 	private static final int OUTPUT_BUFFER = 2;
+	private static final int CHUNK_SIZE = 8192;
 	protected String task;
 	protected ProcessStreamBuffer processBuffer;
 	protected IHostShell hostShell;
@@ -48,33 +49,57 @@ public abstract class OutputProcessor{
 			lock = ((LocalHostShell)hostShell).getLock();
 			lock.lock();
 		}
-		BufferedReader inbr = null;
-		BufferedReader errbr = null;
+		try {
+			BufferedReader inbr = null;
+			BufferedReader errbr = null;
 
-		if (hostShell instanceof LocalHostShell) {
-			inbr = ((LocalHostShell)hostShell).getReader(false);
-			errbr = ((LocalHostShell)hostShell).getReader(true);
-		} else {
-			Process p = new HostShellProcessAdapter(hostShell);
-			inbr = new BufferedReader(new InputStreamReader(p.getInputStream()));
-			errbr = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-		}
-		boolean cancel = false;
-		while (!cancel) {
-			if(monitor.isCanceled()) {
-				cancel = true;
-				if (lock != null)
-					lock.unlock();
-				throw new InterruptedException("User Cancelled");
+			if (hostShell instanceof LocalHostShell) {
+				inbr = ((LocalHostShell)hostShell).getReader(false);
+				errbr = ((LocalHostShell)hostShell).getReader(true);
+			} else {
+				Process p = new HostShellProcessAdapter(hostShell);
+				inbr = new BufferedReader(new InputStreamReader(p.getInputStream()));
+				errbr = new BufferedReader(new InputStreamReader(p.getErrorStream()));
 			}
-			processBuffer(errbr, ERROR_BUFFER);
-			processBuffer(inbr, OUTPUT_BUFFER);
-			cancel = true;
+			if(monitor.isCanceled())
+				throw new InterruptedException("User Cancelled");
+			processBuffers(errbr, inbr);
+			if(monitor.isCanceled())
+				throw new InterruptedException("User Cancelled");
+		} finally {
+			if (lock != null)
+				lock.unlock();
 		}
-		if (lock != null)
-			lock.unlock();
 		return processBuffer;
 	}
+
+	/**
+	 * Process the error and the output streams concurrently, so that lines
+	 * are handled in the order they are produced and a full pipe on one
+	 * stream cannot stall the other.
+	 */
+	private void processBuffers(final BufferedReader errbr, BufferedReader inbr) throws IOException, InterruptedException {
+		final IOException[] errFailure = new IOException[1];
+		Thread errThread = null;
+		if (errbr != null) {
+			errThread = new Thread(new Runnable() {
+				public void run() {
+					try {
+						processBuffer(errbr, ERROR_BUFFER);
+					} catch (IOException e) {
+						errFailure[0] = e;
+					}
+				}
+			}, task + " (errors)");
+			errThread.setDaemon(true);
+			errThread.start();
+		}
+		processBuffer(inbr, OUTPUT_BUFFER);
+		if (errThread != null)
+			errThread.join();
+		if (errFailure[0] != null)
+			throw errFailure[0];
+	}
 	protected abstract boolean isErrChStop(char ch);
 	protected abstract boolean isOutChStop(char ch);
 	protected boolean isChStop(char ch, int type){
@@ -92,23 +117,44 @@ public abstract class OutputProcessor{
 		else if(type == OUTPUT_BUFFER)
 			processOutputBufferLine(ch, str);
 	}
+	/**
+	 * Read a stream in chunks and hand every line, stop character included,
+	 * to the processor, until the end of the stream or the terminator line.
+	 */
 	protected void processBuffer(BufferedReader br, int type) throws IOException{
-		StringBuffer buffer = new StringBuffer();
-		int c;
-		if (br != null)
-		while ((c = br.read()) != -1) {
-			char ch = (char) c;
-			buffer.append(ch);
-			if (isChStop(ch, type)){
-				String str = buffer.toString();
-				processBufferLine(str, ch, type);
-				System.out.println(str);
-				if (str.trim().equals(RemoteHelper.TERMINATOR)) {
-					break;
+		if (br == null)
+			return;
+		char[] chunk = new char[CHUNK_SIZE];
+		StringBuilder line = new StringBuilder(256);
+		int n;
+		while ((n = br.read(chunk, 0, chunk.length)) != -1) {
+			int start = 0;
+			for (int i = 0; i < n; i++) {
+				char ch = chunk[i];
+				if (isChStop(ch, type)){
+					line.append(chunk, start, i + 1 - start);
+					start = i + 1;
+					String str = line.toString();
+					line.setLength(0);
+					if (processLine(str, ch, type))
+						return;
 				}
-				cmdHandler.response(str, false);
-				buffer.delete(0, buffer.length());
 			}
+			line.append(chunk, start, n - start);
+			if (monitor.isCanceled())
+				return;
+		}
+	}
+
+	/**
+	 * @return true if the line is the terminator of the command
+	 */
+	private synchronized boolean processLine(String str, char ch, int type) {
+		processBufferLine(str, ch, type);
+		if (str.trim().equals(RemoteHelper.TERMINATOR)) {
+			return true;
 		}
+		cmdHandler.response(str, false);
+		return false;
 	}
 }
\ No newline at end of file
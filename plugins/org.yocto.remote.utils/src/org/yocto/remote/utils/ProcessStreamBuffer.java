@@ -10,78 +10,311 @@
  *******************************************************************************/
 package org.yocto.remote.utils;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
+/**
+ * The output and error lines of a command, and its exit code when known.
+ *
+ * Only the most recent lines are kept in memory, in ring buffers bounded by
+ * the <code>org.yocto.remote.utils.maxBufferedLines</code> system property.
+ * Older lines are dropped, or written to a temporary file when
+ * <code>org.yocto.remote.utils.spillBufferedLines</code> is set to true.
+ * Searches reuse the whitespace-free form of the lines and remember up to
+ * where they scanned, so repeating a search only looks at the new lines.
+ */
 public class ProcessStreamBuffer {
-	private static final String WHITESPACES = "\\s+";
-	List<String> errorLines;
-	List<String> outputLines;
+	public static final String MAX_LINES_PROPERTY = "org.yocto.remote.utils.maxBufferedLines";
+	public static final String SPILL_PROPERTY = "org.yocto.remote.utils.spillBufferedLines";
+	private static final int DEFAULT_MAX_LINES = 100000;
+
+	private static final Map<String, Pattern> patterns = new ConcurrentHashMap<String, Pattern>();
+
+	LineRing errorLines;
+	LineRing outputLines;
 	boolean isTerminal;
+	private int exitCode = -1;
+	private final Map<String, Match> matches = new HashMap<String, Match>();
 
 	ProcessStreamBuffer(boolean isTerminal){
 		this.isTerminal = isTerminal;
-		errorLines = new ArrayList<String>();
-		outputLines = new ArrayList<String>();
+		int maxLines = Integer.getInteger(MAX_LINES_PROPERTY, DEFAULT_MAX_LINES).intValue();
+		boolean spill = Boolean.getBoolean(SPILL_PROPERTY);
+		errorLines = new LineRing(maxLines, spill);
+		outputLines = new LineRing(maxLines, spill);
 	}
 
-	public void addErrorLine(String line){
+	public synchronized void addErrorLine(String line){
 		errorLines.add(line);
 	}
-	public void addOutputLine(String line){
+	public synchronized void addOutputLine(String line){
 		outputLines.add(line);
 	}
 
-	public List<String> getOutputLines(){
-		return outputLines;
+	/**
+	 * @return a copy of the output lines, including the spilled ones.
+	 */
+	public synchronized List<String> getOutputLines(){
+		return outputLines.toList();
 	}
 
-	public List<String> getErrorLines(){
-		return errorLines;
+	/**
+	 * @return a copy of the error lines, including the spilled ones.
+	 */
+	public synchronized List<String> getErrorLines(){
+		return errorLines.toList();
 	}
 
-	public String getMergedOutputLines(){
-		String returnVal = "";
-		for (int i = 0; i < outputLines.size(); i++) {
-			String line = outputLines.get(i);
-			returnVal += line;
-			if (outputLines.size() > 1 && i != outputLines.size() - 1)
-				returnVal += "\n";
+	public synchronized String getMergedOutputLines(){
+		List<String> lines = outputLines.toList();
+		int length = 0;
+		for (int i = 0; i < lines.size(); i++)
+			length += lines.get(i).length() + 1;
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < lines.size(); i++) {
+			if (i > 0)
+				sb.append('\n');
+			sb.append(lines.get(i));
 		}
-		return returnVal;
+		return sb.toString();
+	}
+
+	/**
+	 * @return the exit code of the command, -1 if unknown.
+	 */
+	public synchronized int getExitCode() {
+		return exitCode;
+	}
+
+	synchronized void setExitCode(int exitCode) {
+		this.exitCode = exitCode;
 	}
 
-	public boolean hasErrors() {
-		return errorLines.size() != 0;
+	public synchronized boolean hasErrors() {
+		return errorLines.count() != 0;
 	}
 
-	public String getLastOutputLineContaining(String str) {
-		if (!errorLines.isEmpty())
+	public synchronized String getLastOutputLineContaining(String str) {
+		if (errorLines.count() != 0)
 			return null;
-		for (int i = outputLines.size() - 1; i >= 0; i--){
-			String line = outputLines.get(i);
-			if (line.replaceAll(WHITESPACES, "").contains(str.replaceAll(WHITESPACES, "")))
-				return line;
+		String needle = removeWhitespaces(str);
+		Match match = getMatch("L" + needle, outputLines);
+		for (long seq = outputLines.next - 1; seq >= match.scanned; seq--) {
+			if (outputLines.getNormalized(seq).contains(needle)) {
+				match.set(seq, outputLines.get(seq));
+				break;
+			}
 		}
-		return null;
+		match.scanned = outputLines.next;
+		return match.result;
 	}
 
-	public String getOutputLineContaining(String arg, String pattern) {
-		List<String> lines = null;
-		if (isTerminal)
-			lines = errorLines;
-		else
-			lines = outputLines;
-		for (int i = lines.size() - 1; i >= 0; i--){
-			String line = lines.get(i);
+	public synchronized String getOutputLineContaining(String arg, String pattern) {
+		LineRing lines = isTerminal ? errorLines : outputLines;
+		Pattern p = patterns.get(pattern);
+		if (p == null) {
+			p = Pattern.compile(pattern);
+			patterns.put(pattern, p);
+		}
+		Match match = getMatch((isTerminal ? "E" : "O") + arg + '\0' + pattern, lines);
+		for (long seq = lines.next - 1; seq >= match.scanned; seq--) {
+			String line = lines.get(seq);
 			if (line.contains(arg)) {
-				String[] tokens = line.split("\\s+");
-				if (Pattern.matches(pattern,  tokens[0])) {
-					return tokens[0];
+				String token = firstToken(line);
+				if (p.matcher(token).matches()) {
+					match.set(seq, token);
+					break;
+				}
+			}
+		}
+		match.scanned = lines.next;
+		return (match.result != null) ? match.result : "";
+	}
+
+	/**
+	 * @return the cached result of a search, reset if the line it found is
+	 * no longer in memory.
+	 */
+	private Match getMatch(String key, LineRing lines) {
+		Match match = matches.get(key);
+		if (match == null || (match.result != null && match.seq < lines.first)) {
+			match = new Match();
+			match.scanned = lines.first;
+			matches.put(key, match);
+		}
+		if (match.scanned < lines.first)
+			match.scanned = lines.first;
+		return match;
+	}
+
+	/**
+	 * @return the first token of the line as split on whitespaces, empty if
+	 * the line starts with a whitespace.
+	 */
+	private static String firstToken(String line) {
+		for (int i = 0; i < line.length(); i++) {
+			if (Character.isWhitespace(line.charAt(i)))
+				return line.substring(0, i);
+		}
+		return line;
+	}
+
+	private static String removeWhitespaces(String line) {
+		StringBuilder sb = null;
+		for (int i = 0; i < line.length(); i++) {
+			char ch = line.charAt(i);
+			if (Character.isWhitespace(ch)) {
+				if (sb == null) {
+					sb = new StringBuilder(line.length());
+					sb.append(line, 0, i);
+				}
+			} else if (sb != null) {
+				sb.append(ch);
+			}
+		}
+		return (sb == null) ? line : sb.toString();
+	}
+
+	/**
+	 * The last line found by a search and the lines already searched.
+	 */
+	private static class Match {
+		long scanned;
+		long seq = -1;
+		String result;
+
+		void set(long seq, String result) {
+			this.seq = seq;
+			this.result = result;
+		}
+	}
+
+	/**
+	 * A ring of the most recent lines. Lines are numbered in the order they
+	 * are added, from <code>first</code> (the oldest in memory) to
+	 * <code>next</code> (excluded).
+	 */
+	static class LineRing {
+		private final int capacity;
+		private final boolean spill;
+		private String[] lines = new String[16];
+		private String[] normalized = new String[16];
+		long first = 0;
+		long next = 0;
+		private File spillFile;
+		private Writer spillWriter;
+
+		LineRing(int capacity, boolean spill) {
+			this.capacity = Math.max(1, capacity);
+			this.spill = spill;
+		}
+
+		void add(String line) {
+			if (next - first == capacity) {
+				int slot = slot(first);
+				if (spill)
+					spill(lines[slot]);
+				lines[slot] = null;
+				normalized[slot] = null;
+				first++;
+			} else if (next == lines.length) {
+				// not wrapped yet: grow towards the capacity
+				int length = (int) Math.min(capacity, lines.length * 2L);
+				String[] grown = new String[length];
+				System.arraycopy(lines, 0, grown, 0, lines.length);
+				lines = grown;
+				grown = new String[length];
+				System.arraycopy(normalized, 0, grown, 0, normalized.length);
+				normalized = grown;
+			}
+			lines[slot(next)] = line;
+			next++;
+		}
+
+		int count() {
+			return (int) (next - first);
+		}
+
+		String get(long seq) {
+			return lines[slot(seq)];
+		}
+
+		String getNormalized(long seq) {
+			int slot = slot(seq);
+			if (normalized[slot] == null)
+				normalized[slot] = removeWhitespaces(lines[slot]);
+			return normalized[slot];
+		}
+
+		List<String> toList() {
+			List<String> list = new ArrayList<String>(count());
+			if (spillWriter != null) {
+				try {
+					spillWriter.flush();
+					BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(spillFile), StandardCharsets.UTF_8));
+					try {
+						String line;
+						while ((line = reader.readLine()) != null)
+							list.add(unescape(line));
+					} finally {
+						reader.close();
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+			for (long seq = first; seq < next; seq++)
+				list.add(get(seq));
+			return list;
+		}
+
+		private static String unescape(String line) {
+			if (line.indexOf('\\') < 0)
+				return line;
+			StringBuilder sb = new StringBuilder(line.length());
+			for (int i = 0; i < line.length(); i++) {
+				char ch = line.charAt(i);
+				if (ch == '\\' && i + 1 < line.length()) {
+					ch = line.charAt(++i);
+					sb.append(ch == 'n' ? '\n' : ch);
+				} else {
+					sb.append(ch);
+				}
+			}
+			return sb.toString();
+		}
+
+		private int slot(long seq) {
+			return (int) (seq % lines.length);
+		}
+
+		private void spill(String line) {
+			try {
+				if (spillWriter == null) {
+					spillFile = File.createTempFile("yocto-output", ".log");
+					spillFile.deleteOnExit();
+					spillWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(spillFile), StandardCharsets.UTF_8));
 				}
+				// one line per entry: escape the line breaks the line contains
+				spillWriter.write(line.replace("\\", "\\\\").replace("\n", "\\n"));
+				spillWriter.write('\n');
+			} catch (IOException e) {
+				e.printStackTrace();
 			}
 		}
-		return "";
 	}
 }
@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Intel Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Intel - initial API and implementation
+ *******************************************************************************/
+package org.yocto.remote.utils;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.rse.internal.services.local.shells.LocalShellService;
+import org.eclipse.rse.internal.services.shells.TerminalServiceHostShell;
+import org.eclipse.rse.services.shells.HostShellProcessAdapter;
+import org.eclipse.rse.services.shells.IHostShell;
+import org.eclipse.rse.services.shells.IShellService;
+
+/**
+ * Runs the commands of a {@link RemoteMachine} over a few long-lived login
+ * shells instead of launching a new shell for every command.
+ *
+ * Each command is written to an idle shell between begin and end markers
+ * echoed on both streams, the end marker of the standard output carrying the
+ * exit code. Commands run in a subshell, with their input redirected from
+ * <code>/dev/null</code>, so they cannot change the state of the shell or
+ * consume the next commands. Up to
+ * <code>org.yocto.remote.utils.maxChannelShells</code> shells (4 by default)
+ * are opened to run commands concurrently; a shell whose command was
+ * cancelled or which ended is discarded.
+ */
+@SuppressWarnings("restriction")
+public class RemoteCommandChannel {
+	public static final String MAX_SHELLS_PROPERTY = "org.yocto.remote.utils.maxChannelShells";
+	private static final int DEFAULT_MAX_SHELLS = 4;
+	private static final int QUEUE_SIZE = 1024;
+	private static final long POLL_INTERVAL = 100;
+	private static final AtomicLong commandIds = new AtomicLong();
+
+	private final RemoteMachine machine;
+	private final int maxSessions;
+	private final LinkedList<Session> idle = new LinkedList<Session>();
+	private int open = 0;
+	private boolean closed = false;
+
+	public RemoteCommandChannel(RemoteMachine machine) {
+		this.machine = machine;
+		this.maxSessions = Math.max(1, Integer.getInteger(MAX_SHELLS_PROPERTY, DEFAULT_MAX_SHELLS).intValue());
+	}
+
+	/**
+	 * Run a command and wait for it to complete.
+	 *
+	 * @param initialDirectory directory to run the command in, may be null
+	 * @param command command line, as given to the shell
+	 * @param cmdHandler receives the lines of the command, may be null
+	 * @param monitor
+	 * @return the output lines, error lines and exit code of the command
+	 * @throws Exception if no shell could be opened or the shell ended
+	 * before the command completed
+	 */
+	public ProcessStreamBuffer execute(String initialDirectory, String command, CommandResponseHandler cmdHandler, IProgressMonitor monitor) throws Exception {
+		// an idle shell may have ended since its last command: retry once
+		// with a new shell if it did before starting the command
+		for (int attempt = 0; ; attempt++) {
+			Session session = acquire(monitor);
+			boolean reusable = false;
+			try {
+				ProcessStreamBuffer buffer = session.run(initialDirectory, command, cmdHandler, monitor);
+				reusable = true;
+				return buffer;
+			} catch (SessionEndedException e) {
+				if (e.started || attempt > 0)
+					throw e;
+			} finally {
+				release(session, reusable);
+			}
+		}
+	}
+
+	/**
+	 * Close the shells. Commands running at that time complete, their
+	 * shell is closed afterwards.
+	 */
+	public synchronized void close() {
+		closed = true;
+		while (!idle.isEmpty()) {
+			idle.removeFirst().close();
+			open--;
+		}
+		notifyAll();
+	}
+
+	private Session acquire(IProgressMonitor monitor) throws Exception {
+		synchronized (this) {
+			while (true) {
+				if (closed)
+					throw new IOException("The command channel is closed");
+				if (!idle.isEmpty()) {
+					Session session = idle.removeFirst();
+					if (session.isAlive())
+						return session;
+					session.close();
+					open--;
+					continue;
+				}
+				if (open < maxSessions) {
+					open++;
+					break;
+				}
+				if (monitor.isCanceled())
+					throw new OperationCanceledException();
+				wait(POLL_INTERVAL);
+			}
+		}
+		try {
+			return openSession(monitor);
+		} catch (Exception e) {
+			synchronized (this) {
+				open--;
+				notifyAll();
+			}
+			throw e;
+		}
+	}
+
+	private synchronized void release(Session session, boolean reusable) {
+		if (reusable && !closed && session.isAlive()) {
+			idle.addFirst(session);
+		} else {
+			session.close();
+			open--;
+		}
+		notifyAll();
+	}
+
+	private Session openSession(IProgressMonitor monitor) throws Exception {
+		IShellService shellService = machine.getShellService(monitor);
+		// a remote shell already has the login environment of the user
+		String[] env = (shellService instanceof LocalShellService) ? shellService.getHostEnvironment() : new String[0];
+		IHostShell hostShell = shellService.launchShell("", env, monitor); //$NON-NLS-1$
+		Session session = new Session(hostShell);
+		// pay for the login shell startup once for all the commands
+		hostShell.writeToShell("exec bash -l"); //$NON-NLS-1$
+		return session;
+	}
+
+	/**
+	 * Quote a path for the shell.
+	 */
+	static String quote(String path) {
+		return "'" + path.replace("'", "'\\''") + "'"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+
+	/**
+	 * The shell ended before or while running a command.
+	 */
+	static class SessionEndedException extends IOException {
+		private static final long serialVersionUID = 1L;
+		final boolean started;
+
+		SessionEndedException(boolean started) {
+			super("The remote shell ended");
+			this.started = started;
+		}
+	}
+
+	/**
+	 * A shell and the readers of its streams.
+	 */
+	private static class Session {
+		private final IHostShell hostShell;
+		private final BlockingQueue<StreamPump.Line> lines;
+		private final StreamPump outPump;
+		private final StreamPump errPump;
+		private boolean ended = false;
+
+		Session(IHostShell hostShell) throws IOException {
+			this.hostShell = hostShell;
+			Process p = new HostShellProcessAdapter(hostShell);
+			lines = new ArrayBlockingQueue<StreamPump.Line>(QUEUE_SIZE);
+			outPump = new StreamPump("Remote shell stdout", p.getInputStream(), lines, false);
+			errPump = new StreamPump("Remote shell stderr", p.getErrorStream(), lines, true);
+		}
+
+		boolean isAlive() {
+			return !ended && hostShell.isActive();
+		}
+
+		ProcessStreamBuffer run(String initialDirectory, String command, CommandResponseHandler cmdHandler, IProgressMonitor monitor) throws Exception {
+			String id = RemoteHelper.TERMINATOR + ":" + commandIds.incrementAndGet();
+			String begin = id + ":begin";
+			String end = id + ":end";
+
+			StringBuilder sb = new StringBuilder(command.length() + 4 * id.length() + 64);
+			sb.append("echo ").append(begin).append("; echo ").append(begin).append(" >&2; ( ");
+			if (initialDirectory != null && initialDirectory.length() > 0)
+				sb.append("cd ").append(quote(initialDirectory)).append(" && ");
+			sb.append(command);
+			sb.append(" ) < /dev/null; echo ").append(end).append(":$?; echo ").append(end).append(" >&2");
+			hostShell.writeToShell(sb.toString());
+
+			ProcessStreamBuffer buffer = new ProcessStreamBuffer(hostShell instanceof TerminalServiceHostShell);
+			// per stream: the lines of the command are between the markers.
+			// Terminals merge both streams, so the markers are recognized
+			// on either stream
+			boolean[] started = new boolean[2];
+			boolean[] done = new boolean[2];
+			boolean outEnd = false;
+			boolean errEnd = false;
+			while (!outEnd || !errEnd) {
+				if (monitor.isCanceled())
+					throw new OperationCanceledException();
+				StreamPump.Line line = lines.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				if (line == null)
+					continue;
+				if (line.isEnd()) {
+					ended = true;
+					throw new SessionEndedException(started[0] || started[1]);
+				}
+				int stream = line.isError ? 1 : 0;
+				String text = line.text.trim();
+				if (text.equals(begin)) {
+					started[stream] = true;
+				} else if (text.equals(end)) {
+					done[stream] = true;
+					errEnd = true;
+				} else if (text.startsWith(end + ":")) {
+					done[stream] = true;
+					outEnd = true;
+					try {
+						buffer.setExitCode(Integer.parseInt(text.substring(end.length() + 1)));
+					} catch (NumberFormatException e) {
+						e.printStackTrace();
+					}
+				} else if (started[stream] && !done[stream]) {
+					// the prompt and the echo of the command come before
+					// the begin marker and are skipped
+					if (line.isError)
+						buffer.addErrorLine(line.text);
+					else
+						buffer.addOutputLine(line.text);
+					if (cmdHandler != null)
+						cmdHandler.response(line.text, false);
+				}
+			}
+			return buffer;
+		}
+
+		void close() {
+			ended = true;
+			outPump.close();
+			errPump.close();
+			try {
+				hostShell.exit();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
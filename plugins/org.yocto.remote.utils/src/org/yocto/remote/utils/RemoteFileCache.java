@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Intel Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Intel - initial API and implementation
+ *******************************************************************************/
+package org.yocto.remote.utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.rse.services.files.IFileService;
+import org.eclipse.rse.services.files.IHostFile;
+
+/**
+ * The metadata of the remote files of a {@link RemoteMachine}: existence,
+ * size and modification time, and directory listings.
+ *
+ * Entries expire after <code>org.yocto.remote.utils.fileCacheTimeout</code>
+ * milliseconds (5 seconds by default), and must be invalidated when the
+ * files are modified through this plug-in. Files missing on the remote
+ * machine are cached as well, as callers mostly probe for files that may
+ * not exist. Several files are looked up in a single request to the file
+ * service.
+ */
+public class RemoteFileCache {
+	public static final String TIMEOUT_PROPERTY = "org.yocto.remote.utils.fileCacheTimeout";
+	private static final long DEFAULT_TIMEOUT = 5000;
+	private static final int MAX_FILES = 4096;
+	private static final int MAX_LISTINGS = 256;
+
+	private static class Cached<T> {
+		final T value;
+		final long time;
+
+		Cached(T value, long time) {
+			this.value = value;
+			this.time = time;
+		}
+	}
+
+	private final RemoteMachine machine;
+	private final long timeout;
+	private final Map<String, Cached<IHostFile>> files;
+	private final Map<String, Cached<IHostFile[]>> listings;
+
+	public RemoteFileCache(RemoteMachine machine) {
+		this.machine = machine;
+		this.timeout = Long.getLong(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT).longValue();
+		this.files = new LinkedHashMap<String, Cached<IHostFile>>(64, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Cached<IHostFile>> eldest) {
+				return size() > MAX_FILES;
+			}
+		};
+		this.listings = new LinkedHashMap<String, Cached<IHostFile[]>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Cached<IHostFile[]>> eldest) {
+				return size() > MAX_LISTINGS;
+			}
+		};
+	}
+
+	/**
+	 * @param path absolute path of the remote file
+	 * @param monitor
+	 * @return the remote file, which may not exist
+	 * @throws Exception
+	 */
+	public IHostFile getFile(String path, IProgressMonitor monitor) throws Exception {
+		return getFiles(new String[] {path}, monitor)[0];
+	}
+
+	/**
+	 * Look up several remote files, the ones not in the cache in a single
+	 * request.
+	 *
+	 * @param paths absolute paths of the remote files
+	 * @param monitor
+	 * @return the remote files, in the order of the paths
+	 * @throws Exception
+	 */
+	public IHostFile[] getFiles(String[] paths, IProgressMonitor monitor) throws Exception {
+		IHostFile[] result = new IHostFile[paths.length];
+		List<Integer> missing = new ArrayList<Integer>();
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			for (int i = 0; i < paths.length; i++) {
+				Cached<IHostFile> entry = files.get(normalize(paths[i]));
+				if (entry != null && now - entry.time < timeout)
+					result[i] = entry.value;
+				else
+					missing.add(Integer.valueOf(i));
+			}
+		}
+		if (missing.isEmpty())
+			return result;
+
+		String[] parents = new String[missing.size()];
+		String[] names = new String[missing.size()];
+		for (int i = 0; i < parents.length; i++) {
+			String path = normalize(paths[missing.get(i).intValue()]);
+			int nameStart = path.lastIndexOf('/');
+			parents[i] = (nameStart > 0) ? path.substring(0, nameStart) : "/"; //$NON-NLS-1$
+			names[i] = path.substring(nameStart + 1);
+		}
+		IFileService fileService = machine.getRemoteFileService(monitor);
+		IHostFile[] found = (parents.length == 1)
+				? new IHostFile[] {fileService.getFile(parents[0], names[0], monitor)}
+				: fileService.getFileMultiple(parents, names, monitor);
+
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			for (int i = 0; i < found.length; i++) {
+				int index = missing.get(i).intValue();
+				result[index] = found[i];
+				files.put(normalize(paths[index]), new Cached<IHostFile>(found[i], now));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param parent absolute path of the remote directory
+	 * @param filter file name filter
+	 * @param fileType one of the IFileService file types
+	 * @param monitor
+	 * @return the content of the remote directory
+	 * @throws Exception
+	 */
+	public IHostFile[] list(String parent, String filter, int fileType, IProgressMonitor monitor) throws Exception {
+		String dir = normalize(parent);
+		String key = dir + '\0' + filter + '\0' + fileType;
+		synchronized (this) {
+			Cached<IHostFile[]> entry = listings.get(key);
+			if (entry != null && System.currentTimeMillis() - entry.time < timeout)
+				return entry.value.clone();
+		}
+
+		IHostFile[] content = machine.getRemoteFileService(monitor).list(dir, filter, fileType, monitor);
+
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			listings.put(key, new Cached<IHostFile[]>(content, now));
+			// the listed files exist: save looking them up
+			for (int i = 0; i < content.length; i++)
+				files.put(child(dir, content[i].getName()), new Cached<IHostFile>(content[i], now));
+		}
+		return content.clone();
+	}
+
+	/**
+	 * Forget a remote file after it was created, modified or deleted, and
+	 * the content of its directory.
+	 *
+	 * @param path absolute path of the remote file or directory
+	 */
+	public synchronized void invalidate(String path) {
+		String file = normalize(path);
+		files.remove(file);
+		int nameStart = file.lastIndexOf('/');
+		String parent = (nameStart > 0) ? file.substring(0, nameStart) : "/"; //$NON-NLS-1$
+		String dirPrefix = file + '\0';
+		String parentPrefix = parent + '\0';
+		for (Iterator<String> i = listings.keySet().iterator(); i.hasNext();) {
+			String key = i.next();
+			if (key.startsWith(parentPrefix) || key.startsWith(dirPrefix))
+				i.remove();
+		}
+	}
+
+	/**
+	 * Forget all the remote files, for instance after running a command that
+	 * may have modified any of them.
+	 */
+	public synchronized void invalidateAll() {
+		files.clear();
+		listings.clear();
+	}
+
+	private static String child(String dir, String name) {
+		return dir.endsWith("/") ? dir + name : dir + '/' + name; //$NON-NLS-1$
+	}
+
+	private static String normalize(String path) {
+		if (path.length() > 1 && path.endsWith("/")) //$NON-NLS-1$
+			return path.substring(0, path.length() - 1);
+		return path;
+	}
+}
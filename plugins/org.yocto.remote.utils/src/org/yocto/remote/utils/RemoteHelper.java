@@ -11,8 +11,6 @@
  ********************************************************************************/
 package org.yocto.remote.utils;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -20,6 +18,7 @@ import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -62,8 +61,10 @@ import org.eclipse.rse.internal.core.RSEInitJob;
 import org.eclipse.rse.internal.ui.view.SystemPerspectiveHelpers;
 import org.eclipse.rse.services.IService;
 import org.eclipse.rse.services.clientserver.messages.SystemMessageException;
+import org.eclipse.rse.services.files.IFilePermissionService;
 import org.eclipse.rse.services.files.IFileService;
 import org.eclipse.rse.services.files.IHostFile;
+import org.eclipse.rse.services.files.IHostFilePermissions;
 import org.eclipse.rse.services.shells.HostShellProcessAdapter;
 import org.eclipse.rse.services.shells.IHostShell;
 import org.eclipse.rse.services.shells.IShellService;
@@ -85,6 +86,7 @@ public class RemoteHelper {
 	private final static String HOST_NAME = "LOCALHOST";
 	public static final String TERMINATOR = "234o987dsfkcqiuwey18837032843259d";//$NON-NLS-1$
 	public static final int TOTALWORKLOAD = 100;
+	private static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
 	private static Map<IHost, RemoteMachine> machines;
 
 	public static IPath getWorkspaceMetaArea(){
@@ -228,47 +230,156 @@ public class RemoteHelper {
 
 	public static void putRemoteFileInPlugin(IHost connection, String locaPathInPlugin, String remoteExePath,
 			IProgressMonitor monitor) throws Exception {
+		putRemoteFilesInPlugin(connection, new String[] {locaPathInPlugin}, new String[] {remoteExePath}, monitor);
+	}
+
+	/**
+	 * Upload files of the plug-in and make them executable, over a single
+	 * connection to the file service. The files are streamed from the
+	 * bundle to the remote machine without staging them in temporary files
+	 * when the file service supports it, and made executable through the
+	 * file service when it supports permissions, or by a single chmod
+	 * otherwise.
+	 *
+	 * @param connection
+	 * @param localPathsInPlugin paths of the files in the plug-in
+	 * @param remoteExePaths absolute remote paths, in the same order
+	 * @param monitor
+	 * @throws Exception
+	 */
+	public static void putRemoteFilesInPlugin(IHost connection, String[] localPathsInPlugin, String[] remoteExePaths,
+			IProgressMonitor monitor) throws Exception {
 
 		assert(connection != null);
+		assert(localPathsInPlugin.length == remoteExePaths.length);
 		monitor.beginTask(Messages.InfoUpload, 100);
 
-		IFileService fileService;
 		try {
-			fileService = getConnectedRemoteFileService(
+			RemoteMachine machine = getRemoteMachine(connection);
+			IFileService fileService = getConnectedRemoteFileService(
 							connection,
 							SubMonitor.convert(monitor, 5));
-			InputStream  inputStream = FileLocator.openStream(
-				    Activator.getDefault().getBundle(), new Path(locaPathInPlugin), false);
-			Path remotePath = new Path(remoteExePath);
-
-			//TODO workaround for now
-			//in case the underlying scp file service doesn't support inputStream upload
-			BufferedInputStream bis = new BufferedInputStream(inputStream);
-			File tempFile = File.createTempFile("scp", "temp"); //$NON-NLS-1$ //$NON-NLS-2$
-			FileOutputStream os = new FileOutputStream(tempFile);
-			BufferedOutputStream bos = new BufferedOutputStream(os);
-			byte[] buffer = new byte[1024];
-			int readCount;
-			while( (readCount = bis.read(buffer)) > 0)
-			{
-				bos.write(buffer, 0, readCount);
+			SubMonitor uploadMonitor = SubMonitor.convert(monitor, 85).setWorkRemaining(remoteExePaths.length);
+			List<String> notExecutable = new ArrayList<String>();
+			for (int i = 0; i < remoteExePaths.length; i++) {
+				Path remotePath = new Path(remoteExePaths[i]);
+				String remoteParent = remotePath.removeLastSegments(1).toString();
+				String remoteName = remotePath.lastSegment();
+				IProgressMonitor fileMonitor = uploadMonitor.newChild(1);
+
+				InputStream inputStream = FileLocator.openStream(
+					    Activator.getDefault().getBundle(), new Path(localPathsInPlugin[i]), false);
+				try {
+					upload(fileService, inputStream, remoteParent, remoteName, fileMonitor);
+				} finally {
+					inputStream.close();
+				}
+				machine.getFileCache().invalidate(remotePath.toString());
+				// Need to change the permissions to match the original file
+				// permissions because of a bug in upload
+				if (!setExecutable(fileService, remoteParent, remoteName, fileMonitor))
+					notExecutable.add(spaceEscapify(remotePath.toString()));
 			}
-			bos.close();
-			fileService.upload(tempFile, remotePath.removeLastSegments(1)
-					.toString(), remotePath.lastSegment(), true, null, null,
-					SubMonitor.convert(monitor, 80));
-			// Need to change the permissions to match the original file
-			// permissions because of a bug in upload
-			remoteShellExec(
-					connection,
-					"", "chmod", "+x " + spaceEscapify(remotePath.toString()), SubMonitor.convert(monitor, 5)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-
+			if (!notExecutable.isEmpty())
+				chmodExecutable(connection, notExecutable, SubMonitor.convert(monitor, 10));
 		} finally {
 			monitor.done();
 		}
 		return;
 	}
 
+	/**
+	 * Copy a stream to a remote file, directly if the file service can
+	 * write remote files as streams.
+	 */
+	private static void upload(IFileService fileService, InputStream inputStream, String remoteParent, String remoteName,
+			IProgressMonitor monitor) throws Exception {
+		byte[] buffer = new byte[UPLOAD_BUFFER_SIZE];
+		int readCount;
+		OutputStream os = null;
+		try {
+			os = fileService.getOutputStream(remoteParent, remoteName, IFileService.NONE, monitor);
+		} catch (SystemMessageException e) {
+			// not supported by the file service
+		} catch (UnsupportedOperationException e) {
+			// not supported by the file service
+		}
+		if (os != null) {
+			try {
+				while ((readCount = inputStream.read(buffer)) > 0)
+					os.write(buffer, 0, readCount);
+			} finally {
+				os.close();
+			}
+			return;
+		}
+
+		//in case the underlying scp file service doesn't support inputStream upload
+		File tempFile = File.createTempFile("scp", "temp"); //$NON-NLS-1$ //$NON-NLS-2$
+		try {
+			OutputStream fos = new FileOutputStream(tempFile);
+			try {
+				while ((readCount = inputStream.read(buffer)) > 0)
+					fos.write(buffer, 0, readCount);
+			} finally {
+				fos.close();
+			}
+			fileService.upload(tempFile, remoteParent, remoteName, true, null, null, monitor);
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * Make a remote file executable through the file service.
+	 *
+	 * @return false if the file service cannot set the permissions of the
+	 * file
+	 */
+	private static boolean setExecutable(IFileService fileService, String remoteParent, String remoteName,
+			IProgressMonitor monitor) {
+		if (!(fileService instanceof IFilePermissionService))
+			return false;
+		IFilePermissionService permissionService = (IFilePermissionService) fileService;
+		try {
+			IHostFile file = fileService.getFile(remoteParent, remoteName, monitor);
+			if ((permissionService.getCapabilities(file) & IFilePermissionService.FS_CAN_SET_PERMISSIONS) == 0)
+				return false;
+			IHostFilePermissions permissions = permissionService.getFilePermissions(file, monitor);
+			if (permissions == null)
+				return false;
+			permissions.setPermissionBits(permissions.getPermissionBits()
+					| IHostFilePermissions.PERM_USER_EXECUTE
+					| IHostFilePermissions.PERM_GROUP_EXECUTE
+					| IHostFilePermissions.PERM_OTHER_EXECUTE);
+			permissionService.setFilePermissions(file, permissions, monitor);
+			return true;
+		} catch (Exception e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Make remote files executable with a single chmod, run over the command
+	 * channel of the connection.
+	 */
+	private static void chmodExecutable(IHost connection, List<String> escapedPaths, IProgressMonitor monitor) throws Exception {
+		StringBuilder args = new StringBuilder("+x"); //$NON-NLS-1$
+		for (Iterator<String> i = escapedPaths.iterator(); i.hasNext();)
+			args.append(' ').append(i.next());
+		try {
+			ProcessStreamBuffer buffer = getRemoteMachine(connection).getCommandChannel().execute("", "chmod " + args, null, monitor); //$NON-NLS-1$ //$NON-NLS-2$
+			if (buffer.getExitCode() == 0)
+				return;
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		Process p = remoteShellExec(connection, "", "chmod", args.toString(), monitor); //$NON-NLS-1$ //$NON-NLS-2$
+		p.waitFor();
+		getRemoteMachine(connection).getFileCache().invalidateAll();
+	}
+
 	public static void getRemoteFile(IHost connection, String localExePath, String remoteExePath,
 			IProgressMonitor monitor) throws Exception {
 
@@ -320,6 +431,12 @@ public class RemoteHelper {
 		return inputString.replaceAll(" ", "\\\\ "); //$NON-NLS-1$ //$NON-NLS-2$
 	}
 
+	/**
+	 * Launch a command in a new remote shell. The cached metadata of the
+	 * remote files is forgotten, as the command may modify any of them:
+	 * callers waiting for the command must invalidate the cache again once
+	 * it ended.
+	 */
 	public static Process remoteShellExec(IHost connection,
 			String prelaunchCmd, String remoteCommandPath, String arguments,
 			IProgressMonitor monitor) throws CoreException {
@@ -351,6 +468,7 @@ public class RemoteHelper {
 						"", env, SubMonitor.convert(monitor, 3)); //$NON-NLS-1$
 				hostShell.writeToShell(remoteCommand);
 				p = new HostShellProcessAdapter(hostShell);
+				getRemoteMachine(connection).getFileCache().invalidateAll();
 			} catch (Exception e) {
 				if (p != null) {
 					p.destroy();
@@ -498,8 +616,7 @@ public class RemoteHelper {
 	public static IHostFile[] getRemoteDirContent(IHost connection, String remoteParent, String fileFilter, int fileType, IProgressMonitor monitor){
 
 		try {
-			IFileService fileServ = getConnectedRemoteFileService(connection, monitor);
-			return fileServ.list(remoteParent, fileFilter, fileType, monitor);
+			return getRemoteMachine(connection).getFileCache().list(remoteParent, fileFilter, fileType, monitor);
 		} catch (SystemMessageException e) {
 			e.printStackTrace();
 		} catch (Exception e) {
@@ -527,7 +644,8 @@ public class RemoteHelper {
 		monitor.beginTask(NLS.bind(Messages.RemoteShellExec_1,
 				cmd, cmd.getArguments()), 10);
 
-		String remoteCommand = cmd.getCommand() + " " + cmd.getArguments() + " ; echo " + TERMINATOR + "; exit ;";
+		// the same command line as over the command channel, in a login shell
+		String remoteCommand = "bash -l -c " + RemoteCommandChannel.quote(cmd.getCommandLine()) + " ; echo " + TERMINATOR + "; exit ;";
 
 		IShellService shellService;
 		try {
@@ -547,15 +665,28 @@ public class RemoteHelper {
 		return null;
 	}
 
+	/**
+	 * Run a command over the command channel of the connection, reusing the
+	 * shells already open for the previous commands.
+	 *
+	 * @param connection
+	 * @param cmd
+	 * @param monitor
+	 * @return the output of the command, with its exit code
+	 * @throws Exception if the command could not be run by the channel
+	 */
+	public static ProcessStreamBuffer runCommandChannel(IHost connection, YoctoCommand cmd,
+			IProgressMonitor monitor) throws Exception {
+		RemoteMachine machine = getRemoteMachine(connection);
+		return machine.getCommandChannel().execute(cmd.getInitialDirectory(), cmd.getCommandLine(), machine.getCmdHandler(), monitor);
+	}
+
 	public static IHostFile getRemoteHostFile(IHost connection, String remoteFilePath, IProgressMonitor monitor){
 		assert(connection != null);
 		monitor.beginTask(Messages.InfoDownload, 100);
 
 		try {
-			IFileService fileService = getConnectedRemoteFileService(connection, SubMonitor.convert(monitor, 10));
-			Path remotePath = new Path(remoteFilePath);
-			IHostFile remoteFile = fileService.getFile(remotePath.removeLastSegments(1).toString(), remotePath.lastSegment(), SubMonitor.convert(monitor, 5));
-			return remoteFile;
+			return getRemoteMachine(connection).getFileCache().getFile(remoteFilePath, SubMonitor.convert(monitor, 15));
 		} catch (Exception e) {
 			e.printStackTrace();
 	    }finally {
@@ -592,11 +723,7 @@ public class RemoteHelper {
 
 	public static boolean fileExistsRemote(IHost conn, IProgressMonitor monitor, String path) {
 		try {
-			IFileService fs = getConnectedRemoteFileService(conn, monitor);
-			int nameStart = path.lastIndexOf("/");
-			String parentPath = path.substring(0, nameStart);
-			String name = path.substring(nameStart + 1);
-			IHostFile hostFile = fs.getFile(parentPath, name, monitor);
+			IHostFile hostFile = getRemoteMachine(conn).getFileCache().getFile(path, monitor);
 
 			return hostFile.exists();
 		} catch (Exception e) {
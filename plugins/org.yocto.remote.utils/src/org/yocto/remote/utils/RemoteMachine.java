@@ -42,6 +42,8 @@ public class RemoteMachine {
 
 	private ISubSystem fileSubSystem;
 	private IFileService fileService;
+	private RemoteCommandChannel commandChannel;
+	private RemoteFileCache fileCache;
 
 	public RemoteMachine(IHost connection) {
 		setConnection(connection);
@@ -80,10 +82,18 @@ public class RemoteMachine {
 			ProcessStreamBuffer buffer = null;
 			try {
 				SubMonitor subMonitor = SubMonitor.convert(monitor, 3);
-				IHostShell hostShell = shellService.runCommand("", "env" + " ; echo " + RemoteHelper.TERMINATOR + "; exit;", new String[]{}, subMonitor);
-				buffer = RemoteHelper.processOutput(subMonitor, hostShell, cmdHandler);
-				for(int i = 0; i < buffer.getOutputLines().size(); i++) {
-					String out = buffer.getOutputLines().get(i);
+				try {
+					buffer = getCommandChannel().execute("", "env", null, subMonitor);
+				} catch (OperationCanceledException e) {
+					throw e;
+				} catch (Exception e) {
+					e.printStackTrace();
+					IHostShell hostShell = shellService.runCommand("", "env" + " ; echo " + RemoteHelper.TERMINATOR + "; exit;", new String[]{}, subMonitor);
+					buffer = RemoteHelper.processOutput(subMonitor, hostShell, cmdHandler);
+				}
+				List<String> lines = buffer.getOutputLines();
+				for(int i = 0; i < lines.size(); i++) {
+					String out = lines.get(i);
 					String[] tokens = out.split("=");
 					if (tokens.length != 2)
 						continue;
@@ -120,6 +130,25 @@ public class RemoteMachine {
 		return cmdHandler;
 	}
 
+	/**
+	 * @return the channel running the commands of this machine over
+	 * long-lived shells.
+	 */
+	public synchronized RemoteCommandChannel getCommandChannel() {
+		if (commandChannel == null)
+			commandChannel = new RemoteCommandChannel(this);
+		return commandChannel;
+	}
+
+	/**
+	 * @return the cached metadata of the files of this machine.
+	 */
+	public synchronized RemoteFileCache getFileCache() {
+		if (fileCache == null)
+			fileCache = new RemoteFileCache(this);
+		return fileCache;
+	}
+
 	public IShellService getShellService(IProgressMonitor monitor) throws Exception {
 		if (shellService != null)
 			return shellService;
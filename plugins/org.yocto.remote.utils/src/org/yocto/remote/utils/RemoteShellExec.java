@@ -132,6 +132,8 @@ public class RemoteShellExec {
 				 }
 			 }finally {
 				 status=STATE_EXITED;
+				 // the command may have modified any remote file
+				 RemoteHelper.getRemoteMachine(host).getFileCache().invalidateAll();
 			 }
 		 }
 		 return exitCode;
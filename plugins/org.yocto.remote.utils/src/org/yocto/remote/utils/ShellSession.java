@@ -11,14 +11,15 @@
  *******************************************************************************/
 package org.yocto.remote.utils;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -39,7 +40,15 @@ public class ShellSession {
 	 */
 	public static final String TERMINATOR = "build$";
 	public static final String LT = System.getProperty("line.separator");
+	/**
+	 * Number of lines read ahead of the consumer before the readers block
+	 */
+	private static final int QUEUE_SIZE = 1024;
+	private static final StreamPump.Line INTERRUPTED = new StreamPump.Line("", false);
 	private Process process;
+	private BlockingQueue<StreamPump.Line> lines;
+	private StreamPump outPump;
+	private StreamPump errPump;
 
 	private OutputStream pos = null;
 
@@ -89,6 +98,9 @@ public class ShellSession {
 	private void initializeShell() throws IOException {
 		process = Runtime.getRuntime().exec(shellPath);
 		pos = process.getOutputStream();
+		lines = new ArrayBlockingQueue<StreamPump.Line>(QUEUE_SIZE);
+		outPump = new StreamPump(shellPath + " stdout", process.getInputStream(), lines, false);
+		errPump = new StreamPump(shellPath + " stderr", process.getErrorStream(), lines, true);
 
 		if (root != null) {
 			execute("cd " + root.getAbsolutePath());
@@ -101,46 +113,18 @@ public class ShellSession {
 
 	synchronized
 	public String execute(String command, int[] retCode) throws IOException {
-		String errorMessage = null;
-
 		interrupt = false;
 		out.write(command);
 		out.write(LT);
 
 		sendToProcessAndTerminate(command);
 
-		if (process.getErrorStream().available() > 0) {
-			byte[] msg = new byte[process.getErrorStream().available()];
-
-			process.getErrorStream().read(msg, 0, msg.length);
-			String msg_str = new String(msg);
-			out.write(msg_str);
-			out.write(LT);
-			if (!msg_str.contains("WARNING"))
-				errorMessage = "Error while executing: " + command + LT + new String(msg);
-		}
-
-		BufferedReader br = new BufferedReader(new InputStreamReader(process
-				.getInputStream()));
-
 		StringBuffer sb = new StringBuffer();
-		String line = null;
-
-		while (true) {
-			line = br.readLine();
-			if (line != null) {
-				sb.append(line);
-				sb.append(LT);
-				out.write(line);
-				out.write(LT);
-			}
-			if (line.endsWith(TERMINATOR))
-				break;
-		}
- 		if (interrupt) {
-			process.destroy();
-			initializeShell();
-			interrupt = false;
+		// the error lines are only written to the output
+		String line = readOutput(sb, null);
+
+		if (interrupt) {
+			restartShell();
 		}else if (line != null && retCode != null) {
 			try {
 				retCode[0]=Integer.parseInt(line.substring(0,line.lastIndexOf(TERMINATOR)));
@@ -149,74 +133,86 @@ public class ShellSession {
 			}
 		}
 		out.flush();
-		if (errorMessage != null) {
-			throw new IOException(errorMessage);
-		}
 		return sb.toString();
 	}
 
 	synchronized
 	public void execute(String command) throws IOException {
 		interrupt = false;
-		String errorMessage = null;
 
 		sendToProcessAndTerminate(command);
-		boolean cancel = false;
+
+		StringBuffer errors = new StringBuffer();
+		readOutput(null, errors);
+
+		out.flush();
+		if (interrupt) {
+			restartShell();
+		}
+		if (errors.length() > 0) {
+			throw new IOException(errors.toString());
+		}
+	}
+
+	/**
+	 * Wait for the lines of the running command until the terminator lines
+	 * of both streams, writing them to the output. The calling thread blocks
+	 * without polling while the command produces no output.
+	 *
+	 * @param sb receives the standard output lines, may be null
+	 * @param errors receives the error lines that are not warnings, may be
+	 * null
+	 * @return the terminator line of the standard output, or null if the
+	 * command was interrupted or the shell ended
+	 * @throws IOException
+	 */
+	private String readOutput(StringBuffer sb, StringBuffer errors) throws IOException {
+		String terminator = null;
+		boolean errEnd = false;
 		try {
-			InputStream is = process.getInputStream();
-			InputStream es = process.getErrorStream();
-			String info;
-			while (!cancel) {
-				info = null;
-				StringBuffer buffer = new StringBuffer();
-				int c;
-				while (is.available() > 0) {
-					c = is.read();
-					char ch = (char) c;
-					buffer.append(ch);
-					if (ch == '\n') {
-						info = buffer.toString();
-						if (!info.trim().endsWith(TERMINATOR)) {
-							out.write(info);
-							out.write(LT);
-							buffer.delete(0, buffer.length());
-						} else {
-							cancel = true;
-							break;
+			while (!interrupt) {
+				StreamPump.Line line = lines.take();
+				if (line == INTERRUPTED) {
+					continue;
+				}
+				if (line.isEnd()) {
+					return null;
+				}
+				if (line.isError && line.text.trim().equals(TERMINATOR)) {
+					errEnd = true;
+				} else if (!line.isError && line.text.trim().endsWith(TERMINATOR)) {
+					terminator = line.text;
+				} else {
+					out.write(line.text);
+					out.write(LT);
+					if (line.isError) {
+						if (errors != null && !line.text.contains("WARNING")) {
+							errors.append(line.text).append(LT);
 						}
+					} else if (sb != null) {
+						sb.append(line.text);
+						sb.append(LT);
 					}
 				}
-				while (es.available() > 0) {
-					c = es.read();
-					char ch = (char) c;
-					buffer.append(ch);
-					if (ch == '\n') {
-						info = buffer.toString();
-						if (!info.contains("WARNING"))
-							errorMessage += info;
-						out.write(info);
-						out.write(LT);
-						buffer.delete(0, buffer.length());
-					}
+				if (terminator != null && errEnd) {
+					return terminator;
 				}
 			}
-		} catch (IOException e) {
-			try {
-				throw new InvocationTargetException(e);
-			} catch (InvocationTargetException e1) {
-				e1.printStackTrace();
-			}
-		}
-		out.flush();
-		if (errorMessage != null) {
-			throw new IOException(errorMessage);
-		}
-		if (interrupt) {
-			process.destroy();
-			initializeShell();
-			interrupt = false;
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the shell output");
 		}
 	}
+
+	private void restartShell() throws IOException {
+		outPump.close();
+		errPump.close();
+		process.destroy();
+		initializeShell();
+		interrupt = false;
+	}
+
 	synchronized
 	public boolean ensureKnownHostKey(String user, String host) throws IOException {
 
@@ -307,8 +303,9 @@ public class ShellSession {
 	}
 
 	/**
-	 * Send command string to shell process and add special terminator string so
-	 * reader knows when output is complete.
+	 * Send command string to shell process and add special terminator string,
+	 * on both the standard and the error output, so reader knows when output
+	 * is complete.
 	 *
 	 * @param command
 	 * @throws IOException
@@ -320,6 +317,10 @@ public class ShellSession {
 		pos.write("echo $?".getBytes());
 		pos.write(TERMINATOR.getBytes());
 		pos.write(LT.getBytes());
+		pos.write("echo ".getBytes());
+		pos.write(TERMINATOR.getBytes());
+		pos.write(" >&2".getBytes());
+		pos.write(LT.getBytes());
 		pos.flush();
 	}
 
@@ -328,5 +329,7 @@ public class ShellSession {
 	 */
 	public void interrupt() {
 		interrupt = true;
+		// wake up a command waiting for output
+		lines.offer(INTERRUPTED);
 	}
 }
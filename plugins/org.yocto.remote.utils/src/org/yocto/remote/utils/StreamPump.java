@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Intel Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Intel - initial API and implementation
+ *******************************************************************************/
+package org.yocto.remote.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a process stream on a dedicated thread, blocking on the stream
+ * instead of polling it. Bytes are read and decoded in bulk with reusable
+ * buffers, and complete lines are delivered to a bounded queue shared with
+ * the other stream of the process, which keeps both streams interleaved in
+ * arrival order and makes the reader wait when the consumer falls behind.
+ */
+public class StreamPump implements Runnable {
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * A line read from a stream. The end of a stream is reported with a
+	 * null text.
+	 */
+	public static class Line {
+		public final String text;
+		public final boolean isError;
+
+		public Line(String text, boolean isError) {
+			this.text = text;
+			this.isError = isError;
+		}
+
+		public boolean isEnd() {
+			return text == null;
+		}
+	}
+
+	private final InputStream in;
+	private final BlockingQueue<Line> queue;
+	private final boolean isError;
+	private final Thread thread;
+	private volatile boolean closed = false;
+
+	/**
+	 * Start pumping a stream.
+	 *
+	 * @param name name of the reader thread
+	 * @param in the stream to read
+	 * @param queue receives the lines
+	 * @param isError true if this is the error stream of the process
+	 */
+	public StreamPump(String name, InputStream in, BlockingQueue<Line> queue, boolean isError) {
+		this.in = in;
+		this.queue = queue;
+		this.isError = isError;
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void run() {
+		CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		byte[] bytes = new byte[BUFFER_SIZE];
+		ByteBuffer bb = ByteBuffer.wrap(bytes);
+		CharBuffer cb = CharBuffer.allocate(BUFFER_SIZE);
+		StringBuilder line = new StringBuilder(256);
+
+		try {
+			int n;
+			while (!closed && (n = in.read(bytes, bb.position(), bytes.length - bb.position())) >= 0) {
+				bb.position(bb.position() + n);
+				bb.flip();
+				decoder.decode(bb, cb, false);
+				// keep the bytes of an incomplete character for the next read
+				bb.compact();
+				cb.flip();
+				scan(cb, line);
+				cb.clear();
+			}
+			if (line.length() > 0) {
+				queue.put(new Line(line.toString(), isError));
+			}
+			queue.put(new Line(null, isError));
+		} catch (IOException e) {
+			// the process was destroyed
+			if (!closed) {
+				try {
+					queue.put(new Line(null, isError));
+				} catch (InterruptedException ie) {
+					// closed while waiting for the consumer
+				}
+			}
+		} catch (InterruptedException e) {
+			// closed while waiting for the consumer
+		}
+	}
+
+	/**
+	 * Deliver the complete lines of the decoded characters, keeping the
+	 * remainder in the line buffer.
+	 */
+	private void scan(CharBuffer cb, StringBuilder line) throws InterruptedException {
+		char[] chars = cb.array();
+		int start = cb.position();
+		int end = cb.limit();
+		for (int i = start; i < end; i++) {
+			if (chars[i] == '\n') {
+				line.append(chars, start, i - start);
+				int len = line.length();
+				if (len > 0 && line.charAt(len - 1) == '\r') {
+					line.setLength(len - 1);
+				}
+				queue.put(new Line(line.toString(), isError));
+				line.setLength(0);
+				start = i + 1;
+			}
+		}
+		line.append(chars, start, end - start);
+	}
+
+	/**
+	 * Stop delivering lines. The reader thread ends once the stream is
+	 * closed, typically by destroying the process.
+	 */
+	public void close() {
+		closed = true;
+		thread.interrupt();
+	}
+}
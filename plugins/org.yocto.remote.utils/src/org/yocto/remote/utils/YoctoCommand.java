@@ -13,6 +13,7 @@ package org.yocto.remote.utils;
 
 public class YoctoCommand {
 	private String command;
+	private String shellCommand;
 	private String initialDirectory;
 	private String arguments;
 	private ProcessStreamBuffer processBuffer;
@@ -29,9 +30,28 @@ public class YoctoCommand {
 	}
 
 	public void setCommand(String command) {
+		this.shellCommand = command;
 		this.command = "bash -l -c \"" + command + "\"";
 	}
 
+	/**
+	 * @return the command as given, for a shell that already runs bash
+	 * with the login environment.
+	 */
+	public String getShellCommand() {
+		return shellCommand;
+	}
+
+	/**
+	 * @return the command as given followed by its arguments, for a shell
+	 * that already runs bash with the login environment.
+	 */
+	public String getCommandLine() {
+		if (arguments == null || arguments.length() == 0)
+			return shellCommand;
+		return shellCommand + " " + arguments;
+	}
+
 	public String getInitialDirectory() {
 		return initialDirectory;
 	}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Intel Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Intel Corporation - initial API and implementation
+ *******************************************************************************/
+package org.yocto.sdk.core;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ProjectScope;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
+import org.eclipse.core.runtime.preferences.IScopeContext;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.yocto.sdk.core.preference.YoctoProjectProfilePreferences;
+import org.yocto.sdk.core.preference.YoctoProjectProjectPreferences;
+
+/**
+ * The environment variables of the projects, as extracted from the
+ * environment setup script of their profile.
+ *
+ * The variables of a project are kept until the preferences of the project or
+ * of its profile change, or the toolchain directory or the environment setup
+ * script are modified, so that looking up a variable does not read the
+ * preferences nor parse the script again. The variables of a project that is
+ * deleted, renamed, closed or opened are dropped.
+ *
+ * @author Intel Corporation
+ *
+ */
+class YoctoProjectEnvironmentCache {
+
+	private static final YoctoProjectEnvironmentCache INSTANCE = new YoctoProjectEnvironmentCache();
+
+	/**
+	 * The environment variables of a project, and what they were read from.
+	 */
+	private static class Snapshot {
+		final Map<String, String> variables;
+		final File toolchainDir;
+		final long toolchainDirModified;
+		final File script;
+		final long scriptModified;
+		final long scriptLength;
+
+		Snapshot(Map<String, String> variables, File toolchainDir, File script) {
+			this.variables = variables;
+			this.toolchainDir = toolchainDir;
+			this.toolchainDirModified = (toolchainDir != null) ? toolchainDir.lastModified() : 0;
+			this.script = script;
+			this.scriptModified = (script != null) ? script.lastModified() : 0;
+			this.scriptLength = (script != null) ? script.length() : 0;
+		}
+
+		boolean isUpToDate() {
+			// a script added to or removed from the toolchain directory
+			// changes the directory
+			if (toolchainDir != null && toolchainDir.lastModified() != toolchainDirModified)
+				return false;
+			return script == null || (script.lastModified() == scriptModified && script.length() == scriptLength);
+		}
+	}
+
+	private final Map<IProject, Snapshot> snapshots = new ConcurrentHashMap<IProject, Snapshot>();
+
+	// the preference nodes the cache listens to. A node that is removed and
+	// created again, with its project, is a new instance to listen to
+	private final Set<IEclipsePreferences> listened = Collections
+			.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<IEclipsePreferences, Boolean>()));
+
+	// incremented when the preferences change, so that snapshots loaded
+	// meanwhile are not kept
+	private final AtomicInteger generation = new AtomicInteger();
+
+	private final IPreferenceChangeListener listener = event -> {
+		generation.incrementAndGet();
+		snapshots.clear();
+	};
+
+	private final IResourceChangeListener resourceListener = event -> {
+		IResourceDelta delta = event.getDelta();
+		if (delta == null)
+			return;
+		for (IResourceDelta child : delta.getAffectedChildren(IResourceDelta.REMOVED | IResourceDelta.CHANGED)) {
+			if (child.getKind() == IResourceDelta.REMOVED || (child.getFlags() & IResourceDelta.OPEN) != 0) {
+				generation.incrementAndGet();
+				snapshots.remove(child.getResource());
+			}
+		}
+	};
+
+	private YoctoProjectEnvironmentCache() {
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(resourceListener, IResourceChangeEvent.POST_CHANGE);
+	}
+
+	static YoctoProjectEnvironmentCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @param project
+	 * @return the environment variables of the project, which must not be
+	 *         modified
+	 */
+	Map<String, String> getEnvironmentVariables(IProject project) {
+		Snapshot snapshot = snapshots.get(project);
+		if (snapshot == null || !snapshot.isUpToDate()) {
+			int loaded = generation.get();
+			snapshot = load(project);
+			if (generation.get() == loaded)
+				snapshots.put(project, snapshot);
+		}
+		return snapshot.variables;
+	}
+
+	private Snapshot load(IProject project) {
+		listen(new ProjectScope(project), YoctoProjectProjectPreferences.getPreferenceQualifier(project));
+
+		YoctoProjectProjectPreferences projectPreferences = YoctoProjectProjectPreferences.getProjectPreferences(project);
+		YoctoProjectProfilePreferences profilePreferences = projectPreferences.getProfilePreferences();
+
+		// Don't load environment variables unless the profile preferences are valid
+		if (profilePreferences == null)
+			return new Snapshot(Collections.<String, String>emptyMap(), null, null);
+
+		if (profilePreferences.getProfile() != null)
+			listen(InstanceScope.INSTANCE,
+					YoctoProjectProfilePreferences.getPreferenceQualifier(profilePreferences.getProfile()));
+
+		// TODO: Do not load variables if we're building within containers?
+		if (profilePreferences.isUseContainer())
+			return new Snapshot(Collections.<String, String>emptyMap(), null, null);
+
+		File toolchainDir = profilePreferences.getToolchainDirectory();
+		File script = YoctoProjectEnvironmentSetupScript.getEnvironmentSetupScript(toolchainDir);
+		if (script == null)
+			return new Snapshot(Collections.<String, String>emptyMap(), toolchainDir, null);
+
+		// shared with the other projects using the script
+		Map<String, String> variables = new YoctoProjectEnvironmentSetupScript(script).getEnvironmentVariables();
+		return new Snapshot(variables, toolchainDir, script);
+	}
+
+	private void listen(IScopeContext scope, String qualifier) {
+		IEclipsePreferences node = scope.getNode(qualifier);
+		if (listened.add(node))
+			node.addPreferenceChangeListener(listener);
+	}
+}
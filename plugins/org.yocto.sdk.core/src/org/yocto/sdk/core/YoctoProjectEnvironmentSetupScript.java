@@ -1,11 +1,11 @@
 package org.yocto.sdk.core;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.regex.Matcher;
+import java.util.Collections;
+import java.util.Map;
+
+import org.yocto.sdk.core.script.YoctoProjectEnvironmentScriptParser;
 
 public class YoctoProjectEnvironmentSetupScript {
 
@@ -42,7 +42,7 @@ public class YoctoProjectEnvironmentSetupScript {
 		return new YoctoProjectEnvironmentSetupScript(envSetupScript);
 	}
 
-	HashMap<String, String> envMap = new HashMap<String, String>();
+	Map<String, String> envMap = Collections.emptyMap();
 
 	String targetPrefix;
 
@@ -61,57 +61,19 @@ public class YoctoProjectEnvironmentSetupScript {
 
 	/**
 	 *
-	 * @return environment variables extracted from environment setup script
+	 * @return environment variables extracted from environment setup script,
+	 *         which cannot be modified
 	 */
-	public HashMap<String, String> getEnvironmentVariables() {
+	public Map<String, String> getEnvironmentVariables() {
 		return this.envMap;
 	}
 
-	@SuppressWarnings("nls")
 	void loadEnvironmentVariables(File environmentSetupScript) {
-
 		try {
-
-			BufferedReader input = new BufferedReader(new FileReader(environmentSetupScript));
-
-			try {
-				String line = null;
-
-				while ((line = input.readLine()) != null) {
-					if (!line.startsWith("export")) {
-						continue;
-					}
-					String sKey = line.substring("export".length() + 1, line.indexOf('='));
-					String sValue = line.substring(line.indexOf('=') + 1);
-					if (sValue.startsWith("\"") && sValue.endsWith("\""))
-						sValue = sValue.substring(sValue.indexOf('"') + 1, sValue.lastIndexOf('"'));
-					/* If PATH ending with $PATH, we need to join with current system path */
-					if (sKey.equalsIgnoreCase("PATH") && (sValue.lastIndexOf("$PATH") >= 0)) {
-						if (this.envMap.containsKey(sKey)) {
-							sValue = sValue.substring(0, sValue.lastIndexOf("$PATH")) + this.envMap.get(sKey);
-						} else {
-							sValue = sValue.substring(0, sValue.lastIndexOf("$PATH")) + System.getenv("PATH");
-						}
-					}
-
-					if (sValue.toUpperCase().contains("$SDKTARGETSYSROOT")) {
-						String rValue = sValue.replaceAll(Matcher.quoteReplacement("$SDKTARGETSYSROOT"),
-								this.envMap.get("SDKTARGETSYSROOT"));
-						this.envMap.put(sKey, rValue);
-					} else {
-						this.envMap.put(sKey, sValue);
-					}
-
-					// System.out.printf("get env key %s value %s\n", sKey, sValue);
-				}
-			} finally {
-				input.close();
-			}
-
+			this.envMap = YoctoProjectEnvironmentScriptParser.parse(environmentSetupScript);
 		} catch (IOException e) {
 			throw new RuntimeException(
-					"Unable to parse environment setup script: " + environmentSetupScript.getAbsolutePath(), e);
+					"Unable to parse environment setup script: " + environmentSetupScript.getAbsolutePath(), e); //$NON-NLS-1$
 		}
-
 	}
 }
@@ -11,7 +11,6 @@
 package org.yocto.sdk.core;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -21,8 +20,6 @@ import org.eclipse.cdt.managedbuilder.envvar.IBuildEnvironmentVariable;
 import org.eclipse.cdt.managedbuilder.envvar.IConfigurationEnvironmentVariableSupplier;
 import org.eclipse.cdt.managedbuilder.envvar.IEnvironmentVariableProvider;
 import org.eclipse.core.resources.IProject;
-import org.yocto.sdk.core.preference.YoctoProjectProfilePreferences;
-import org.yocto.sdk.core.preference.YoctoProjectProjectPreferences;
 
 /**
  *
@@ -44,11 +41,11 @@ public class YoctoProjectEnvironmentVariableSupplier implements IConfigurationEn
 	@Override
 	public IBuildEnvironmentVariable getVariable(String variableName, IConfiguration configuration,
 			IEnvironmentVariableProvider provider) {
-		for (IBuildEnvironmentVariable variable : getVariables(configuration, provider)) {
-			if (variableName.equals(variable.getName()))
-				return variable;
-		}
-		return null;
+		IProject project = (IProject) configuration.getOwner();
+		String value = YoctoProjectEnvironmentCache.getInstance().getEnvironmentVariables(project).get(variableName);
+		if (value == null)
+			return null;
+		return new BuildEnvironmentVariable(variableName, value);
 	}
 
 	@Override
@@ -58,27 +55,10 @@ public class YoctoProjectEnvironmentVariableSupplier implements IConfigurationEn
 		List<BuildEnvironmentVariable> variables = new ArrayList<BuildEnvironmentVariable>();
 
 		IProject project = (IProject) configuration.getOwner();
-		YoctoProjectProjectPreferences projectPreferences = YoctoProjectProjectPreferences.getProjectPreferences(project);
-		YoctoProjectProfilePreferences profilePreferences = projectPreferences.getProfilePreferences();
-
-		// Don't load environment variables unless the profile preferences are valid
-		if (profilePreferences != null) {
-			Map<String, String> envVars = new HashMap<String, String>();
-
-			if (profilePreferences.isUseContainer()) {
-				// TODO: Do not load variables if we're building within containers?
-			} else {
-
-				YoctoProjectEnvironmentSetupScript envSetupScript = profilePreferences.getEnvironmentSetupScript();
-
-				if (envSetupScript != null) {
-					envVars = envSetupScript.getEnvironmentVariables();
-				}
-			}
+		Map<String, String> envVars = YoctoProjectEnvironmentCache.getInstance().getEnvironmentVariables(project);
 
-			for (String envVarName : envVars.keySet()) {
-				variables.add(new BuildEnvironmentVariable(envVarName, envVars.get(envVarName)));
-			}
+		for (Map.Entry<String, String> envVar : envVars.entrySet()) {
+			variables.add(new BuildEnvironmentVariable(envVar.getKey(), envVar.getValue()));
 		}
 
 		return variables.toArray(new IBuildEnvironmentVariable[] {});
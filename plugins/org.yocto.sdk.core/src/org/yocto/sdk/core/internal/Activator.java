@@ -44,6 +44,7 @@ public class Activator implements BundleActivator {
 	 */
 	@Override
 	public void stop(BundleContext bundleContext) throws Exception {
+		YoctoProjectWorkspacePreferences.cancelWorkspaceProfileDetection();
 		Activator.context = null;
 	}
 
@@ -0,0 +1,326 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Intel Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Intel Corporation - initial API and implementation
+ *******************************************************************************/
+package org.yocto.sdk.core.preference;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.yocto.sdk.core.YoctoProjectEnvironmentSetupScript;
+import org.yocto.sdk.core.YoctoProjectQemubootConf;
+import org.yocto.sdk.core.internal.Activator;
+
+/**
+ * Background detection of the SDKs installed in <code>/opt</code> and of the
+ * build directories of the poky repositories in <code>~/git</code>.
+ *
+ * The directory trees are walked in parallel, and a walk does not descend
+ * into a directory once it found what it looks for there, such as an
+ * environment setup script. The content of the walked directories is saved
+ * to an index in the state location of the plug-in, with their modification
+ * time, so that the next detection only lists the directories modified
+ * since.
+ *
+ * @author Intel Corporation
+ *
+ */
+class YoctoProjectProfileDetectionJob extends Job {
+
+	private static final String INDEX_NAME = "profileDetection.index"; //$NON-NLS-1$
+
+	private static final String OE_INIT_BUILD_ENV = "oe-init-build-env"; //$NON-NLS-1$
+
+	private static final String DEPLOY_IMAGES = "deploy" + File.separator + "images"; //$NON-NLS-1$ //$NON-NLS-2$
+
+	private static final char SEPARATOR = '/';
+
+	// depths of the files looked for, from the directory walked
+	private static final int SDK_DEPTH = 4;
+	private static final int POKY_DEPTH = 2;
+	private static final int BUILD_DIR_DEPTH = 3;
+	private static final int QEMUBOOT_CONF_DEPTH = 2;
+
+	/**
+	 * The files looked for and the subdirectories of a directory.
+	 */
+	private static class Listing {
+		final long modified;
+		final List<String> files;
+		final List<String> dirs;
+
+		Listing(long modified, List<String> files, List<String> dirs) {
+			this.modified = modified;
+			this.files = files;
+			this.dirs = dirs;
+		}
+	}
+
+	/**
+	 * Walk of a directory tree, up to the directories containing a file
+	 * looked for.
+	 */
+	private class Walk extends RecursiveTask<List<File>> {
+		private static final long serialVersionUID = 1L;
+
+		private final File dir;
+		private final int depth;
+		private final Predicate<String> marker;
+
+		Walk(File dir, int depth, Predicate<String> marker) {
+			this.dir = dir;
+			this.depth = depth;
+			this.marker = marker;
+		}
+
+		@Override
+		protected List<File> compute() {
+			if (monitor.isCanceled())
+				throw new OperationCanceledException();
+
+			Listing listing = list(dir);
+			if (listing == null)
+				return Collections.emptyList();
+
+			for (String file : listing.files) {
+				if (marker.test(file))
+					return Collections.singletonList(dir);
+			}
+
+			if (depth <= 1)
+				return Collections.emptyList();
+
+			List<Walk> walks = new ArrayList<Walk>();
+			for (String name : listing.dirs) {
+				// hidden directories, such as .git, are not worth walking
+				if (!name.startsWith(".")) //$NON-NLS-1$
+					walks.add(new Walk(new File(dir, name), depth - 1, marker));
+			}
+			List<File> found = new ArrayList<File>();
+			for (Walk walk : invokeAll(walks))
+				found.addAll(walk.join());
+			return found;
+		}
+	}
+
+	private final File indexFile;
+
+	private final Map<String, Listing> index = new HashMap<String, Listing>();
+
+	private final Map<String, Listing> visited = new ConcurrentHashMap<String, Listing>();
+
+	private IProgressMonitor monitor;
+
+	YoctoProjectProfileDetectionJob() {
+		super("Detecting Yocto Project profiles"); //$NON-NLS-1$
+		setPriority(Job.DECORATE);
+		indexFile = Platform.getStateLocation(Platform.getBundle(Activator.PLUGIN_ID)).append(INDEX_NAME).toFile();
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		this.monitor = monitor;
+		index.clear();
+		visited.clear();
+		loadIndex();
+
+		List<File> sdkDirs;
+		List<File> buildDirs = new ArrayList<File>();
+		Map<File, List<File>> deployImageDirs = new HashMap<File, List<File>>();
+
+		ForkJoinPool pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+		try {
+			ForkJoinTask<List<File>> sdks = pool.submit(new Walk(new File("/opt"), SDK_DEPTH, //$NON-NLS-1$
+					name -> name.startsWith(YoctoProjectEnvironmentSetupScript.ENVIRONMENT_SETUP_SCRIPT_PREFIX)));
+			ForkJoinTask<List<File>> pokyDirs = pool.submit(new Walk(
+					new File(System.getProperty("user.home"), "git"), POKY_DEPTH, //$NON-NLS-1$ //$NON-NLS-2$
+					name -> name.equals(OE_INIT_BUILD_ENV)));
+
+			// look 3 levels down from the poky repositories for anything that
+			// looks like build/tmp/environment-setup-*
+			List<ForkJoinTask<List<File>>> builds = new ArrayList<ForkJoinTask<List<File>>>();
+			for (File pokyDir : pokyDirs.join()) {
+				builds.add(pool.submit(new Walk(pokyDir, BUILD_DIR_DEPTH,
+						name -> name.startsWith(YoctoProjectEnvironmentSetupScript.ENVIRONMENT_SETUP_SCRIPT_PREFIX))));
+			}
+			for (ForkJoinTask<List<File>> build : builds)
+				buildDirs.addAll(build.join());
+
+			List<ForkJoinTask<List<File>>> images = new ArrayList<ForkJoinTask<List<File>>>();
+			for (File buildDir : buildDirs) {
+				images.add(pool.submit(new Walk(new File(buildDir, DEPLOY_IMAGES), QEMUBOOT_CONF_DEPTH,
+						name -> name.endsWith(YoctoProjectQemubootConf.QEMUBOOT_CONF_SUFFIX))));
+			}
+			for (int i = 0; i < images.size(); i++)
+				deployImageDirs.put(buildDirs.get(i), images.get(i).join());
+
+			sdkDirs = sdks.join();
+		} catch (OperationCanceledException e) {
+			return Status.CANCEL_STATUS;
+		} finally {
+			pool.shutdownNow();
+		}
+
+		saveIndex();
+
+		List<String> detectedProfiles = new ArrayList<String>();
+		for (File sdkDir : sdkDirs) {
+			if (monitor.isCanceled())
+				return Status.CANCEL_STATUS;
+			String profileName = YoctoProjectWorkspacePreferences.createSdkProfile(sdkDir);
+			if (profileName != null)
+				detectedProfiles.add(profileName);
+		}
+		for (File buildDir : buildDirs) {
+			if (monitor.isCanceled())
+				return Status.CANCEL_STATUS;
+			String profileName = YoctoProjectWorkspacePreferences.createBuildDirProfile(buildDir,
+					deployImageDirs.get(buildDir));
+			if (profileName != null)
+				detectedProfiles.add(profileName);
+		}
+
+		try {
+			YoctoProjectWorkspacePreferences.addWorkspaceProfiles(detectedProfiles);
+		} catch (IOException e) {
+			return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Problem detecting workspace profiles", e); //$NON-NLS-1$
+		}
+		return Status.OK_STATUS;
+	}
+
+	/**
+	 * @param dir
+	 * @return the content of the directory, from the index if it was not
+	 *         modified since, or null if it cannot be read
+	 */
+	private Listing list(File dir) {
+		String path = dir.getPath();
+		Path dirPath = dir.toPath();
+		try {
+			long modified = Files.getLastModifiedTime(dirPath).toMillis();
+			Listing listing = index.get(path);
+			if (listing == null || listing.modified != modified) {
+				List<String> files = new ArrayList<String>();
+				List<String> dirs = new ArrayList<String>();
+				try (DirectoryStream<Path> stream = Files.newDirectoryStream(dirPath)) {
+					for (Path child : stream) {
+						String name = child.getFileName().toString();
+						BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class,
+								LinkOption.NOFOLLOW_LINKS);
+						if (attrs.isDirectory())
+							dirs.add(name);
+						else if (attrs.isRegularFile() && isLookedFor(name))
+							files.add(name);
+					}
+				}
+				listing = new Listing(modified, files, dirs);
+			}
+			visited.put(path, listing);
+			return listing;
+		} catch (IOException e) {
+			// missing or not readable: ignore
+			return null;
+		}
+	}
+
+	private static boolean isLookedFor(String name) {
+		return name.startsWith(YoctoProjectEnvironmentSetupScript.ENVIRONMENT_SETUP_SCRIPT_PREFIX)
+				|| name.equals(OE_INIT_BUILD_ENV) || name.endsWith(YoctoProjectQemubootConf.QEMUBOOT_CONF_SUFFIX);
+	}
+
+	private void loadIndex() {
+		if (!indexFile.exists())
+			return;
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1); //$NON-NLS-1$
+				if (fields.length != 4)
+					continue;
+				try {
+					index.put(fields[0],
+							new Listing(Long.parseLong(fields[1]), names(fields[2]), names(fields[3])));
+				} catch (NumberFormatException e) {
+					// skip the entry
+				}
+			}
+		} catch (IOException e) {
+			// the index is only an optimization
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Rewrite the index with only the directories walked this time.
+	 */
+	private void saveIndex() {
+		File tmp = new File(indexFile.getPath() + ".tmp"); //$NON-NLS-1$
+		try (Writer writer = new BufferedWriter(
+				new OutputStreamWriter(Files.newOutputStream(tmp.toPath()), StandardCharsets.UTF_8))) {
+			for (Map.Entry<String, Listing> entry : visited.entrySet()) {
+				Listing listing = entry.getValue();
+				writer.write(entry.getKey());
+				writer.write('\t');
+				writer.write(Long.toString(listing.modified));
+				writer.write('\t');
+				writer.write(String.join(String.valueOf(SEPARATOR), listing.files));
+				writer.write('\t');
+				writer.write(String.join(String.valueOf(SEPARATOR), listing.dirs));
+				writer.write('\n');
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		try {
+			Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static List<String> names(String field) {
+		if (field.isEmpty())
+			return Collections.emptyList();
+		// file names cannot contain the separator
+		return Arrays.asList(field.split(String.valueOf(SEPARATOR)));
+	}
+}
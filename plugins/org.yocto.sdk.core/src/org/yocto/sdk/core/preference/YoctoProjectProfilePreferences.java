@@ -82,6 +82,16 @@ public class YoctoProjectProfilePreferences {
 		store.setValue(RUNQEMU_ARGUMENTS, ""); //$NON-NLS-1$
 	}
 
+	/**
+	 * Return the qualifier of the preference node of the given profile name
+	 *
+	 * @param profile
+	 * @return
+	 */
+	public static String getPreferenceQualifier(String profile) {
+		return Activator.PLUGIN_ID + "." + profile.hashCode(); //$NON-NLS-1$
+	}
+
 	/**
 	 * Return the matching preference store for the given profile name
 	 *
@@ -91,8 +101,8 @@ public class YoctoProjectProfilePreferences {
 	public static IPersistentPreferenceStore getPreferenceStore(String profile) {
 
 		if (profile != null && profile.length() > 0) {
-			String qualifier = Activator.PLUGIN_ID + "." + profile.hashCode(); //$NON-NLS-1$
-			IPersistentPreferenceStore store = new ScopedPreferenceStore(InstanceScope.INSTANCE, qualifier);
+			IPersistentPreferenceStore store = new ScopedPreferenceStore(InstanceScope.INSTANCE,
+					getPreferenceQualifier(profile));
 			initializeDefaults(store);
 			return store;
 		}
@@ -171,6 +181,20 @@ public class YoctoProjectProfilePreferences {
 		return getPreferenceStore().getString(RUNQEMU_ARGUMENTS);
 	}
 
+	/**
+	 * Get the directory of the environment setup script based on choice of
+	 * toolchain
+	 *
+	 * @return toolchain directory
+	 */
+	public File getToolchainDirectory() {
+		if (TOOLCHAIN_SDK_INSTALLATION.equals(getToolchain())) {
+			return new File(getSdkInstallation());
+		} else {
+			return new File(getBuildDirectory());
+		}
+	}
+
 	/**
 	 * Get environment setup script based on choice of toolchain
 	 *
@@ -179,15 +203,7 @@ public class YoctoProjectProfilePreferences {
 	public YoctoProjectEnvironmentSetupScript getEnvironmentSetupScript() {
 
 		if (envSetupScript == null) {
-			File toolchainDir;
-
-			if (TOOLCHAIN_SDK_INSTALLATION.equals(getToolchain())) {
-				toolchainDir = new File(getSdkInstallation());
-			} else {
-				toolchainDir = new File(getBuildDirectory());
-			}
-
-			envSetupScript = YoctoProjectEnvironmentSetupScript.create(toolchainDir);
+			envSetupScript = YoctoProjectEnvironmentSetupScript.create(getToolchainDirectory());
 		}
 		return envSetupScript;
 	}
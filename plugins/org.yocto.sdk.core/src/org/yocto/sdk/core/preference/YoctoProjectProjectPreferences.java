@@ -79,11 +79,21 @@ public class YoctoProjectProjectPreferences {
 		return projectPreference;
 	}
 
+	/**
+	 * Return the qualifier of the preference node of the given project
+	 *
+	 * @param project
+	 * @return
+	 */
+	public static String getPreferenceQualifier(IProject project) {
+		return Activator.PLUGIN_ID + "." + project.getName(); //$NON-NLS-1$
+	}
+
 	YoctoProjectProjectPreferences(IProject project) {
 
 		if (project != null) {
-			String qualifier = Activator.PLUGIN_ID + "." + project.getName(); //$NON-NLS-1$
-			this.projectPreferenceStore = new ScopedPreferenceStore(new ProjectScope(project), qualifier);
+			this.projectPreferenceStore = new ScopedPreferenceStore(new ProjectScope(project),
+					getPreferenceQualifier(project));
 		}
 	}
 
@@ -12,19 +12,15 @@ package org.yocto.sdk.core.preference;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.jface.preference.IPersistentPreferenceStore;
 import org.eclipse.ui.preferences.ScopedPreferenceStore;
@@ -52,7 +48,7 @@ public class YoctoProjectWorkspacePreferences {
 
 	public static final boolean OS_LINUX = OS.indexOf("nux") >= 0; //$NON-NLS-1$
 
-	static boolean detectedWorkspaceProfiles = false;
+	static Job detection;
 
 	public YoctoProjectWorkspacePreferences create() {
 		return new YoctoProjectWorkspacePreferences();
@@ -75,10 +71,14 @@ public class YoctoProjectWorkspacePreferences {
 		return profiles.split(PROFILE_SEPARATOR);
 	}
 
-	public static void detectWorkspaceProfiles() {
+	/**
+	 * Detect the SDKs and build directories in the background, once per
+	 * session, and add their profiles to the workspace profiles.
+	 */
+	public static synchronized void detectWorkspaceProfiles() {
 
 		// Only auto-detect once
-		if (!detectedWorkspaceProfiles) {
+		if (detection == null) {
 
 			// Only auto-detect when there are no profiles defined
 
@@ -90,185 +90,124 @@ public class YoctoProjectWorkspacePreferences {
 			// configured profiles
 
 			if (true || OS_LINUX) {
-
-				List<String> detectedProfiles = new ArrayList<String>();
-
-				detectedProfiles.addAll(detectWorkspaceSdkProfiles());
-				detectedProfiles.addAll(detectWorkspaceBuildDirProfiles());
-
-				Set<String> allProfiles = new LinkedHashSet<String>(Arrays.asList(getWorkspaceProfiles()));
-				allProfiles.addAll(detectedProfiles);
-				setWorkspaceProfiles(allProfiles.toArray(new String[] {}));
-
-				try {
-					getWorkspacePreferenceStore().save();
-				} catch (IOException e) {
-					throw new RuntimeException("Problem detecting workspace profiles", e);
-				}
-
+				detection = new YoctoProjectProfileDetectionJob();
+				detection.schedule();
 			}
-
-			detectedWorkspaceProfiles = true;
 		}
 	}
 
-	static List<String> detectWorkspaceSdkProfiles() {
-
-		ArrayList<String> profileNames = new ArrayList<String>();
-
-		try {
-			List<Path> environmentSetupScriptPaths = Files.find(Paths.get("/opt"), 4, //$NON-NLS-1$
-					(filePath,
-							fileAttr) -> (fileAttr.isRegularFile() && filePath.getFileName().toString()
-									.startsWith(YoctoProjectEnvironmentSetupScript.ENVIRONMENT_SETUP_SCRIPT_PREFIX)))
-					.collect(Collectors.toList());
+	/**
+	 * Cancel the detection of the workspace profiles, if running.
+	 */
+	public static synchronized void cancelWorkspaceProfileDetection() {
+		if (detection != null)
+			detection.cancel();
+	}
 
-			for (Path environmentSetupScriptPath : environmentSetupScriptPaths) {
+	static synchronized void addWorkspaceProfiles(List<String> detectedProfiles) throws IOException {
+		Set<String> allProfiles = new LinkedHashSet<String>(Arrays.asList(getWorkspaceProfiles()));
+		allProfiles.addAll(detectedProfiles);
+		setWorkspaceProfiles(allProfiles.toArray(new String[] {}));
 
-				String sdkPath = environmentSetupScriptPath.getParent().toString();
+		getWorkspacePreferenceStore().save();
+	}
 
-				YoctoProjectEnvironmentSetupScript envSetupScript = YoctoProjectEnvironmentSetupScript
-						.create(new File(sdkPath));
-				YoctoProjectSDKVersion sdkVersion = YoctoProjectSDKVersion.create(new File(sdkPath));
+	/**
+	 * Create or update the profile of a detected SDK.
+	 *
+	 * @param sdkDir directory containing the environment setup script
+	 * @return name of the profile, or null if the directory is not an SDK
+	 */
+	static String createSdkProfile(File sdkDir) {
 
-				if (envSetupScript == null || sdkVersion == null)
-					continue;
+		String sdkPath = sdkDir.toString();
 
-				String profileName = String.format("SDK %s %s", sdkVersion.getTargetPrefix(), sdkPath); //$NON-NLS-1$
+		YoctoProjectEnvironmentSetupScript envSetupScript = YoctoProjectEnvironmentSetupScript.create(sdkDir);
+		YoctoProjectSDKVersion sdkVersion = YoctoProjectSDKVersion.create(sdkDir);
 
-				profileNames.add(profileName);
+		if (envSetupScript == null || sdkVersion == null)
+			return null;
 
-				IPersistentPreferenceStore store = YoctoProjectProfilePreferences.createPreferenceStore(profileName);
+		String profileName = String.format("SDK %s %s", sdkVersion.getTargetPrefix(), sdkPath); //$NON-NLS-1$
 
-				store.setValue(YoctoProjectProfilePreferences.TOOLCHAIN,
-						YoctoProjectProfilePreferences.TOOLCHAIN_SDK_INSTALLATION);
-				store.setValue(YoctoProjectProfilePreferences.SDK_INSTALLATION, sdkPath);
+		IPersistentPreferenceStore store = YoctoProjectProfilePreferences.createPreferenceStore(profileName);
 
-				String sysrootLocation = envSetupScript.getEnvironmentVariables().get("OECORE_NATIVE_SYSROOT"); //$NON-NLS-1$
+		store.setValue(YoctoProjectProfilePreferences.TOOLCHAIN,
+				YoctoProjectProfilePreferences.TOOLCHAIN_SDK_INSTALLATION);
+		store.setValue(YoctoProjectProfilePreferences.SDK_INSTALLATION, sdkPath);
 
-//				store.setValue(YoctoProjectProfilePreferences.SYSROOT_LOCATION, sysrootLocation);
-				store.setValue(YoctoProjectProfilePreferences.TARGET,
-						YoctoProjectProfilePreferences.TARGET_EXTERNAL_HARDWARE);
-				store.save();
-			}
+//		String sysrootLocation = envSetupScript.getEnvironmentVariables().get("OECORE_NATIVE_SYSROOT"); //$NON-NLS-1$
+//		store.setValue(YoctoProjectProfilePreferences.SYSROOT_LOCATION, sysrootLocation);
+		store.setValue(YoctoProjectProfilePreferences.TARGET,
+				YoctoProjectProfilePreferences.TARGET_EXTERNAL_HARDWARE);
 
+		try {
+			store.save();
 		} catch (IOException e) {
 			// Ignore any errors during detection
 		}
 
-		return profileNames;
+		return profileName;
 	}
 
-	static List<String> detectWorkspaceBuildDirProfiles() {
+	/**
+	 * Create or update the profile of a detected build directory.
+	 *
+	 * @param buildDir        directory containing the environment setup script
+	 * @param deployImageDirs directories containing a qemuboot.conf under the
+	 *                        build directory
+	 * @return name of the profile, or null if the directory is not a build
+	 *         directory
+	 */
+	static String createBuildDirProfile(File buildDir, List<File> deployImageDirs) {
 
-		ArrayList<String> profileNames = new ArrayList<String>();
+		String buildDirPath = buildDir.toString();
 
-		File userGitDir = new File(System.getProperty("user.home"), "git"); //$NON-NLS-1$//$NON-NLS-2$
+		YoctoProjectEnvironmentSetupScript envSetupScript = YoctoProjectEnvironmentSetupScript.create(buildDir);
 
-		if (!userGitDir.exists())
-			return profileNames;
-
-		try {
-
-			Set<Path> buildDirEnvScriptPaths = new HashSet<Path>();
-
-			// Look for poky git repo with oe-init-build-env
-			List<Path> oeInitBuildEnvPaths = Files
-					.find(Paths.get(userGitDir.getAbsolutePath()), 2,
-							(filePath,
-									fileAttr) -> (fileAttr.isRegularFile()
-											&& filePath.getFileName().toString().equals("oe-init-build-env"))) //$NON-NLS-1$
-					.collect(Collectors.toList());
-
-			// look 3 levels down from git repo's parent for anything that looks
-			// like build/tmp/environment-setup-*
-
-			// TODO: apparently this doesn't quite work as it chokes when recursing into
-			// directories with permission issues.
-//			List<Path> outOfBuildDirEnvScriptPaths = Files
-//					.find(Paths.get(userGitDir.getParent()), 3,
-//							(filePath, fileAttr) -> (fileAttr.isRegularFile() && filePath.getFileName().toString()
-//									.startsWith(YoctoProjectProfilePreferences.ENVIRONMENT_SETUP_SCRIPT_PREFIX)))
-//					.collect(Collectors.toList());
-//
-//			buildDirEnvScriptPaths.addAll(outOfBuildDirEnvScriptPaths);
-
-			for (Path oeInitBuildEnvPath : oeInitBuildEnvPaths) {
-
-				// look 3 levels down from git repo for anything that looks
-				// like build/tmp/environment-setup-*
-				List<Path> inBuildDirEnvScriptPaths = Files
-						.find(oeInitBuildEnvPath.getParent(), 3, (filePath,
-								fileAttr) -> (fileAttr.isRegularFile() && filePath.getFileName().toString().startsWith(
-										YoctoProjectEnvironmentSetupScript.ENVIRONMENT_SETUP_SCRIPT_PREFIX)))
-						.collect(Collectors.toList());
-
-				buildDirEnvScriptPaths.addAll(inBuildDirEnvScriptPaths);
-			}
-
-			for (Path buildDirEnvScriptPath : buildDirEnvScriptPaths) {
-
-				String buildDirPath = buildDirEnvScriptPath.getParent().toString();
-
-				YoctoProjectEnvironmentSetupScript envSetupScript = YoctoProjectEnvironmentSetupScript
-						.create(new File(buildDirPath));
-
-				if (envSetupScript == null)
-					continue;
-
-				String profileName = String.format("Build %s %s", envSetupScript.getTargetPrefix(), buildDirPath); //$NON-NLS-1$
-
-				profileNames.add(profileName);
-
-				IPersistentPreferenceStore store = YoctoProjectProfilePreferences.createPreferenceStore(profileName);
-
-				store.setValue(YoctoProjectProfilePreferences.TOOLCHAIN,
-						YoctoProjectProfilePreferences.TOOLCHAIN_BUILD_DIRECTORY);
-				store.setValue(YoctoProjectProfilePreferences.BUILD_DIRECTORY, buildDirPath);
-
-				String sysrootLocation = envSetupScript.getEnvironmentVariables().get("OECORE_NATIVE_SYSROOT"); //$NON-NLS-1$
+		if (envSetupScript == null)
+			return null;
 
-//				store.setValue(YoctoProjectProfilePreferences.SYSROOT_LOCATION, sysrootLocation);
+		String profileName = String.format("Build %s %s", envSetupScript.getTargetPrefix(), buildDirPath); //$NON-NLS-1$
 
-				List<Path> qemubootConfPaths = Files
-						.find(buildDirEnvScriptPath.getParent(), 4,
-								(filePath,
-										fileAttr) -> (fileAttr.isRegularFile() && filePath.getFileName().toString()
-												.endsWith(YoctoProjectQemubootConf.QEMUBOOT_CONF_SUFFIX)))
-						.collect(Collectors.toList());
+		IPersistentPreferenceStore store = YoctoProjectProfilePreferences.createPreferenceStore(profileName);
 
-				if (qemubootConfPaths.size() == 1) {
+		store.setValue(YoctoProjectProfilePreferences.TOOLCHAIN,
+				YoctoProjectProfilePreferences.TOOLCHAIN_BUILD_DIRECTORY);
+		store.setValue(YoctoProjectProfilePreferences.BUILD_DIRECTORY, buildDirPath);
 
-					YoctoProjectQemubootConf qemubootConf = YoctoProjectQemubootConf
-							.create(qemubootConfPaths.get(0).getParent().toFile());
+//		String sysrootLocation = envSetupScript.getEnvironmentVariables().get("OECORE_NATIVE_SYSROOT"); //$NON-NLS-1$
+//		store.setValue(YoctoProjectProfilePreferences.SYSROOT_LOCATION, sysrootLocation);
 
-					if (qemubootConf != null && qemubootConf.getKernel() != null) {
-						store.setValue(YoctoProjectProfilePreferences.TARGET,
-								YoctoProjectProfilePreferences.TARGET_QEMU);
+		if (deployImageDirs != null && deployImageDirs.size() == 1) {
 
-						store.setValue(YoctoProjectProfilePreferences.QEMUBOOTCONF_FILE,
-								qemubootConf.toFile().getAbsolutePath());
+			YoctoProjectQemubootConf qemubootConf = YoctoProjectQemubootConf.create(deployImageDirs.get(0));
 
-						store.setValue(YoctoProjectProfilePreferences.KERNEL_IMAGE,
-								qemubootConf.getKernel().getAbsolutePath());
-					} else {
-						store.setValue(YoctoProjectProfilePreferences.TARGET,
-								YoctoProjectProfilePreferences.TARGET_EXTERNAL_HARDWARE);
-					}
+			if (qemubootConf != null && qemubootConf.getKernel() != null) {
+				store.setValue(YoctoProjectProfilePreferences.TARGET, YoctoProjectProfilePreferences.TARGET_QEMU);
 
-				} else {
-					store.setValue(YoctoProjectProfilePreferences.TARGET,
-							YoctoProjectProfilePreferences.TARGET_EXTERNAL_HARDWARE);
-				}
+				store.setValue(YoctoProjectProfilePreferences.QEMUBOOTCONF_FILE,
+						qemubootConf.toFile().getAbsolutePath());
 
-				store.save();
+				store.setValue(YoctoProjectProfilePreferences.KERNEL_IMAGE,
+						qemubootConf.getKernel().getAbsolutePath());
+			} else {
+				store.setValue(YoctoProjectProfilePreferences.TARGET,
+						YoctoProjectProfilePreferences.TARGET_EXTERNAL_HARDWARE);
 			}
 
+		} else {
+			store.setValue(YoctoProjectProfilePreferences.TARGET,
+					YoctoProjectProfilePreferences.TARGET_EXTERNAL_HARDWARE);
+		}
+
+		try {
+			store.save();
 		} catch (IOException e) {
 			// Ignore any errors during detection
 		}
 
-		return profileNames;
+		return profileName;
 	}
 
 	public static void setWorkspaceProfiles(String[] profiles) {
@@ -0,0 +1,335 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Intel Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Intel Corporation - initial API and implementation
+ *******************************************************************************/
+package org.yocto.sdk.core.script;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parser of the environment setup scripts of the SDKs and build directories.
+ *
+ * The assignments at the top level of a script are evaluated the way the
+ * shell would: single quotes, double quotes and backslashes are honored, and
+ * <code>$VAR</code> and <code>${VAR}</code> are expanded from the variables
+ * assigned before, or else from the environment of the IDE. Only the exported
+ * variables are returned. Commands separated by semicolons are evaluated in
+ * turn; conditional blocks, which are indented, the commands after
+ * <code>&amp;&amp;</code>, <code>||</code> or a pipe, and command
+ * substitutions are not evaluated.
+ *
+ * The package is excluded from the lazy activation of the bundle, so that
+ * parsing a script does not start the detection of the profiles of the
+ * workspace.
+ *
+ * The variables of a script are kept as long as the script keeps its
+ * modification time and size, and shared by all the profiles and projects
+ * using the script.
+ *
+ * @author Intel Corporation
+ *
+ */
+public final class YoctoProjectEnvironmentScriptParser {
+
+	private static final String EXPORT = "export"; //$NON-NLS-1$
+
+	/**
+	 * The variables of a script, and the state of the script they were
+	 * parsed from.
+	 */
+	private static class Parsed {
+		final long modified;
+		final long length;
+		final Map<String, String> variables;
+
+		Parsed(long modified, long length, Map<String, String> variables) {
+			this.modified = modified;
+			this.length = length;
+			this.variables = variables;
+		}
+	}
+
+	// by canonical path of the script
+	private static final Map<String, Parsed> parsed = new ConcurrentHashMap<String, Parsed>();
+
+	private YoctoProjectEnvironmentScriptParser() {
+	}
+
+	/**
+	 * @param script environment setup script
+	 * @return the variables exported by the script, which cannot be modified
+	 * @throws IOException if the script cannot be read
+	 */
+	public static Map<String, String> parse(File script) throws IOException {
+		String path = script.getCanonicalPath();
+		long modified = script.lastModified();
+		long length = script.length();
+
+		Parsed entry = parsed.get(path);
+		if (entry != null && entry.modified == modified && entry.length == length)
+			return entry.variables;
+
+		Map<String, String> variables = Collections.unmodifiableMap(read(script));
+		// another thread may have parsed the script meanwhile: either result
+		// is as good
+		parsed.put(path, new Parsed(modified, length, variables));
+		return variables;
+	}
+
+	/**
+	 * Forget the variables of all the scripts.
+	 */
+	public static void clear() {
+		parsed.clear();
+	}
+
+	private static Map<String, String> read(File script) throws IOException {
+		Map<String, String> shellVariables = new HashMap<String, String>();
+		Map<String, String> exported = new LinkedHashMap<String, String>();
+
+		try (BufferedReader input = new BufferedReader(
+				new InputStreamReader(new FileInputStream(script), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = input.readLine()) != null) {
+				// quoted values may span several lines
+				while (!isComplete(line)) {
+					String next = input.readLine();
+					if (next == null)
+						break;
+					line = line + '\n' + next;
+				}
+				evaluate(line, shellVariables, exported);
+			}
+		}
+		return exported;
+	}
+
+	/**
+	 * @param line
+	 * @return false if the line ends within quotes or with a line
+	 *         continuation
+	 */
+	private static boolean isComplete(String line) {
+		char quote = 0;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quote == '\'') {
+				if (c == '\'')
+					quote = 0;
+			} else if (c == '\\') {
+				if (++i == line.length())
+					return false;
+			} else if (quote == '"') {
+				if (c == '"')
+					quote = 0;
+			} else if (c == '\'' || c == '"') {
+				quote = c;
+			} else if (c == '#' && (i == 0 || Character.isWhitespace(line.charAt(i - 1)))) {
+				return true;
+			}
+		}
+		return quote == 0;
+	}
+
+	private static void evaluate(String line, Map<String, String> shellVariables, Map<String, String> exported) {
+		// indented lines are within conditional blocks
+		if (line.isEmpty() || Character.isWhitespace(line.charAt(0)))
+			return;
+
+		int[] pos = { 0 };
+		// commands separated by semicolons run one after the other
+		while (evaluateCommand(line, pos, shellVariables, exported)) {
+			int i = pos[0];
+			if (i == line.length() || line.charAt(i) != ';' || (i + 1 < line.length() && line.charAt(i + 1) == ';'))
+				return;
+			pos[0] = i + 1;
+		}
+	}
+
+	/**
+	 * Evaluate the assignments of the simple command at a position of a
+	 * line.
+	 *
+	 * @param line
+	 * @param pos  position in the line, updated to the operator or the end of
+	 *             the line after the command
+	 * @return false if the rest of the line must not be evaluated
+	 */
+	private static boolean evaluateCommand(String line, int[] pos, Map<String, String> shellVariables,
+			Map<String, String> exported) {
+		String word = nextWord(line, pos);
+		boolean export = EXPORT.equals(word);
+		if (export)
+			word = nextWord(line, pos);
+
+		while (word != null) {
+			int equal = word.indexOf('=');
+			if (export && (equal < 0 || !isName(word.substring(0, equal)))) {
+				// the arguments of export may be quoted as a whole
+				pos[0] -= word.length();
+				word = readWord(line, pos, shellVariables);
+				equal = word.indexOf('=');
+				String name = (equal > 0) ? word.substring(0, equal) : word;
+				if (!isName(name))
+					return false;
+				String value = (equal > 0) ? word.substring(equal + 1) : shellVariables.get(name);
+				if (equal > 0)
+					shellVariables.put(name, value);
+				if (value != null)
+					exported.put(name, value);
+			} else if (equal > 0 && isName(word.substring(0, equal))) {
+				String name = word.substring(0, equal);
+				// read the value again, expanded
+				pos[0] = pos[0] - word.length() + equal + 1;
+				String value = readWord(line, pos, shellVariables);
+				shellVariables.put(name, value);
+				if (export || exported.containsKey(name))
+					exported.put(name, value);
+			} else {
+				// a command: not evaluated, skip its arguments
+				while (nextWord(line, pos) != null)
+					;
+				return true;
+			}
+			word = nextWord(line, pos);
+		}
+		return true;
+	}
+
+	/**
+	 * Skip to the next shell word of a line.
+	 *
+	 * @param line
+	 * @param pos  position in the line, updated past the word
+	 * @return the word as written, or null at the end of the line or at a
+	 *         comment or an operator
+	 */
+	private static String nextWord(String line, int[] pos) {
+		int i = pos[0];
+		while (i < line.length() && Character.isWhitespace(line.charAt(i)))
+			i++;
+		pos[0] = i;
+		if (i == line.length() || line.charAt(i) == '#' || isOperator(line.charAt(i)))
+			return null;
+		return readWord(line, pos, null);
+	}
+
+	/**
+	 * Read the shell word at a position of a line.
+	 *
+	 * @param line
+	 * @param pos       position in the line, updated past the word
+	 * @param variables variables to expand, or null to return the word as
+	 *                  written
+	 * @return the word, empty if there is none at the position
+	 */
+	private static String readWord(String line, int[] pos, Map<String, String> variables) {
+		int length = line.length();
+		int start = pos[0];
+		StringBuilder word = new StringBuilder();
+		char quote = 0;
+		int i = start;
+		for (; i < length; i++) {
+			char c = line.charAt(i);
+			if (quote == '\'') {
+				if (c == '\'')
+					quote = 0;
+				else
+					word.append(c);
+			} else if (c == '\\' && i + 1 < length) {
+				char next = line.charAt(++i);
+				if (next == '\n') {
+					// line continuation
+				} else if (quote == '"' && "$`\"\\".indexOf(next) < 0) { //$NON-NLS-1$
+					word.append(c).append(next);
+				} else {
+					word.append(next);
+				}
+			} else if (quote == '"' && c == '"') {
+				quote = 0;
+			} else if (quote == 0 && (c == '\'' || c == '"')) {
+				quote = c;
+			} else if (quote == 0 && (Character.isWhitespace(c) || isOperator(c))) {
+				break;
+			} else if (c == '$' && variables != null) {
+				i = expand(line, i, variables, word) - 1;
+			} else {
+				word.append(c);
+			}
+		}
+		pos[0] = i;
+		return (variables != null) ? word.toString() : line.substring(start, i);
+	}
+
+	/**
+	 * Expand the variable starting at a dollar sign.
+	 *
+	 * @return the position past the variable
+	 */
+	private static int expand(String line, int dollar, Map<String, String> variables, StringBuilder word) {
+		int i = dollar + 1;
+		int length = line.length();
+		String name;
+		if (i < length && line.charAt(i) == '{') {
+			int end = line.indexOf('}', i);
+			if (end < 0 || !isName(line.substring(i + 1, end))) {
+				word.append('$');
+				return i;
+			}
+			name = line.substring(i + 1, end);
+			i = end + 1;
+		} else {
+			int end = i;
+			while (end < length && isNameChar(line.charAt(end), end == i))
+				end++;
+			if (end == i) {
+				// not a variable, such as a command substitution
+				word.append('$');
+				return i;
+			}
+			name = line.substring(i, end);
+			i = end;
+		}
+
+		String value = variables.get(name);
+		if (value == null)
+			value = System.getenv(name);
+		if (value != null)
+			word.append(value);
+		return i;
+	}
+
+	private static boolean isOperator(char c) {
+		return c == ';' || c == '&' || c == '|' || c == '<' || c == '>' || c == '(' || c == ')';
+	}
+
+	private static boolean isName(String s) {
+		if (s.isEmpty())
+			return false;
+		for (int i = 0; i < s.length(); i++) {
+			if (!isNameChar(s.charAt(i), i == 0))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean isNameChar(char c, boolean first) {
+		return c == '_' || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (!first && c >= '0' && c <= '9');
+	}
+}
@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.yocto.sdk.ide.natures;
 
+import java.util.Map;
+
 import org.eclipse.cdt.internal.autotools.core.configure.AutotoolsConfigurationManager;
 import org.eclipse.cdt.internal.autotools.core.configure.IAConfiguration;
 import org.eclipse.cdt.managedbuilder.core.IConfiguration;
@@ -40,17 +42,19 @@ public class YoctoSDKAutotoolsProjectNature extends YoctoSDKProjectNature {
 		YoctoUIElement elem = ProjectPreferenceUtils.getElemFromProjectEnv(project);
 		String sysroot_str = elem.getStrSysrootLoc();
 		String id = icfg.getId();
-		String CFLAGS_str = YoctoSDKUtils.getEnvValue(project, "CFLAGS");
-		String CXXFLAGS_str = YoctoSDKUtils.getEnvValue(project, "CXXFLAGS");
-		String CPPFLAGS_str = YoctoSDKUtils.getEnvValue(project, "CPPFLAGS");
-		String LDFLAGS_str = YoctoSDKUtils.getEnvValue(project, "LDFLAGS");
+		Map<String, String> envValues = YoctoSDKUtils.getEnvValues(project, "CFLAGS", "CXXFLAGS", "CPPFLAGS",
+				"LDFLAGS", "CONFIGURE_FLAGS");
+		String CFLAGS_str = envValues.get("CFLAGS");
+		String CXXFLAGS_str = envValues.get("CXXFLAGS");
+		String CPPFLAGS_str = envValues.get("CPPFLAGS");
+		String LDFLAGS_str = envValues.get("LDFLAGS");
 
 		String command_prefix = "CFLAGS=\" -g -O0 " + CFLAGS_str + "\" CXXFLAGS=\" -g -O0 "
 				+ CXXFLAGS_str + "\" LDFLAGS=\"" + LDFLAGS_str + "\" CPPFLAGS=\"" + CPPFLAGS_str + "\"";
 		String autogen_setting = command_prefix+" autogen.sh" + DEFAULT_LIBTOOL_SYSROOT_PREFIX + sysroot_str;
 		String configure_setting = command_prefix + " configure" + DEFAULT_LIBTOOL_SYSROOT_PREFIX + sysroot_str;
 		IAConfiguration cfg = AutotoolsConfigurationManager.getInstance().getConfiguration(project, id);
-		String strConfigure = YoctoSDKUtils.getEnvValue(project, "CONFIGURE_FLAGS");
+		String strConfigure = envValues.get("CONFIGURE_FLAGS");
 
 		cfg.setOption(DEFAULT_CONFIGURE_STR, configure_setting);
 		cfg.setOption(DEFAULT_BUILD_STR, splitString(strConfigure, "--build="));
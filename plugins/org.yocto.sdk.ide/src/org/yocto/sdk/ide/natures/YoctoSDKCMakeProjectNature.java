@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.yocto.sdk.ide.natures;
 
+import java.util.Map;
+
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.envvar.IContributedEnvironment;
 import org.eclipse.cdt.core.envvar.IEnvironmentVariable;
@@ -44,7 +46,9 @@ public class YoctoSDKCMakeProjectNature extends YoctoSDKProjectNature {
 		env.addVariable("EXTRA_OEMAKE", "-C " + oecmakeBuildPathString,
 				IEnvironmentVariable.ENVVAR_REPLACE, delimiter, ccdesc);
 
-		String ccString = YoctoSDKUtils.getEnvValue(project, "CC");
+		Map<String, String> envValues = YoctoSDKUtils.getEnvValues(project, "CC", "CXX", "HOST_CC_ARCH",
+				"TOOLCHAIN_OPTIONS", "CPPFLAGS", "CXXFLAGS", "SELECTED_OPTIMIZATION");
+		String ccString = envValues.get("CC");
 		String ccFlagsString = "";
 
 		if (!ccString.equals("") && !ccString.equals(" ")) {
@@ -60,7 +64,7 @@ public class YoctoSDKCMakeProjectNature extends YoctoSDKProjectNature {
 
 		env.addVariable("OECMAKE_C_COMPILER", ccString,
 				IEnvironmentVariable.ENVVAR_REPLACE, delimiter, ccdesc);
-		String cxxString = YoctoSDKUtils.getEnvValue(project, "CXX");
+		String cxxString = envValues.get("CXX");
 		String cxxFlagsString = "";
 
 		if (!cxxString.equals("") && !cxxString.equals(" ")) {
@@ -77,11 +81,11 @@ public class YoctoSDKCMakeProjectNature extends YoctoSDKProjectNature {
 		env.addVariable("OECMAKE_CXX_COMPILER", cxxString,
 				IEnvironmentVariable.ENVVAR_REPLACE, delimiter, ccdesc);
 
-		String hostCCArchString = YoctoSDKUtils.getEnvValue(project, "HOST_CC_ARCH");
-		String toolchainOptionsString = YoctoSDKUtils.getEnvValue(project, "TOOLCHAIN_OPTIONS");
-		String cppFlagsString = YoctoSDKUtils.getEnvValue(project, "CPPFLAGS") + " " + ccFlagsString;
-		cxxFlagsString = YoctoSDKUtils.getEnvValue(project, "CXXFLAGS") + " " + cxxFlagsString;
-		String selectedOptimizationString = YoctoSDKUtils.getEnvValue(project, "SELECTED_OPTIMIZATION");
+		String hostCCArchString = envValues.get("HOST_CC_ARCH");
+		String toolchainOptionsString = envValues.get("TOOLCHAIN_OPTIONS");
+		String cppFlagsString = envValues.get("CPPFLAGS") + " " + ccFlagsString;
+		cxxFlagsString = envValues.get("CXXFLAGS") + " " + cxxFlagsString;
+		String selectedOptimizationString = envValues.get("SELECTED_OPTIMIZATION");
 		env.addVariable("OECMAKE_C_FLAGS", hostCCArchString + " " + toolchainOptionsString + " " + cppFlagsString,
 				IEnvironmentVariable.ENVVAR_REPLACE, delimiter, ccdesc);
 		env.addVariable("OECMAKE_CXX_FLAGS", hostCCArchString + " " + toolchainOptionsString + " " + cxxFlagsString
@@ -13,6 +13,7 @@
 package org.yocto.sdk.ide.utils;
 
 import java.io.IOException;
+import java.util.Map;
 
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.ConsoleOutputStream;
@@ -71,24 +72,28 @@ public class ProjectPreferenceUtils {
 	/* Get Yocto Preference settings from project's environment */
 	public static YoctoUIElement getElemFromProjectEnv(IProject project) {
 		YoctoUIElement elem = new YoctoUIElement();
-		elem.setStrToolChainRoot(YoctoSDKUtils.getEnvValue(project, PreferenceConstants.TOOLCHAIN_ROOT));
-		elem.setStrTarget(YoctoSDKUtils.getEnvValue(project, PreferenceConstants.TOOLCHAIN_TRIPLET));
-		elem.setStrQemuKernelLoc(YoctoSDKUtils.getEnvValue(project, PreferenceConstants.QEMU_KERNEL));
-		elem.setStrSysrootLoc(YoctoSDKUtils.getEnvValue(project, PreferenceConstants.SYSROOT));
-		elem.setStrQemuOption(YoctoSDKUtils.getEnvValue(project, PreferenceConstants.QEMU_OPTION));
-		String sTemp = YoctoSDKUtils.getEnvValue(project, PreferenceConstants.TARGET_ARCH_INDEX);
+		Map<String, String> envValues = YoctoSDKUtils.getEnvValues(project, PreferenceConstants.TOOLCHAIN_ROOT,
+				PreferenceConstants.TOOLCHAIN_TRIPLET, PreferenceConstants.QEMU_KERNEL, PreferenceConstants.SYSROOT,
+				PreferenceConstants.QEMU_OPTION, PreferenceConstants.TARGET_ARCH_INDEX, PreferenceConstants.SDK_MODE,
+				PreferenceConstants.TARGET_MODE);
+		elem.setStrToolChainRoot(envValues.get(PreferenceConstants.TOOLCHAIN_ROOT));
+		elem.setStrTarget(envValues.get(PreferenceConstants.TOOLCHAIN_TRIPLET));
+		elem.setStrQemuKernelLoc(envValues.get(PreferenceConstants.QEMU_KERNEL));
+		elem.setStrSysrootLoc(envValues.get(PreferenceConstants.SYSROOT));
+		elem.setStrQemuOption(envValues.get(PreferenceConstants.QEMU_OPTION));
+		String sTemp = envValues.get(PreferenceConstants.TARGET_ARCH_INDEX);
 
 		if (!sTemp.isEmpty()) {
 			elem.setIntTargetIndex(Integer.valueOf(sTemp).intValue());
 		}
 
-		if (YoctoSDKUtils.getEnvValue(project, PreferenceConstants.SDK_MODE).equalsIgnoreCase(IPreferenceStore.TRUE)) {
+		if (envValues.get(PreferenceConstants.SDK_MODE).equalsIgnoreCase(IPreferenceStore.TRUE)) {
 			elem.setEnumYoctoMode(YoctoUIElement.YoctoMode.YOCTO_SDK_MODE);
 		} else {
 			elem.setEnumYoctoMode(YoctoUIElement.YoctoMode.YOCTO_TREE_MODE);
 		}
 
-		if(YoctoSDKUtils.getEnvValue(project, PreferenceConstants.TARGET_MODE).equalsIgnoreCase(IPreferenceStore.TRUE)) {
+		if(envValues.get(PreferenceConstants.TARGET_MODE).equalsIgnoreCase(IPreferenceStore.TRUE)) {
 			elem.setEnumDeviceMode(YoctoUIElement.DeviceMode.QEMU_MODE);
 		} else {
 			elem.setEnumDeviceMode(YoctoUIElement.DeviceMode.DEVICE_MODE);
@@ -12,15 +12,14 @@
  *******************************************************************************/
 package org.yocto.sdk.ide.utils;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.logging.FileHandler;
@@ -28,7 +27,6 @@ import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
-import java.util.regex.Matcher;
 
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.envvar.IContributedEnvironment;
@@ -47,6 +45,7 @@ import org.eclipse.debug.core.ILaunchConfigurationType;
 import org.eclipse.debug.core.ILaunchConfigurationWorkingCopy;
 import org.eclipse.debug.core.ILaunchManager;
 import org.eclipse.jface.preference.IPreferenceStore;
+import org.yocto.sdk.core.script.YoctoProjectEnvironmentScriptParser;
 import org.yocto.sdk.ide.YoctoGeneralException;
 import org.yocto.sdk.ide.YoctoProfileElement;
 import org.yocto.sdk.ide.YoctoSDKPlugin;
@@ -66,20 +65,26 @@ public class YoctoSDKUtils {
 
 	public static String getEnvValue(IProject project, String strKey)
 	{
-		ICProjectDescription cpdesc = CoreModel.getDefault().getProjectDescription(project, true);
-		ICConfigurationDescription ccdesc = cpdesc.getActiveConfiguration();
+		return getEnvValues(project, strKey).get(strKey);
+	}
+
+	/* Get several ENV VARs of the active configuration at once, from the
+	 * read-only project description. Missing VARs are mapped to "".
+	 */
+	public static Map<String, String> getEnvValues(IProject project, String... strKeys)
+	{
+		Map<String, String> values = new HashMap<String, String>();
+		ICProjectDescription cpdesc = CoreModel.getDefault().getProjectDescription(project, false);
+		ICConfigurationDescription ccdesc = (cpdesc != null) ? cpdesc.getActiveConfiguration() : null;
 		IEnvironmentVariableManager manager = CCorePlugin.getDefault().getBuildEnvironmentManager();
 		IContributedEnvironment env = manager.getContributedEnvironment();
-		IEnvironmentVariable var = env.getVariable(strKey, ccdesc);
 
-		if (var == null)
-		{
-			System.out.printf("ENV key %s is NULL\n", strKey);
-			return "";
-		}
+		for (String strKey : strKeys) {
+			IEnvironmentVariable var = (ccdesc != null) ? env.getVariable(strKey, ccdesc) : null;
 
-		else
-			return var.getValue();
+			values.put(strKey, (var == null) ? "" : var.getValue());
+		}
+		return values;
 	}
 
 	/* Save project wide settings into ENV VARs including Yocto preference settings
@@ -203,49 +208,13 @@ public class YoctoSDKUtils {
 	}
 
 	public static HashMap<String, String> parseEnvScript(String sFileName) {
-		try {
-			HashMap<String, String> envMap = new HashMap<String, String>();
-			File file = new File(sFileName);
-
-			if (file.exists()) {
-				BufferedReader input = new BufferedReader(new FileReader(file));
-
-				try {
-					String line = null;
-
-					while ((line = input.readLine()) != null) {
-						if (!line.startsWith("export")) {
-							continue;
-						}
-						String sKey = line.substring("export".length() + 1, line.indexOf('='));
-						String sValue = line.substring(line.indexOf('=') + 1);
-						if (sValue.startsWith("\"") && sValue.endsWith("\""))
-							sValue = sValue.substring(sValue.indexOf('"') + 1, sValue.lastIndexOf('"'));
-						/* If PATH ending with $PATH, we need to join with current system path */
-						if (sKey.equalsIgnoreCase("PATH") && (sValue.lastIndexOf("$PATH") >= 0)) {
-							if (envMap.containsKey(sKey)) {
-								sValue = sValue.substring(0, sValue.lastIndexOf("$PATH")) + envMap.get(sKey);
-							} else {
-								sValue = sValue.substring(0, sValue.lastIndexOf("$PATH")) + System.getenv("PATH");
-							}
-						}
-
-						if(sValue.toUpperCase().contains("$SDKTARGETSYSROOT")) {
-							String rValue = sValue.replaceAll(Matcher.quoteReplacement("$SDKTARGETSYSROOT"), envMap.get("SDKTARGETSYSROOT"));
-							envMap.put(sKey, rValue) ;
-						} else {
-							envMap.put(sKey, sValue);
-						}
-
-						System.out.printf("get env key %s value %s\n", sKey, sValue);
-					}
-				} finally {
-					input.close();
-				}
-			}
+		File file = new File(sFileName);
 
-			return envMap;
+		if (!file.exists())
+			return new HashMap<String, String>();
 
+		try {
+			return new HashMap<String, String>(YoctoProjectEnvironmentScriptParser.parse(file));
 		} catch (IOException e) {
 			e.printStackTrace();
 			return null;
@@ -273,10 +242,11 @@ public class YoctoSDKUtils {
 		ILaunchConfigurationType debug_configType =
 				lManager.getLaunchConfigurationType("org.eclipse.cdt.launch.remoteApplicationLaunchType");
 
-		String sPath = getEnvValue(project, "PATH");
-		String sDebugName = getEnvValue(project, "GDB");
+		Map<String, String> envValues = getEnvValues(project, "PATH", "GDB", "TARGET_PREFIX");
+		String sPath = envValues.get("PATH");
+		String sDebugName = envValues.get("GDB");
 		String sysroot_str = elem.getStrSysrootLoc();
-		String target_prefix_str = getEnvValue(project,"TARGET_PREFIX");
+		String target_prefix_str = envValues.get("TARGET_PREFIX");
 		String target_str = target_prefix_str.substring(0, target_prefix_str.length() - 1);
 
 		if (configType == null || debug_configType == null) {